@@ -0,0 +1,289 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.prefetch;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Warms caches for players while they are logging in. On {@link AsyncPlayerPreLoginEvent}, all registered {@link
+ * PrefetchTask}s are run in parallel for the connecting player, and the login waits for them for at most a bounded
+ * timeout. Tasks that take longer keep running in the background, so that the login is delayed by at most the
+ * timeout, but never fails because of prefetching.
+ * <p>
+ * A prefetched login is {@link PrefetchTask#claim(UUID) claimed} by the following {@link PlayerLoginEvent}. If that
+ * login is disallowed, or if the player never reaches it because they disconnected in between, the data loaded for
+ * them is {@link PrefetchTask#release(UUID) released}. Unclaimed logins are released once they are older than the unclaimed expiry,
+ * which is checked whenever another player logs in.
+ * </p>
+ * <p>
+ * Register tasks for every cache that is accessed when a player joins, for example the account and position
+ * repositories of a Lanatus client using {@link PrefetchTask#ofPlayerId(java.util.function.Consumer)} or the task of
+ * a games {@code PlayerWrapperFactory#prefetchTask()}, and register this as a listener.
+ * </p>
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class LoginPrefetcher implements Listener, AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(LoginPrefetcher.class.getName());
+    /**
+     * The default time after which a prefetched login that has not been claimed by a {@link PlayerLoginEvent} is
+     * released.
+     */
+    public static final Duration DEFAULT_UNCLAIMED_EXPIRY = Duration.ofMinutes(1);
+    private final Map<String, PrefetchTask> tasks = new ConcurrentHashMap<>();
+    private final Map<UUID, PendingLogin> pendingLogins = new ConcurrentHashMap<>();
+    private final Duration timeout;
+    private final Duration unclaimedExpiry;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a new login prefetcher that releases unclaimed logins after {@link #DEFAULT_UNCLAIMED_EXPIRY}.
+     *
+     * @param timeout     how long a login may wait for prefetching at most
+     * @param threadCount how many tasks may run at the same time, across all logins
+     */
+    public LoginPrefetcher(Duration timeout, int threadCount) {
+        this(timeout, threadCount, DEFAULT_UNCLAIMED_EXPIRY);
+    }
+
+    /**
+     * Creates a new login prefetcher.
+     *
+     * @param timeout         how long a login may wait for prefetching at most
+     * @param threadCount     how many tasks may run at the same time, across all logins
+     * @param unclaimedExpiry after how long a prefetched login that has not been claimed by a {@link
+     *                        PlayerLoginEvent} is released
+     */
+    public LoginPrefetcher(Duration timeout, int threadCount, Duration unclaimedExpiry) {
+        Preconditions.checkNotNull(timeout, "timeout");
+        Preconditions.checkArgument(!timeout.isNegative(), "timeout must not be negative: %s", timeout);
+        Preconditions.checkArgument(threadCount > 0, "threadCount must be positive: %s", threadCount);
+        Preconditions.checkNotNull(unclaimedExpiry, "unclaimedExpiry");
+        Preconditions.checkArgument(!unclaimedExpiry.isNegative(), "unclaimedExpiry must not be negative: %s", unclaimedExpiry);
+        this.timeout = timeout;
+        this.unclaimedExpiry = unclaimedExpiry;
+        this.executor = Executors.newFixedThreadPool(threadCount, new ThreadFactoryBuilder()
+                .setNameFormat("xyc-login-prefetch-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Registers a task to be run for every player that logs in. A task registered earlier under the same name is
+     * replaced.
+     *
+     * @param name a short name of the task, used for logging
+     * @param task the task to run
+     * @return this prefetcher, for convenient call chaining
+     */
+    public LoginPrefetcher register(String name, PrefetchTask task) {
+        Preconditions.checkNotNull(name, "name");
+        Preconditions.checkNotNull(task, "task");
+        tasks.put(name, task);
+        return this;
+    }
+
+    /**
+     * Unregisters the task registered under given name, if any.
+     *
+     * @param name the name of the task
+     */
+    public void unregister(String name) {
+        tasks.remove(name);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            awaitPrefetch(event.getUniqueId(), event.getName());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent event) {
+        UUID playerId = event.getPlayer().getUniqueId();
+        PendingLogin pending = pendingLogins.remove(playerId);
+        if (pending == null) {
+            return;
+        }
+        if (event.getResult() == PlayerLoginEvent.Result.ALLOWED) {
+            claim(playerId, pending);
+        } else {
+            release(playerId, pending);
+        }
+    }
+
+    /**
+     * Runs all registered tasks for given player in parallel and waits for them to complete, for at most the
+     * timeout. Failures of tasks are logged. The login is then pending until it is claimed by a {@link
+     * PlayerLoginEvent} or released because it was not claimed in time. Expired logins of other players are released
+     * first.
+     *
+     * @param playerId   the unique id of the player
+     * @param playerName the name of the player
+     * @return whether all tasks completed within the timeout
+     */
+    public boolean awaitPrefetch(UUID playerId, String playerName) {
+        releaseExpiredLogins();
+        CompletableFuture<Void> future = prefetch(playerId, playerName);
+        pendingLogins.put(playerId, new PendingLogin(future));
+        try {
+            future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            LOGGER.warning(() -> String.format(
+                    "Prefetching for %s (%s) did not complete within %s, continuing in background",
+                    playerName, playerId, timeout
+            ));
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false; //not thrown, failures are handled per task
+        }
+    }
+
+    /**
+     * Runs all registered tasks for given player in parallel, without waiting for them.
+     *
+     * @param playerId   the unique id of the player
+     * @param playerName the name of the player
+     * @return a future completing once all tasks have completed, successfully or not
+     */
+    public CompletableFuture<Void> prefetch(UUID playerId, String playerName) {
+        Preconditions.checkNotNull(playerId, "playerId");
+        CompletableFuture<?>[] futures = tasks.entrySet().stream()
+                .map(entry -> CompletableFuture.runAsync(
+                        () -> runTask(entry.getKey(), entry.getValue(), playerId, playerName), executor
+                ))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures);
+    }
+
+    private void runTask(String name, PrefetchTask task, UUID playerId, String playerName) {
+        try {
+            task.prefetch(playerId, playerName);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, e, () -> String.format(
+                    "Prefetch task %s failed for %s (%s)", name, playerName, playerId
+            ));
+        }
+    }
+
+    private void releaseExpiredLogins() {
+        pendingLogins.forEach((playerId, pending) -> {
+            if (pending.isOlderThan(unclaimedExpiry) && pendingLogins.remove(playerId, pending)) {
+                release(playerId, pending);
+            }
+        });
+    }
+
+    private void release(UUID playerId, PendingLogin pending) {
+        //only once prefetching is done, so that a task still running cannot load the data again afterwards
+        pending.prefetch.whenComplete((ignored, e) -> tasks.forEach((name, task) -> releaseTask(name, task, playerId)));
+    }
+
+    private void claim(UUID playerId, PendingLogin pending) {
+        pending.prefetch.whenComplete((ignored, e) -> tasks.forEach((name, task) -> claimTask(name, task, playerId)));
+    }
+
+    private void claimTask(String name, PrefetchTask task, UUID playerId) {
+        try {
+            task.claim(playerId);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, e, () -> String.format(
+                    "Prefetch task %s failed to claim %s", name, playerId
+            ));
+        }
+    }
+
+    private void releaseTask(String name, PrefetchTask task, UUID playerId) {
+        try {
+            task.release(playerId);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, e, () -> String.format(
+                    "Prefetch task %s failed to release %s", name, playerId
+            ));
+        }
+    }
+
+    /**
+     * @param playerId the unique id of the player
+     * @return whether a prefetched login of given player has neither been claimed nor released yet
+     */
+    public boolean isPending(UUID playerId) {
+        return pendingLogins.containsKey(playerId);
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public Duration getUnclaimedExpiry() {
+        return unclaimedExpiry;
+    }
+
+    /**
+     * Stops the threads running the tasks. Tasks that are currently running are not interrupted.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static class PendingLogin {
+        private final CompletableFuture<Void> prefetch;
+        private final long startedAtNanos = System.nanoTime();
+
+        private PendingLogin(CompletableFuture<Void> prefetch) {
+            this.prefetch = prefetch;
+        }
+
+        private boolean isOlderThan(Duration duration) {
+            return System.nanoTime() - startedAtNanos >= duration.toNanos();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.prefetch;
+
+import com.google.common.base.Preconditions;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Loads data of a player that is about to join into a cache, so that it does not need to be loaded on the main thread
+ * once the player has joined. Tasks that keep loaded data until it is explicitly freed should also implement {@link
+ * #release(UUID)}, so that the data of players that do not join after all is not retained.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+@FunctionalInterface
+public interface PrefetchTask {
+    /**
+     * Loads data of given player into a cache. This is called on a prefetch thread, never on the main thread.
+     *
+     * @param playerId   the unique id of the player that is logging in
+     * @param playerName the name of the player that is logging in
+     * @throws Exception if the data cannot be loaded, which is logged and otherwise ignored
+     */
+    void prefetch(UUID playerId, String playerName) throws Exception;
+
+    /**
+     * Notifies this task that the player has joined, so that the data loaded for them will not be {@link
+     * #release(UUID) released} by this login. This is called after {@link #prefetch(UUID, String)} has completed for
+     * that login, on any thread. Does nothing by default.
+     *
+     * @param playerId the unique id of the player that joined
+     * @throws Exception if the login cannot be claimed, which is logged and otherwise ignored
+     */
+    default void claim(UUID playerId) throws Exception {
+        //no-op
+    }
+
+    /**
+     * Frees the data loaded for a player whose login was disallowed or who disconnected before logging in. This is
+     * called after {@link #prefetch(UUID, String)} has completed for that login, on any thread. Does nothing by
+     * default, which is fine for data that expires from its cache by itself.
+     *
+     * @param playerId the unique id of the player that did not join
+     * @throws Exception if the data cannot be freed, which is logged and otherwise ignored
+     */
+    default void release(UUID playerId) throws Exception {
+        //no-op
+    }
+
+    /**
+     * Creates a task from a method that loads data by player id only, for example {@code
+     * SqlPositionRepository#prefetchPlayer(UUID)} or {@code SqlAccountRepository#prefetchPlayer(UUID)} of a Lanatus
+     * client.
+     *
+     * @param loader the method loading data of a player into a cache
+     * @return a task calling given method
+     */
+    static PrefetchTask ofPlayerId(Consumer<UUID> loader) {
+        Preconditions.checkNotNull(loader, "loader");
+        return (playerId, playerName) -> loader.accept(playerId);
+    }
+
+    /**
+     * Creates a task that prefetches using another task and frees the loaded data using given method, for example
+     * {@code PlayerWrapperFactory#free(UUID)}.
+     *
+     * @param task    the task loading the data
+     * @param release the method freeing the data of a player
+     * @return a task using given task and method
+     */
+    static PrefetchTask withRelease(PrefetchTask task, Consumer<UUID> release) {
+        Preconditions.checkNotNull(task, "task");
+        Preconditions.checkNotNull(release, "release");
+        return new PrefetchTask() {
+            @Override
+            public void prefetch(UUID playerId, String playerName) throws Exception {
+                task.prefetch(playerId, playerName);
+            }
+
+            @Override
+            public void release(UUID playerId) {
+                release.accept(playerId);
+            }
+        };
+    }
+}
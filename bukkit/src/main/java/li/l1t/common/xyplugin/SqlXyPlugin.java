@@ -24,17 +24,21 @@
 
 package li.l1t.common.xyplugin;
 
+import li.l1t.common.prefetch.LoginPrefetcher;
 import li.l1t.common.sql.SpigotSql;
 import li.l1t.common.sql.SqlConnectable;
 import li.l1t.common.sql.SqlConnectables;
 import li.l1t.common.sql.sane.SaneSql;
 import li.l1t.common.sql.sane.SingleSql;
 import li.l1t.common.sql.sane.SqlConnected;
+import li.l1t.common.sql.sane.timing.TimingSaneSql;
 import li.l1t.common.util.Closer;
+import org.bukkit.event.HandlerList;
 import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPluginLoader;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -63,6 +67,8 @@ public abstract class SqlXyPlugin extends AbstractXyPlugin implements SqlConnect
 
     private SaneSql saneSql;
 
+    private LoginPrefetcher loginPrefetcher;
+
     public SqlXyPlugin() {
 
     }
@@ -89,6 +95,11 @@ public abstract class SqlXyPlugin extends AbstractXyPlugin implements SqlConnect
         return this.ssql;
     }
 
+    /**
+     * {@inheritDoc} If {@code sql.timing.enabled} is set in the plugin configuration, this is a
+     * {@link TimingSaneSql} that records statement statistics and logs statements taking longer
+     * than {@code sql.timing.slow-statement-millis}.
+     */
     @Override
     public SaneSql sql() {
         return saneSql;
@@ -98,11 +109,53 @@ public abstract class SqlXyPlugin extends AbstractXyPlugin implements SqlConnect
     protected final void loadSql() {
         SqlXyPlugin.INSTANCES.add(this);
         this.ssql = new SpigotSql(getConnectable(), this);
-        this.saneSql = new SingleSql(getConnectable());
+        this.saneSql = createSaneSql();
+    }
+
+    private SaneSql createSaneSql() {
+        getConfig().addDefault("sql.timing.enabled", false);
+        getConfig().addDefault("sql.timing.slow-statement-millis", 250);
+        SingleSql singleSql = new SingleSql(getConnectable());
+        if (getConfig().getBoolean("sql.timing.enabled")) {
+            Duration threshold = Duration.ofMillis(getConfig().getLong("sql.timing.slow-statement-millis"));
+            return new TimingSaneSql(singleSql, threshold);
+        } else {
+            return singleSql;
+        }
+    }
+
+    /**
+     * Returns the login prefetcher of this plugin, which warms caches for players while they are logging in, so that
+     * data accessed on join does not need to be loaded on the main thread. It is created and registered as a
+     * listener on first access. The timeout and thread count are read from {@code prefetch.timeout-millis} and
+     * {@code prefetch.threads} in the plugin configuration. Register a {@link li.l1t.common.prefetch.PrefetchTask}
+     * for every cache this plugin accesses on join, for example {@code
+     * PrefetchTask.ofPlayerId(lanatus.accounts()::prefetchPlayer)} or {@code wrapperFactory.prefetchTask()}.
+     *
+     * @return the login prefetcher of this plugin
+     */
+    public synchronized LoginPrefetcher getLoginPrefetcher() {
+        if (loginPrefetcher == null) {
+            getConfig().addDefault("prefetch.timeout-millis", 2000);
+            getConfig().addDefault("prefetch.threads", 4);
+            loginPrefetcher = new LoginPrefetcher(
+                    Duration.ofMillis(getConfig().getLong("prefetch.timeout-millis")),
+                    getConfig().getInt("prefetch.threads")
+            );
+            getServer().getPluginManager().registerEvents(loginPrefetcher, this);
+        }
+        return loginPrefetcher;
     }
 
     @SuppressWarnings("deprecation")
     protected final void unloadSql() {
+        synchronized (this) {
+            if (loginPrefetcher != null) {
+                HandlerList.unregisterAll(loginPrefetcher);
+                loginPrefetcher.close();
+                loginPrefetcher = null;
+            }
+        }
         if (this.ssql != null) {
             this.ssql.preReload();
             this.ssql = null;
@@ -0,0 +1,162 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.prefetch;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LoginPrefetcherTest {
+    private static final UUID PLAYER_ID = UUID.randomUUID();
+
+    @Test
+    public void testAwaitPrefetch__tasksRunInParallel() {
+        //given
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        PrefetchTask task = (playerId, playerName) -> {
+            bothStarted.countDown();
+            bothStarted.await(5, TimeUnit.SECONDS); //only returns early if the other task runs at the same time
+        };
+        try (LoginPrefetcher prefetcher = new LoginPrefetcher(Duration.ofSeconds(2), 2)) {
+            prefetcher.register("first", task).register("second", task);
+            //when
+            boolean completed = prefetcher.awaitPrefetch(PLAYER_ID, "Hans");
+            //then
+            assertThat(completed, is(true));
+        }
+    }
+
+    @Test
+    public void testAwaitPrefetch__timeout() {
+        //given
+        CountDownLatch release = new CountDownLatch(1);
+        try (LoginPrefetcher prefetcher = new LoginPrefetcher(Duration.ofMillis(50), 1)) {
+            prefetcher.register("slow", (playerId, playerName) -> release.await(5, TimeUnit.SECONDS));
+            //when
+            boolean completed = prefetcher.awaitPrefetch(PLAYER_ID, "Hans");
+            //then
+            assertThat(completed, is(false));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testAwaitPrefetch__failureDoesNotAffectOthers() {
+        //given
+        AtomicBoolean otherRan = new AtomicBoolean();
+        try (LoginPrefetcher prefetcher = new LoginPrefetcher(Duration.ofSeconds(2), 2)) {
+            prefetcher.register("failing", (playerId, playerName) -> {
+                throw new IllegalStateException("database on fire");
+            });
+            prefetcher.register("other", (playerId, playerName) -> otherRan.set(true));
+            //when
+            boolean completed = prefetcher.awaitPrefetch(PLAYER_ID, "Hans");
+            //then
+            assertThat(completed, is(true));
+            assertThat(otherRan.get(), is(true));
+        }
+    }
+
+    @Test
+    public void testOnLogin__disallowedReleased() {
+        //given
+        Consumer<UUID> release = givenAReleaseMethod();
+        try (LoginPrefetcher prefetcher = new LoginPrefetcher(Duration.ofSeconds(2), 1)) {
+            prefetcher.register("wrappers", givenAReleasingTask(release));
+            prefetcher.awaitPrefetch(PLAYER_ID, "Hans");
+            PlayerLoginEvent event = givenALoginEvent(PLAYER_ID);
+            event.disallow(PlayerLoginEvent.Result.KICK_FULL, "full");
+            //when
+            prefetcher.onLogin(event);
+            //then
+            verify(release).accept(PLAYER_ID);
+            assertThat(prefetcher.isPending(PLAYER_ID), is(false));
+        }
+    }
+
+    @Test
+    public void testOnLogin__allowedClaimed() {
+        //given
+        Consumer<UUID> release = givenAReleaseMethod();
+        try (LoginPrefetcher prefetcher = new LoginPrefetcher(Duration.ofSeconds(2), 1, Duration.ZERO)) {
+            prefetcher.register("wrappers", givenAReleasingTask(release));
+            prefetcher.awaitPrefetch(PLAYER_ID, "Hans");
+            //when
+            prefetcher.onLogin(givenALoginEvent(PLAYER_ID));
+            prefetcher.awaitPrefetch(UUID.randomUUID(), "Franz");
+            //then
+            verify(release, never()).accept(PLAYER_ID);
+            assertThat(prefetcher.isPending(PLAYER_ID), is(false));
+        }
+    }
+
+    @Test
+    public void testAwaitPrefetch__unclaimedExpired() {
+        //given
+        Consumer<UUID> release = givenAReleaseMethod();
+        try (LoginPrefetcher prefetcher = new LoginPrefetcher(Duration.ofSeconds(2), 1, Duration.ZERO)) {
+            prefetcher.register("wrappers", givenAReleasingTask(release));
+            prefetcher.awaitPrefetch(PLAYER_ID, "Hans");
+            //when
+            prefetcher.awaitPrefetch(UUID.randomUUID(), "Franz");
+            //then
+            verify(release).accept(PLAYER_ID);
+            assertThat(prefetcher.isPending(PLAYER_ID), is(false));
+        }
+    }
+
+    private PrefetchTask givenAReleasingTask(Consumer<UUID> release) {
+        return PrefetchTask.withRelease((playerId, playerName) -> {
+            //nothing to load
+        }, release);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Consumer<UUID> givenAReleaseMethod() {
+        return mock(Consumer.class);
+    }
+
+    private PlayerLoginEvent givenALoginEvent(UUID playerId) {
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(playerId);
+        return new PlayerLoginEvent(player, "localhost", InetAddress.getLoopbackAddress());
+    }
+}
@@ -24,25 +24,56 @@
 
 package li.l1t.common.collections.cache;
 
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
 
+import java.util.AbstractMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Stream;
 
 /**
  * Caches mappings from one thing to another thing, wrapping Guava's {@link Cache} class with an
  * easier to use, Map-like API and support for the compute operation. When any invalid value is
  * accessed, all invalid values are removed from the cache.
+ * <p>
+ * Optionally, a cache may refresh ahead of expiry: Entries that are older than a soft expiry
+ * duration are still returned by {@link #getOrCompute(Object, Function)}, but a reload using the
+ * passed supplier is scheduled on an executor. Only entries older than the hard expiry duration
+ * are removed, causing callers to block on computation.
+ * <p>
+ * Caches may also be bounded by a maximum amount of entries or a maximum total weight, in which
+ * case least recently used entries are evicted once the bound is reached. Evictions are counted
+ * and can be queried using {@link #getEvictionCount()}.
  *
  * @author <a href="https://l1t.li/">Literallie</a>
  * @since 2016-10-19
  */
 public class GuavaMapCache<K, V> implements MapCache<K, V> {
-    private final Cache<K, V> proxy;
+    private static final Logger LOGGER = Logger.getLogger(GuavaMapCache.class.getName());
+    private static final long UNBOUNDED = -1;
+    private final Cache<K, CachedValue<V>> proxy;
+    private final Ticker ticker;
+    private final long softExpiryNanos;
+    private final Executor refreshExecutor;
+    private final Set<K> keysBeingRefreshed = ConcurrentHashMap.newKeySet();
+    private final List<BiConsumer<? super K, ? super V>> writeListeners = new CopyOnWriteArrayList<>();
+    private final List<BiConsumer<? super K, ? super V>> removalListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Creates a new map cache.
@@ -52,9 +83,127 @@ public class GuavaMapCache<K, V> implements MapCache<K, V> {
      * @param writeExpiryUnit     the unit of the write expiry duration
      */
     public GuavaMapCache(long writeExpiryDuration, TimeUnit writeExpiryUnit) {
-        this.proxy = CacheBuilder.newBuilder()
-                .expireAfterWrite(writeExpiryDuration, writeExpiryUnit)
-                .build();
+        this(Long.MAX_VALUE, writeExpiryDuration, writeExpiryUnit, null, Ticker.systemTicker());
+    }
+
+    /**
+     * Creates a new map cache that refreshes entries ahead of expiry. Entries older than the soft
+     * expiry duration are still returned by {@link #getOrCompute(Object, Function)}, but are
+     * reloaded on given executor using the supplier passed to that method. Entries older than the
+     * hard expiry duration are invalidated.
+     *
+     * @param softExpiryDuration the time after a value was cached after which it is refreshed on
+     *                           access
+     * @param hardExpiryDuration the time to wait after a value was cached before it is
+     *                           invalidated
+     * @param expiryUnit         the unit of both expiry durations
+     * @param refreshExecutor    the executor to reload values on
+     */
+    public GuavaMapCache(long softExpiryDuration, long hardExpiryDuration, TimeUnit expiryUnit,
+                         Executor refreshExecutor) {
+        this(softExpiryDuration, hardExpiryDuration, expiryUnit,
+                Preconditions.checkNotNull(refreshExecutor, "refreshExecutor"), Ticker.systemTicker());
+    }
+
+    /**
+     * Creates a new map cache that holds at most given amount of entries. If the cache would grow
+     * larger, entries that have not been used recently are evicted.
+     *
+     * @param writeExpiryDuration the time to wait after a value was cached before it is
+     *                            invalidated
+     * @param writeExpiryUnit     the unit of the write expiry duration
+     * @param maximumSize         the maximum amount of entries in this cache
+     */
+    public GuavaMapCache(long writeExpiryDuration, TimeUnit writeExpiryUnit, long maximumSize) {
+        this(Long.MAX_VALUE, writeExpiryDuration, writeExpiryUnit, null, Ticker.systemTicker(),
+                checkBound(maximumSize, "maximumSize"), UNBOUNDED, null);
+    }
+
+    /**
+     * Creates a new map cache that holds entries up to a maximum total weight. If the cache would
+     * grow heavier, entries that have not been used recently are evicted. This is useful if values
+     * differ a lot in size, for example collections.
+     *
+     * @param writeExpiryDuration the time to wait after a value was cached before it is
+     *                            invalidated
+     * @param writeExpiryUnit     the unit of the write expiry duration
+     * @param maximumWeight       the maximum total weight of all entries in this cache
+     * @param weigher             the weigher determining the weight of an entry, which must not
+     *                            change while it is cached
+     */
+    public GuavaMapCache(long writeExpiryDuration, TimeUnit writeExpiryUnit,
+                         long maximumWeight, Weigher<? super K, ? super V> weigher) {
+        this(Long.MAX_VALUE, writeExpiryDuration, writeExpiryUnit, null, Ticker.systemTicker(),
+                UNBOUNDED, checkBound(maximumWeight, "maximumWeight"), Preconditions.checkNotNull(weigher, "weigher"));
+    }
+
+    GuavaMapCache(long softExpiryDuration, long hardExpiryDuration, TimeUnit expiryUnit,
+                  Executor refreshExecutor, Ticker ticker) {
+        this(softExpiryDuration, hardExpiryDuration, expiryUnit, refreshExecutor, ticker, UNBOUNDED, UNBOUNDED, null);
+    }
+
+    GuavaMapCache(long softExpiryDuration, long hardExpiryDuration, TimeUnit expiryUnit,
+                  Executor refreshExecutor, Ticker ticker,
+                  long maximumSize, long maximumWeight, Weigher<? super K, ? super V> weigher) {
+        Preconditions.checkArgument(softExpiryDuration > 0, "softExpiryDuration must be positive: %s", softExpiryDuration);
+        Preconditions.checkArgument(softExpiryDuration == Long.MAX_VALUE || softExpiryDuration <= hardExpiryDuration,
+                "softExpiryDuration must not exceed hardExpiryDuration: %s > %s", softExpiryDuration, hardExpiryDuration);
+        this.ticker = Preconditions.checkNotNull(ticker, "ticker");
+        this.softExpiryNanos = expiryUnit.toNanos(softExpiryDuration);
+        this.refreshExecutor = refreshExecutor;
+        CacheBuilder<K, CachedValue<V>> builder = CacheBuilder.newBuilder()
+                .expireAfterWrite(hardExpiryDuration, expiryUnit)
+                .ticker(ticker)
+                .recordStats()
+                .removalListener((RemovalNotification<K, CachedValue<V>> notification) -> notifyRemoval(notification));
+        if (maximumSize != UNBOUNDED) {
+            builder.maximumSize(maximumSize);
+        }
+        if (weigher != null) {
+            this.proxy = builder.maximumWeight(maximumWeight)
+                    .weigher((K key, CachedValue<V> value) -> weigher.weigh(key, value.getValue()))
+                    .build();
+        } else {
+            this.proxy = builder.build();
+        }
+    }
+
+    private void notifyRemoval(RemovalNotification<K, CachedValue<V>> notification) {
+        if (notification.getKey() != null && notification.getValue() != null) {
+            V value = notification.getValue().getValue();
+            removalListeners.forEach(listener -> listener.accept(notification.getKey(), value));
+        }
+    }
+
+    /**
+     * Adds a listener that is notified after a value has been stored in this cache, including
+     * values stored by a refresh.
+     *
+     * @param listener the listener, accepting key and value of stored entries
+     */
+    void addWriteListener(BiConsumer<? super K, ? super V> listener) {
+        writeListeners.add(Preconditions.checkNotNull(listener, "listener"));
+    }
+
+    private void notifyWrite(K key, V value) {
+        writeListeners.forEach(listener -> listener.accept(key, value));
+    }
+
+    /**
+     * Adds a listener that is notified whenever an entry is removed from this cache, be it
+     * through invalidation, expiry, eviction, or because it was replaced by another value. Note
+     * that listeners may be called on any thread accessing this cache, but not while the cache is
+     * locked.
+     *
+     * @param listener the listener, accepting key and value of removed entries
+     */
+    void addRemovalListener(BiConsumer<? super K, ? super V> listener) {
+        removalListeners.add(Preconditions.checkNotNull(listener, "listener"));
+    }
+
+    private static long checkBound(long bound, String name) {
+        Preconditions.checkArgument(bound >= 0, "%s must not be negative: %s", name, bound);
+        return bound;
     }
 
     /**
@@ -71,7 +220,9 @@ public class GuavaMapCache<K, V> implements MapCache<K, V> {
 
     @Override
     public <R extends V> R cache(K key, R value) {
-        proxy.put(key, value);
+        Preconditions.checkNotNull(value, "value");
+        proxy.put(key, new CachedValue<>(value, ticker.read()));
+        notifyWrite(key, value);
         return value;
     }
 
@@ -82,17 +233,48 @@ public class GuavaMapCache<K, V> implements MapCache<K, V> {
 
     @Override
     public Optional<V> get(K key) {
-        return Optional.ofNullable(proxy.getIfPresent(key));
+        return Optional.ofNullable(proxy.getIfPresent(key)).map(CachedValue::getValue);
     }
 
     @Override
     public V getOrCompute(K key, Function<K, ? extends V> supplier) {
-        Optional<V> value = get(key);
-        if (value.isPresent()) {
-            return value.get();
-        } else {
+        CachedValue<V> cached = proxy.getIfPresent(key);
+        if (cached == null) {
             return compute(key, supplier);
         }
+        if (isRefreshAhead() && ticker.read() - cached.getWrittenAtNanos() >= softExpiryNanos) {
+            scheduleRefresh(key, cached, supplier);
+        }
+        return cached.getValue();
+    }
+
+    private boolean isRefreshAhead() {
+        return refreshExecutor != null;
+    }
+
+    private void scheduleRefresh(K key, CachedValue<V> staleValue, Function<K, ? extends V> supplier) {
+        if (!keysBeingRefreshed.add(key)) {
+            return; //already being refreshed
+        }
+        try {
+            refreshExecutor.execute(() -> refresh(key, staleValue, supplier));
+        } catch (RejectedExecutionException e) {
+            keysBeingRefreshed.remove(key);
+        }
+    }
+
+    private void refresh(K key, CachedValue<V> staleValue, Function<K, ? extends V> supplier) {
+        try {
+            CachedValue<V> freshValue = new CachedValue<>(supplier.apply(key), ticker.read());
+            //if the entry has been invalidated or replaced meanwhile, our value might already be outdated
+            if (proxy.asMap().replace(key, staleValue, freshValue)) {
+                notifyWrite(key, freshValue.getValue());
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to refresh cached value for " + key + ", keeping stale value", e);
+        } finally {
+            keysBeingRefreshed.remove(key);
+        }
     }
 
     @Override
@@ -105,18 +287,52 @@ public class GuavaMapCache<K, V> implements MapCache<K, V> {
         return get(key).isPresent();
     }
 
+    /**
+     * @return the approximate amount of entries currently in this cache
+     */
+    public long getSize() {
+        return proxy.size();
+    }
+
+    /**
+     * @return how many entries have been removed from this cache because of size or weight limits
+     * or expiry since its creation, not counting explicit invalidation
+     */
+    public long getEvictionCount() {
+        return proxy.stats().evictionCount();
+    }
+
     @Override
     public Stream<Map.Entry<K, V>> entryStream() {
-        return proxy.asMap().entrySet().stream();
+        return proxy.asMap().entrySet().stream()
+                .<Map.Entry<K, V>>map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().getValue()));
     }
 
     @Override
     public Stream<V> valueStream() {
-        return proxy.asMap().values().stream();
+        return proxy.asMap().values().stream().map(CachedValue::getValue);
     }
 
     @Override
     public Stream<K> keyStream() {
         return proxy.asMap().keySet().stream();
     }
+
+    private static final class CachedValue<V> {
+        private final V value;
+        private final long writtenAtNanos;
+
+        private CachedValue(V value, long writtenAtNanos) {
+            this.value = value;
+            this.writtenAtNanos = writtenAtNanos;
+        }
+
+        private V getValue() {
+            return value;
+        }
+
+        private long getWrittenAtNanos() {
+            return writtenAtNanos;
+        }
+    }
 }
@@ -28,6 +28,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Verify;
 
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Stream;
@@ -35,7 +36,8 @@ import java.util.stream.Stream;
 /**
  * Caches things that are identifiable and can be uniquely mapped back to an identifier. Cache
  * entries are expired automatically some time after they have been stored. Uses a {@link MapCache}
- * as backend.
+ * as backend. Secondary indices over the cached values can be registered using {@link
+ * #addSecondaryIndex(Function)}.
  *
  * @param <K> the key type of this cache
  * @param <V> the value type of this cache
@@ -43,7 +45,7 @@ import java.util.stream.Stream;
  * @since 2016-10-19
  */
 public class MapIdCache<K, V> implements IdCache<K, V> {
-    private final MapCache<K, V> proxy;
+    private final GuavaMapCache<K, V> proxy;
     private final Function<? super V, K> idFunction;
 
     /**
@@ -60,6 +62,42 @@ public class MapIdCache<K, V> implements IdCache<K, V> {
         this.idFunction = Preconditions.checkNotNull(idFunction);
     }
 
+    /**
+     * Creates a new id cache that holds at most given amount of entries, evicting entries that
+     * have not been used recently if it would grow larger.
+     *
+     * @param idFunction          the function mapping values to their unique ids, may not return
+     *                            null
+     * @param writeExpiryDuration the time duration to wait after a value has been cached before it
+     *                            is invalidated
+     * @param writeExpiryUnit     the unit of the write expiry duration
+     * @param maximumSize         the maximum amount of entries in this cache
+     */
+    public MapIdCache(Function<? super V, K> idFunction, long writeExpiryDuration, TimeUnit writeExpiryUnit,
+                      long maximumSize) {
+        this.proxy = new GuavaMapCache<>(writeExpiryDuration, writeExpiryUnit, maximumSize);
+        this.idFunction = Preconditions.checkNotNull(idFunction);
+    }
+
+    /**
+     * Creates a new id cache that refreshes entries ahead of expiry, as described in {@link
+     * GuavaMapCache#GuavaMapCache(long, long, TimeUnit, Executor)}.
+     *
+     * @param idFunction         the function mapping values to their unique ids, may not return
+     *                           null
+     * @param softExpiryDuration the time after a value was cached after which it is refreshed on
+     *                           access
+     * @param hardExpiryDuration the time to wait after a value was cached before it is
+     *                           invalidated
+     * @param expiryUnit         the unit of both expiry durations
+     * @param refreshExecutor    the executor to reload values on
+     */
+    public MapIdCache(Function<? super V, K> idFunction, long softExpiryDuration, long hardExpiryDuration,
+                      TimeUnit expiryUnit, Executor refreshExecutor) {
+        this.proxy = new GuavaMapCache<>(softExpiryDuration, hardExpiryDuration, expiryUnit, refreshExecutor);
+        this.idFunction = Preconditions.checkNotNull(idFunction);
+    }
+
     /**
      * Creates a new id cache with a write expiry time of five minutes.
      *
@@ -69,6 +107,22 @@ public class MapIdCache<K, V> implements IdCache<K, V> {
         this(idFunction, 5, TimeUnit.MINUTES);
     }
 
+    /**
+     * Registers a secondary index over the values of this cache. Values that are already cached
+     * are added to the index immediately.
+     *
+     * @param keyFunction the function mapping values to their secondary key, may not return null
+     * @param <S>         the secondary key type
+     * @return the new index
+     */
+    public <S> SecondaryIndex<S, K, V> addSecondaryIndex(Function<? super V, S> keyFunction) {
+        SecondaryIndex<S, K, V> index = new SecondaryIndex<>(proxy, keyFunction);
+        proxy.addWriteListener(index::add);
+        proxy.addRemovalListener(index::handleRemoval);
+        proxy.entryStream().forEach(entry -> index.add(entry.getKey(), entry.getValue()));
+        return index;
+    }
+
     @Override
     public void clear() {
         proxy.clear();
@@ -101,12 +155,7 @@ public class MapIdCache<K, V> implements IdCache<K, V> {
 
     @Override
     public V getOrCompute(K id, Function<? super K, ? extends V> supplier) {
-        Optional<V> value = get(id);
-        if (value.isPresent()) {
-            return value.get();
-        } else {
-            return compute(id, supplier);
-        }
+        return proxy.getOrCompute(id, key -> supply(key, supplier));
     }
 
     @Override
@@ -130,6 +179,14 @@ public class MapIdCache<K, V> implements IdCache<K, V> {
         return result.isPresent() && result.get().equals(value);
     }
 
+    /**
+     * @return how many entries have been removed from this cache because of size limits or expiry
+     * since its creation, not counting explicit invalidation
+     */
+    public long getEvictionCount() {
+        return proxy.getEvictionCount();
+    }
+
     @Override
     public Stream<V> stream() {
         return proxy.valueStream();
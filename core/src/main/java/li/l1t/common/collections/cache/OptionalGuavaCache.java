@@ -25,6 +25,7 @@
 package li.l1t.common.collections.cache;
 
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 
@@ -48,6 +49,35 @@ public class OptionalGuavaCache<K, V> extends GuavaMapCache<K, Optional<V>> impl
         super(writeExpiryDuration, writeExpiryUnit);
     }
 
+    /**
+     * Creates a new optional id cache that holds at most given amount of entries, evicting entries
+     * that have not been used recently if it would grow larger. Cached absence counts as an entry.
+     *
+     * @param writeExpiryDuration the time to wait after a value was cached before it is
+     *                            invalidated
+     * @param writeExpiryUnit     the unit of the write expiry duration
+     * @param maximumSize         the maximum amount of entries in this cache
+     */
+    public OptionalGuavaCache(long writeExpiryDuration, TimeUnit writeExpiryUnit, long maximumSize) {
+        super(writeExpiryDuration, writeExpiryUnit, maximumSize);
+    }
+
+    /**
+     * Creates a new optional id cache that refreshes entries ahead of expiry, as described in
+     * {@link GuavaMapCache#GuavaMapCache(long, long, TimeUnit, Executor)}.
+     *
+     * @param softExpiryDuration the time after a value was cached after which it is refreshed on
+     *                           access
+     * @param hardExpiryDuration the time to wait after a value was cached before it is
+     *                           invalidated
+     * @param expiryUnit         the unit of both expiry durations
+     * @param refreshExecutor    the executor to reload values on
+     */
+    public OptionalGuavaCache(long softExpiryDuration, long hardExpiryDuration, TimeUnit expiryUnit,
+                              Executor refreshExecutor) {
+        super(softExpiryDuration, hardExpiryDuration, expiryUnit, refreshExecutor);
+    }
+
     /**
      * Creates a new optional id cache with a write expiry time of five minutes.
      */
@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.collections.cache;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A secondary index over the values of a {@link MapIdCache}, mapping a secondary key derived from
+ * each value to the ids of all cached values with that key. This allows to find and invalidate
+ * all cached values with a secondary key, for example all purchases of a player, in time
+ * proportional to the amount of matching values instead of the size of the whole cache. The index
+ * is kept up to date as values are cached, invalidated, expired, or evicted.
+ *
+ * @param <S> the secondary key type
+ * @param <K> the id type of the cache
+ * @param <V> the value type of the cache
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class SecondaryIndex<S, K, V> {
+    private final GuavaMapCache<K, V> cache;
+    private final Function<? super V, S> keyFunction;
+    private final ConcurrentHashMap<S, Set<K>> idsByKey = new ConcurrentHashMap<>();
+
+    SecondaryIndex(GuavaMapCache<K, V> cache, Function<? super V, S> keyFunction) {
+        this.cache = Preconditions.checkNotNull(cache, "cache");
+        this.keyFunction = Preconditions.checkNotNull(keyFunction, "keyFunction");
+    }
+
+    void add(K id, V value) {
+        //inside of compute so that a concurrent removal cannot drop the set we are adding to
+        idsByKey.compute(keyOf(value), (key, ids) -> {
+            Set<K> result = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+            result.add(id);
+            return result;
+        });
+    }
+
+    void handleRemoval(K id, V removedValue) {
+        S removedKey = keyOf(removedValue);
+        if (isCachedWithKey(id, removedKey)) {
+            return; //replaced by a value with the same secondary key
+        }
+        idsByKey.computeIfPresent(removedKey, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private boolean isCachedWithKey(K id, S secondaryKey) {
+        Optional<V> current = cache.get(id);
+        return current.isPresent() && Objects.equals(keyOf(current.get()), secondaryKey);
+    }
+
+    private S keyOf(V value) {
+        return keyFunction.apply(value);
+    }
+
+    /**
+     * Finds all values that are currently cached and have given secondary key.
+     *
+     * @param secondaryKey the secondary key to look up
+     * @return an immutable collection of the cached values with given secondary key
+     */
+    public Collection<V> find(S secondaryKey) {
+        Set<K> ids = idsByKey.get(secondaryKey);
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(ids.stream()
+                .map(cache::get)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .filter(value -> Objects.equals(keyOf(value), secondaryKey))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Invalidates all cached values that have given secondary key.
+     *
+     * @param secondaryKey the secondary key of the values to invalidate
+     */
+    public void invalidate(S secondaryKey) {
+        Set<K> ids = idsByKey.remove(secondaryKey);
+        if (ids != null) {
+            ids.stream()
+                    .filter(id -> isCachedWithKey(id, secondaryKey))
+                    .forEach(cache::invalidateKey);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.builder;
+
+import li.l1t.common.util.math.MathOperator;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ConcurrentSqlNumberHolder} that does not lock. Value and pending modifier are stored as raw bits in atomic
+ * longs, modifications are applied using compare-and-set, and the modifier is drained atomically when a snapshot is
+ * taken, so that no modification is lost or written twice. Subclasses define how numbers map to bits and how bits are
+ * added.
+ * <p>
+ * Note that value and modifier are not updated atomically as a pair. The modifier is what gets written to the
+ * database, the value is merely a local cache.
+ * </p>
+ *
+ * @param <T> the type of number held
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ * @deprecated Part of the deprecated QueryBuilder API. See {@link QueryBuilder} for details.
+ */
+@Deprecated
+public abstract class AtomicSqlNumberHolder<T extends Number> extends ConcurrentSqlNumberHolder<T> {
+    /**
+     * Bits representing zero for all implementations, so that draining can just set the modifier to this.
+     */
+    private static final long ZERO_BITS = 0L;
+    private final AtomicLong valueBits;
+    private final AtomicLong modifierBits = new AtomicLong(ZERO_BITS);
+
+    protected AtomicSqlNumberHolder(@Nonnull String columnName, @Nonnull T initialValue,
+                                    @Nonnull MathOperator<T> mathOperator) {
+        super(columnName, initialValue, mathOperator);
+        this.valueBits = new AtomicLong(toBits(initialValue));
+    }
+
+    /**
+     * @param number the number to convert, never null
+     * @return the bits representing given number
+     */
+    protected abstract long toBits(@Nonnull T number);
+
+    /**
+     * @param bits the bits to convert
+     * @return the number represented by given bits
+     */
+    @Nonnull
+    protected abstract T fromBits(long bits);
+
+    /**
+     * @param bits      the bits of the first summand
+     * @param deltaBits the bits of the second summand
+     * @return the bits of the sum of both numbers
+     */
+    protected abstract long addBits(long bits, long deltaBits);
+
+    /**
+     * @param bits the bits to check
+     * @return whether given bits represent zero
+     */
+    protected boolean isZeroBits(long bits) {
+        return bits == ZERO_BITS;
+    }
+
+    /**
+     * Queues a modification given as raw bits. This is what primitive-specialised modification methods of subclasses
+     * delegate to in order to avoid boxing.
+     *
+     * @param deltaBits the bits of the modifier to apply
+     */
+    protected void modifyBits(long deltaBits) {
+        valueBits(); //make sure the remote value is present before applying the modification on top of it
+        accumulate(modifierBits, deltaBits);
+        accumulate(valueBits, deltaBits);
+        markModified();
+    }
+
+    private void accumulate(AtomicLong target, long deltaBits) {
+        long previous;
+        do {
+            previous = target.get();
+        } while (!target.compareAndSet(previous, addBits(previous, deltaBits)));
+    }
+
+    /**
+     * Gets the bits of the current value, fetching it from the data source if it is zero, just like {@link
+     * #getValue()}.
+     *
+     * @return the bits of the current value
+     */
+    protected long valueBits() {
+        long bits = valueBits.get();
+        if (isZeroBits(bits) && getDataSource() != null) {
+            getDataSource().select(this);
+            bits = valueBits.get();
+        }
+        return bits;
+    }
+
+    @Nonnull
+    @Override
+    public SqlValueHolder modify(T paramModifier) {
+        modifyBits(toBits(paramModifier));
+        return this;
+    }
+
+    @Override
+    protected T consumeModifier() {
+        return fromBits(modifierBits.getAndSet(ZERO_BITS));
+    }
+
+    @Override
+    public void restoreModifier(@Nonnull T consumedModifier) {
+        accumulate(modifierBits, toBits(consumedModifier));
+    }
+
+    @Override
+    public boolean isModified() {
+        return !isZeroBits(modifierBits.get());
+    }
+
+    @Override
+    public T getValue() {
+        return fromBits(valueBits());
+    }
+
+    @Override
+    public T getModifier() {
+        return fromBits(modifierBits.get());
+    }
+
+    @Override
+    protected T getModifierInternal() {
+        return getModifier();
+    }
+
+    @Override
+    public void updateValue(@Nullable T newValue) {
+        updateValueInternal(newValue);
+    }
+
+    @Override
+    protected void updateValueInternal(@Nullable T newValue) {
+        modifierBits.set(ZERO_BITS);
+        valueBits.set(newValue == null ? ZERO_BITS : toBits(newValue));
+        setFetched(true);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "{" +
+                "columnName='" + getColumnName() + '\'' +
+                ", value=" + fromBits(valueBits.get()) +
+                ", modifier=" + getModifier() +
+                ", fetched=" + isFetched() +
+                '}';
+    }
+}
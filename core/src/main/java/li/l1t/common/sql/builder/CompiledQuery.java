@@ -0,0 +1,359 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.builder;
+
+import li.l1t.common.sql.PreparedStatementFactory;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.Nonnull;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * SQL text compiled from the shape of a {@link QueryBuilder}, that is its table name and the column names and types
+ * of its parts and identifiers. Builders remember the compiled query of their last build and only rebind parameters
+ * as long as their shape stays the same. Compiled queries are shared between builders of the same shape, so that a
+ * builder per player does not compile the same statement once per player.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ * @deprecated Part of the deprecated QueryBuilder API. See {@link QueryBuilder} for details.
+ */
+@Deprecated
+final class CompiledQuery {
+    /**
+     * Upper bound for the amount of shared shapes. Shapes beyond that are still compiled, just not shared, so that
+     * builders with ever-changing shapes cannot grow the shared map indefinitely.
+     */
+    private static final int MAX_SHARED_SHAPES = 512;
+    private static final ConcurrentMap<CompiledQuery, CompiledQuery> SHARED_QUERIES = new ConcurrentHashMap<>();
+    private final Kind kind;
+    private final String tableName;
+    private final String[] columnNames;
+    private final QuerySnapshot.Type[] types;
+    private final int partCount;
+    private final int hashCode;
+    private final String sql;
+
+    private CompiledQuery(Kind kind, String tableName, @Nullable Collection<QuerySnapshot> parts,
+                          @Nullable Collection<QuerySnapshot> identifiers) {
+        this.kind = kind;
+        this.tableName = tableName;
+        this.partCount = parts == null ? 0 : parts.size();
+        int columnCount = this.partCount;
+        if (identifiers != null) {
+            for (QuerySnapshot identifier : identifiers) {
+                if (!kind.isSkipped(identifier, parts)) {
+                    columnCount++;
+                }
+            }
+        }
+        this.columnNames = new String[columnCount];
+        this.types = new QuerySnapshot.Type[columnCount];
+        int index = 0;
+        if (parts != null) {
+            for (QuerySnapshot part : parts) {
+                index = putColumn(index, part);
+            }
+        }
+        if (identifiers != null) {
+            for (QuerySnapshot identifier : identifiers) {
+                if (!kind.isSkipped(identifier, parts)) {
+                    index = putColumn(index, identifier);
+                }
+            }
+        }
+        this.hashCode = 31 * (31 * (31 * kind.hashCode() + tableName.hashCode()) +
+                Arrays.hashCode(columnNames)) + Arrays.hashCode(types);
+        this.sql = kind.render(this);
+    }
+
+    private int putColumn(int index, QuerySnapshot snapshot) {
+        columnNames[index] = snapshot.getColumnName();
+        types[index] = snapshot.getType();
+        return index + 1;
+    }
+
+    /**
+     * Compiles given shape, reusing the previous compiled query if the shape did not change since. This does not
+     * allocate anything if the shape did not change.
+     *
+     * @param previous    the query previously compiled by the calling builder, or null if there is none
+     * @param kind        the kind of statement to compile
+     * @param tableName   the table the statement targets
+     * @param parts       the parts to compile into the statement, or null if there are none
+     * @param identifiers the identifiers to compile into the statement, or null if there are none
+     * @return the compiled query for given shape
+     */
+    @Nonnull
+    static CompiledQuery compile(@Nullable CompiledQuery previous, Kind kind, String tableName,
+                                 @Nullable Collection<QuerySnapshot> parts,
+                                 @Nullable Collection<QuerySnapshot> identifiers) {
+        if (previous != null && previous.matches(kind, tableName, parts, identifiers)) {
+            return previous;
+        }
+        CompiledQuery compiled = new CompiledQuery(kind, tableName, parts, identifiers);
+        CompiledQuery shared = SHARED_QUERIES.get(compiled);
+        if (shared != null) {
+            return shared;
+        } else if (SHARED_QUERIES.size() < MAX_SHARED_SHAPES) {
+            shared = SHARED_QUERIES.putIfAbsent(compiled, compiled);
+        }
+        return shared == null ? compiled : shared;
+    }
+
+    /**
+     * Checks whether given shape matches this query's shape without allocating anything.
+     *
+     * @param kind        the kind of statement
+     * @param tableName   the table the statement targets
+     * @param parts       the parts of the shape, or null if there are none
+     * @param identifiers the identifiers of the shape, or null if there are none
+     * @return whether this query was compiled from the same shape
+     */
+    boolean matches(Kind kind, String tableName, @Nullable Collection<QuerySnapshot> parts,
+                    @Nullable Collection<QuerySnapshot> identifiers) {
+        if (this.kind != kind || !this.tableName.equals(tableName)) {
+            return false;
+        }
+        int index = 0;
+        if (parts != null) {
+            for (QuerySnapshot part : parts) {
+                if (index >= partCount || !columnMatches(index, part)) {
+                    return false;
+                }
+                index++;
+            }
+        }
+        if (index != partCount) {
+            return false;
+        }
+        if (identifiers != null) {
+            for (QuerySnapshot identifier : identifiers) {
+                if (kind.isSkipped(identifier, parts)) {
+                    continue;
+                }
+                if (index >= columnNames.length || !columnMatches(index, identifier)) {
+                    return false;
+                }
+                index++;
+            }
+        }
+        return index == columnNames.length;
+    }
+
+    private boolean columnMatches(int index, QuerySnapshot snapshot) {
+        return types[index] == snapshot.getType() && columnNames[index].equals(snapshot.getColumnName());
+    }
+
+    /**
+     * Prepares this query and binds the current values of given snapshots to it. Given snapshots must match the shape
+     * this query was compiled from, and {@link QuerySnapshot#getSnapshot()} is called exactly once for each bound
+     * snapshot.
+     *
+     * @param statementFactory where to get the statement from
+     * @param parts            the parts to bind, or null if there are none
+     * @param identifiers      the identifiers to bind, or null if there are none
+     * @return the prepared statement with all parameters bound
+     * @throws SQLException if a database error occurs
+     */
+    @Nonnull
+    PreparedStatement prepare(@Nonnull PreparedStatementFactory statementFactory,
+                              @Nullable Collection<QuerySnapshot> parts,
+                              @Nullable Collection<QuerySnapshot> identifiers) throws SQLException {
+        PreparedStatement statement = statementFactory.prepareStatement(sql);
+        statementFactory.fillStatement(statement, bind(parts, identifiers));
+        return statement;
+    }
+
+    /**
+     * Binds the current values of given snapshots in the order expected by this query's SQL text. Given snapshots
+     * must match the shape this query was compiled from, and {@link QuerySnapshot#getSnapshot()} is called exactly
+     * once for each bound snapshot.
+     *
+     * @param parts       the parts to bind, or null if there are none
+     * @param identifiers the identifiers to bind, or null if there are none
+     * @return the parameters for this query
+     */
+    @Nonnull
+    Object[] bind(@Nullable Collection<QuerySnapshot> parts, @Nullable Collection<QuerySnapshot> identifiers) {
+        int boundCount = kind.bindsParts() ? columnNames.length : columnNames.length - partCount;
+        Object[] arguments = new Object[kind == Kind.UPSERT ? boundCount * 2 : boundCount];
+        int index = 0;
+        if (parts != null && kind.bindsParts()) {
+            for (QuerySnapshot part : parts) {
+                arguments[index++] = part.getSnapshot();
+            }
+        }
+        if (identifiers != null) {
+            for (QuerySnapshot identifier : identifiers) {
+                if (!kind.isSkipped(identifier, parts)) {
+                    arguments[index++] = identifier.getSnapshot();
+                }
+            }
+        }
+        if (kind == Kind.UPSERT) { //the same values are bound to the INSERT and the UPDATE clause
+            System.arraycopy(arguments, 0, arguments, boundCount, boundCount);
+        }
+        return arguments;
+    }
+
+    @Nonnull
+    String getSql() {
+        return sql;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompiledQuery that = (CompiledQuery) o;
+        return hashCode == that.hashCode && kind == that.kind && partCount == that.partCount &&
+                tableName.equals(that.tableName) &&
+                Arrays.equals(columnNames, that.columnNames) && Arrays.equals(types, that.types);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledQuery{" + sql + "}";
+    }
+
+    /**
+     * The kinds of statement a query builder can compile.
+     */
+    enum Kind {
+        /**
+         * {@code INSERT ... ON DUPLICATE KEY UPDATE} of all parts and identifiers, with identifiers that are also
+         * parts only written once.
+         */
+        UPSERT {
+            @Override
+            String render(CompiledQuery query) {
+                StringBuilder builder = new StringBuilder("INSERT INTO ").append(query.tableName).append(" SET ");
+                for (int i = 0; i < query.columnNames.length; i++) {
+                    appendSeparator(builder, i, ",") //NUMBER_MODIFICATION has name=name+value, which is not allowed in INSERT
+                            .append(QuerySnapshot.Type.OBJECT_UPDATE.getOperator(query.columnNames[i]));
+                }
+                builder.append(" ON DUPLICATE KEY UPDATE ");
+                for (int i = 0; i < query.columnNames.length; i++) {
+                    appendSeparator(builder, i, ",").append(query.types[i].getOperator(query.columnNames[i]));
+                }
+                return builder.toString();
+            }
+
+            @Override
+            boolean isSkipped(QuerySnapshot identifier, @Nullable Collection<QuerySnapshot> parts) {
+                return parts != null && parts.contains(identifier);
+            }
+        },
+        /**
+         * {@code UPDATE} of all parts in rows matching all identifiers.
+         */
+        UPDATE {
+            @Override
+            String render(CompiledQuery query) {
+                StringBuilder builder = new StringBuilder("UPDATE ").append(query.tableName).append(" SET ");
+                for (int i = 0; i < query.partCount; i++) {
+                    appendSeparator(builder, i, ",").append(query.types[i].getOperator(query.columnNames[i]));
+                }
+                return appendWhere(builder.append(" WHERE "), query).toString();
+            }
+        },
+        /**
+         * {@code SELECT} of all part and identifier columns in rows matching all identifiers.
+         */
+        SELECT {
+            @Override
+            String render(CompiledQuery query) {
+                StringBuilder builder = new StringBuilder("SELECT ");
+                if (query.columnNames.length == 0) {
+                    builder.append("*");
+                } else {
+                    for (int i = 0; i < query.columnNames.length; i++) {
+                        appendSeparator(builder, i, ",").append(query.columnNames[i]);
+                    }
+                }
+                return appendSelectWhere(builder.append(" FROM ").append(query.tableName), query);
+            }
+
+            @Override
+            boolean bindsParts() {
+                return false;
+            }
+        },
+        /**
+         * {@code SELECT *} in rows matching all identifiers. Parts are not part of this kind of query.
+         */
+        SELECT_STAR {
+            @Override
+            String render(CompiledQuery query) {
+                return appendSelectWhere(new StringBuilder("SELECT * FROM ").append(query.tableName), query);
+            }
+
+            @Override
+            boolean bindsParts() {
+                return false;
+            }
+        };
+
+        abstract String render(CompiledQuery query);
+
+        boolean isSkipped(QuerySnapshot identifier, @Nullable Collection<QuerySnapshot> parts) {
+            return false;
+        }
+
+        boolean bindsParts() {
+            return true;
+        }
+
+        static StringBuilder appendSeparator(StringBuilder builder, int index, String separator) {
+            return index == 0 ? builder : builder.append(separator);
+        }
+
+        static StringBuilder appendWhere(StringBuilder builder, CompiledQuery query) {
+            for (int i = query.partCount; i < query.columnNames.length; i++) {
+                appendSeparator(builder, i - query.partCount, " AND ")
+                        .append(query.types[i].getOperator(query.columnNames[i]));
+            }
+            return builder;
+        }
+
+        static String appendSelectWhere(StringBuilder builder, CompiledQuery query) {
+            if (query.columnNames.length > query.partCount) {
+                appendWhere(builder.append(" WHERE "), query);
+            }
+            return builder.toString();
+        }
+    }
+}
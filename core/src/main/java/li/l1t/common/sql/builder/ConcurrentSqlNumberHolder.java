@@ -61,20 +61,37 @@ public class ConcurrentSqlNumberHolder<T extends Number> extends SqlValueHolder<
     public ConcurrentSqlNumberHolder(@Nonnull String columnName, @Nonnull T initialValue, @Nonnull MathOperator<T> mathOperator) {
         super(columnName, initialValue); //Can't update w/o MathOperator
         this.mathOperator = mathOperator;
-        this.updateValue(initialValue);
+        this.modifier = mathOperator.getZero(); //not updateValue(...), subclasses might not be initialised yet
+        this.setFetched(true);
     }
 
     public ConcurrentSqlNumberHolder(@Nonnull String columnName, @Nonnull MathOperator<T> mathOperator) {
         this(columnName, mathOperator.getZero(), mathOperator);
     }
 
+    /**
+     * Gets an instance from an annotation. For {@link Integer}, {@link Long} and {@link Double}, this returns lock-free
+     * {@link AtomicSqlNumberHolder atomic holders}.
+     *
+     * @param source Annotation to get data from
+     * @return The created object
+     */
     @Nonnull
     public static ConcurrentSqlNumberHolder<?> fromAnnotation(@Nonnull final SqlValueCache source) {
+        String columnName = source.value().intern();
+        if (source.numberType() == Integer.class) {
+            return new IntSqlNumberHolder(columnName);
+        } else if (source.numberType() == Long.class) {
+            return new LongSqlNumberHolder(columnName);
+        } else if (source.numberType() == Double.class) {
+            return new DoubleSqlNumberHolder(columnName);
+        }
+
         MathOperator<? extends Number> mathOperator = NumberHelper.getOperator(source.numberType());
         Validate.notNull(mathOperator, "Invalid Number class specified: " + source.numberType().getName());
 
         //noinspection ConstantConditions
-        return new ConcurrentSqlNumberHolder<>(source.value().intern(), mathOperator);
+        return new ConcurrentSqlNumberHolder<>(columnName, mathOperator);
     }
 
     @Override
@@ -127,6 +144,23 @@ public class ConcurrentSqlNumberHolder<T extends Number> extends SqlValueHolder<
         }
     }
 
+    /**
+     * Puts back a modifier that has been consumed by {@link #getSnapshot()}, but could not be written to the database,
+     * so that it is written with the next update. Unlike {@link #modify(Number)}, this does not change the value.
+     *
+     * @param consumedModifier the consumed modifier to put back
+     */
+    public void restoreModifier(@Nonnull T consumedModifier) {
+        ReentrantReadWriteLock.WriteLock writeLock = readWriteLock.writeLock();
+        writeLock.lock();
+
+        try {
+            this.modifier = mathOperator.add(this.getModifierInternal(), consumedModifier);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
     /**
      * Resets the internal modifier of this object, meaning that any cached data is lost.
      *
@@ -141,7 +175,7 @@ public class ConcurrentSqlNumberHolder<T extends Number> extends SqlValueHolder<
     @Override
     public boolean isModified() {
         ReentrantReadWriteLock.ReadLock readLock = readWriteLock.readLock();
-        readLock.unlock();
+        readLock.lock();
 
         try {
             return !modifier.equals(mathOperator.getZero());
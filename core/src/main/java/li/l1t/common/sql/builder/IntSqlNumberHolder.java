@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.builder;
+
+import li.l1t.common.util.math.MathOperator;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A lock-free number holder for {@code int} columns. Use {@link #add(int)} and {@link #intValue()} to avoid boxing.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ * @deprecated Part of the deprecated QueryBuilder API. See {@link QueryBuilder} for details.
+ */
+@Deprecated
+public class IntSqlNumberHolder extends AtomicSqlNumberHolder<Integer> {
+    public IntSqlNumberHolder(@Nonnull String columnName, int initialValue) {
+        super(columnName, initialValue, MathOperator.INTEGER_MATH_OPERATOR);
+    }
+
+    public IntSqlNumberHolder(@Nonnull String columnName) {
+        this(columnName, 0);
+    }
+
+    /**
+     * Queues a modification of the value stored by this object, without boxing.
+     *
+     * @param delta the modifier to apply
+     */
+    public void add(int delta) {
+        modifyBits(delta);
+    }
+
+    /**
+     * @return the current value, without boxing
+     * @see #getValue()
+     */
+    public int intValue() {
+        return (int) valueBits();
+    }
+
+    @Override
+    protected long toBits(@Nonnull Integer number) {
+        return number;
+    }
+
+    @Nonnull
+    @Override
+    protected Integer fromBits(long bits) {
+        return (int) bits;
+    }
+
+    @Override
+    protected long addBits(long bits, long deltaBits) {
+        return (int) bits + (int) deltaBits; //overflow like int does
+    }
+}
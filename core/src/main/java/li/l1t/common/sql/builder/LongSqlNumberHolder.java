@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.builder;
+
+import li.l1t.common.util.math.MathOperator;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A lock-free number holder for {@code long} columns. Use {@link #add(long)} and {@link #longValue()} to avoid
+ * boxing.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ * @deprecated Part of the deprecated QueryBuilder API. See {@link QueryBuilder} for details.
+ */
+@Deprecated
+public class LongSqlNumberHolder extends AtomicSqlNumberHolder<Long> {
+    public LongSqlNumberHolder(@Nonnull String columnName, long initialValue) {
+        super(columnName, initialValue, MathOperator.LONG_MATH_OPERATOR);
+    }
+
+    public LongSqlNumberHolder(@Nonnull String columnName) {
+        this(columnName, 0L);
+    }
+
+    /**
+     * Queues a modification of the value stored by this object, without boxing.
+     *
+     * @param delta the modifier to apply
+     */
+    public void add(long delta) {
+        modifyBits(delta);
+    }
+
+    /**
+     * @return the current value, without boxing
+     * @see #getValue()
+     */
+    public long longValue() {
+        return valueBits();
+    }
+
+    @Override
+    protected long toBits(@Nonnull Long number) {
+        return number;
+    }
+
+    @Nonnull
+    @Override
+    protected Long fromBits(long bits) {
+        return bits;
+    }
+
+    @Override
+    protected long addBits(long bits, long deltaBits) {
+        return bits + deltaBits;
+    }
+}
@@ -32,12 +32,8 @@ import org.jetbrains.annotations.Nullable;
 import javax.annotation.Nonnull;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -77,6 +73,13 @@ public class QueryBuilder { //TO/DO make concurrent
     @Nullable
     private Set<QuerySnapshot> queryParts = null;
 
+    /**
+     * The queries last compiled by this builder. These are reused as long as the shape of this builder does not
+     * change, so that repeated builds only need to rebind parameters.
+     */
+    @Nullable
+    private CompiledQuery compiledUpsert, compiledUpdate, compiledSelect;
+
     public QueryBuilder(@Nonnull final String tableName) {
         this.tableName = tableName;
     }
@@ -244,39 +247,9 @@ public class QueryBuilder { //TO/DO make concurrent
             return null; //Nothing to do then
         }
 
-        StringBuilder queryStringBuilder = new StringBuilder("INSERT INTO ").append(getTableName()).append(" SET ");
-        List<Object> args = new LinkedList<>();
-
-        Set<QuerySnapshot> snapshots = new HashSet<>(this.queryParts);
-
-        if (this.uniqueIdentifiers != null && !this.uniqueIdentifiers.isEmpty()) {
-            snapshots.addAll(this.uniqueIdentifiers);
-        }
-
-        for (QuerySnapshot snapshot : snapshots) {
-            if (snapshot != null) {
-                queryStringBuilder.append(QuerySnapshot.Type.OBJECT_UPDATE.getOperator(snapshot.getColumnName()))
-                        .append(','); //NUMBER_MODIFICATION has name=name+value, which is not allowed in INSERT
-                args.add(snapshot.getSnapshot());
-            }
-        }
-
-        queryStringBuilder.deleteCharAt(queryStringBuilder.length() - 1) //Last char will always be ','
-                .append(" ON DUPLICATE KEY UPDATE ");
-
-        for (QuerySnapshot snapshot : snapshots) {
-            if (snapshot != null) {
-                queryStringBuilder.append(snapshot.getType().getOperator(snapshot.getColumnName()))
-                        .append(",");
-            }
-        }
-        args.addAll(args); // <-- Collection added to itself, probably a bug, no idea what that should do tho
-
-        queryStringBuilder.deleteCharAt(queryStringBuilder.length() - 1); //Last char will always be ',';
-
-        final PreparedStatement stmt = statementFactory.prepareStatement(queryStringBuilder.toString());
-        statementFactory.fillStatement(stmt, args.toArray());
-        return stmt;
+        this.compiledUpsert = CompiledQuery.compile(this.compiledUpsert, CompiledQuery.Kind.UPSERT,
+                getTableName(), this.queryParts, this.uniqueIdentifiers);
+        return this.compiledUpsert.prepare(statementFactory, this.queryParts, this.uniqueIdentifiers);
     }
 
     /**
@@ -292,39 +265,51 @@ public class QueryBuilder { //TO/DO make concurrent
      */
     @Nullable
     public PreparedStatement buildTrueUpdate(@Nonnull final PreparedStatementFactory statementFactory) throws SQLException {
-        if ((this.queryParts == null || this.queryParts.isEmpty()) || (this.uniqueIdentifiers == null || this.uniqueIdentifiers.isEmpty())) {
+        if (!compileTrueUpdate()) {
             return null; //Nothing to do then
         }
 
-        StringBuilder queryStringBuilder = new StringBuilder("UPDATE ").append(getTableName()).append(" SET ");
-        List<Object> args = new LinkedList<>();
+        return this.compiledUpdate.prepare(statementFactory, this.queryParts, this.uniqueIdentifiers);
+    }
 
-        for (QuerySnapshot snapshot : this.queryParts) {
-            if (snapshot != null) {
-                queryStringBuilder.append(snapshot.getType().getOperator(snapshot.getColumnName()))
-                        .append(','); //NUMBER_MODIFICATION has name=name+value, which is not allowed in INSERT
-                args.add(snapshot.getSnapshot());
-            }
+    /**
+     * Compiles the SQL text of the true update query this builder would currently build, without preparing a
+     * statement. Builders with the same shape return the same text, which allows to group them into batches. Bind the
+     * parameters for a batch entry using {@link #bindTrueUpdateArguments()}.
+     *
+     * @return the SQL text of the true update query, or {@code null} if no parts or identifiers have been defined
+     * @see #buildTrueUpdate(PreparedStatementFactory)
+     */
+    @Nullable
+    public String getTrueUpdateSql() {
+        if (!compileTrueUpdate()) {
+            return null;
         }
+        return this.compiledUpdate.getSql();
+    }
 
-        queryStringBuilder.deleteCharAt(queryStringBuilder.length() - 1) //Last char will always be ','
-                .append(" WHERE ");
-
-        boolean prependAnd = false;
-        for (QuerySnapshot snapshot : this.uniqueIdentifiers) {
-            if (prependAnd) {
-                queryStringBuilder.append(" AND ");
-            }
-
-            queryStringBuilder.append(snapshot.getType().getOperator(snapshot.getColumnName()));
-            args.add(snapshot.getSnapshot());
-
-            prependAnd = true;
+    /**
+     * Binds the current values of this builder's parts and identifiers in the order expected by {@link
+     * #getTrueUpdateSql()}. Note that this consumes the snapshots, just like building the statement would.
+     *
+     * @return the parameters for the true update query, or {@code null} if no parts or identifiers have been defined
+     * @see #buildTrueUpdate(PreparedStatementFactory)
+     */
+    @Nullable
+    public Object[] bindTrueUpdateArguments() {
+        if (!compileTrueUpdate()) {
+            return null;
         }
+        return this.compiledUpdate.bind(this.queryParts, this.uniqueIdentifiers);
+    }
 
-        final PreparedStatement stmt = statementFactory.prepareStatement(queryStringBuilder.toString());
-        statementFactory.fillStatement(stmt, args.toArray());
-        return stmt;
+    private boolean compileTrueUpdate() {
+        if ((this.queryParts == null || this.queryParts.isEmpty()) || (this.uniqueIdentifiers == null || this.uniqueIdentifiers.isEmpty())) {
+            return false;
+        }
+        this.compiledUpdate = CompiledQuery.compile(this.compiledUpdate, CompiledQuery.Kind.UPDATE,
+                getTableName(), this.queryParts, this.uniqueIdentifiers);
+        return true;
     }
 
     /**
@@ -388,50 +373,11 @@ public class QueryBuilder { //TO/DO make concurrent
     @Nullable
     public PreparedStatement buildSelect(@Nonnull final PreparedStatementFactory statementFactory, final boolean selectStar) throws SQLException {
         Validate.notNull(statementFactory, "statementFactory");
-        StringBuilder queryStringBuilder = new StringBuilder("SELECT ");
-        List<Object> args = new LinkedList<>();
-
-        List<QuerySnapshot> snapshots = new ArrayList<>();
-
-        if (!selectStar && this.queryParts != null) {
-            snapshots.addAll(this.queryParts);
-        }
-
-        if (!selectStar && this.uniqueIdentifiers != null) {
-            snapshots.addAll(this.uniqueIdentifiers);
-        }
-
-        if (snapshots.isEmpty()) { //Is also empty if selectStar is true
-            queryStringBuilder.append("*");
-        } else {
-            for (QuerySnapshot snapshot : snapshots) {
-                queryStringBuilder.append(snapshot.getColumnName()).append(',');
-            }
-
-            queryStringBuilder.deleteCharAt(queryStringBuilder.length() - 1); //Last char will always be ','
-        }
-
-        queryStringBuilder.append(" FROM ")
-                .append(this.tableName);
-
-        if (this.uniqueIdentifiers != null && !this.uniqueIdentifiers.isEmpty()) {
-            queryStringBuilder.append(" WHERE ");
-            boolean prependAnd = false;
-            for (QuerySnapshot snapshot : this.uniqueIdentifiers) {
-                if (prependAnd) {
-                    queryStringBuilder.append(" AND ");
-                }
-
-                queryStringBuilder.append(snapshot.getType().getOperator(snapshot.getColumnName()));
-                args.add(snapshot.getSnapshot());
-
-                prependAnd = true;
-            }
-        }
-
-        final PreparedStatement statement = statementFactory.prepareStatement(queryStringBuilder.toString());
-        statementFactory.fillStatement(statement, args.toArray());
-        return statement;
+        CompiledQuery.Kind kind = selectStar ? CompiledQuery.Kind.SELECT_STAR : CompiledQuery.Kind.SELECT;
+        Set<QuerySnapshot> parts = selectStar ? null : this.queryParts;
+        this.compiledSelect = CompiledQuery.compile(this.compiledSelect, kind, getTableName(), parts,
+                this.uniqueIdentifiers);
+        return this.compiledSelect.prepare(statementFactory, parts, this.uniqueIdentifiers);
     }
 
     /**
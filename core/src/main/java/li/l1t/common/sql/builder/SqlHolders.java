@@ -24,11 +24,15 @@
 
 package li.l1t.common.sql.builder;
 
-import com.google.common.collect.Lists;
+import com.google.common.base.Throwables;
 import li.l1t.common.sql.builder.annotation.SqlValueCache;
+import org.apache.commons.lang.Validate;
 import org.jetbrains.annotations.Nullable;
 
 import javax.annotation.Nonnull;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.sql.ResultSet;
@@ -36,7 +40,8 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -111,8 +116,8 @@ public class SqlHolders {
 
     public static void updateFromResultSet(@Nonnull Collection<SqlValueHolder<?>> holders, @Nonnull ResultSet resultSet) throws SQLException {
         ResultSetMetaData rsmd = resultSet.getMetaData();
-        List<String> availableNames = Lists.newLinkedList();
         int columnCount = rsmd.getColumnCount();
+        Set<String> availableNames = new HashSet<>(columnCount * 2);
 
         for (int i = 1; i <= columnCount; i++) {
             availableNames.add(rsmd.getColumnName(i));
@@ -125,8 +130,14 @@ public class SqlHolders {
         }
     }
 
+    /**
+     * Stores the annotated fields of a class and creates holders for instances of it. On first
+     * use, a binding plan is computed that validates each field once and accesses it using method
+     * handles, so that creating holders for each instance does not need reflection.
+     */
     public static class CacheBuilder {
         private Map<Field, SqlValueCache> targetFields;
+        private volatile FieldBinding[] bindings; //computed lazily from targetFields
 
         @java.beans.ConstructorProperties({"targetFields"})
         public CacheBuilder(Map<Field, SqlValueCache> targetFields) {
@@ -138,7 +149,7 @@ public class SqlHolders {
 
         protected void put(@Nonnull Field field) {
             if (targetFields == null) {
-                targetFields = new HashMap<>();
+                targetFields = new LinkedHashMap<>(); //keep declaration order
             }
 
             SqlValueCache annotation = field.getAnnotation(SqlValueCache.class);
@@ -149,28 +160,97 @@ public class SqlHolders {
             }
 
             this.targetFields.put(field, annotation);
+            this.bindings = null;
         }
 
         @Nonnull
         public List<SqlValueHolder<?>> build(@Nullable Object accessorInstance, @Nullable SqlValueHolder.DataSource dataSource) throws IllegalAccessException {
-            List<SqlValueHolder<?>> result = new ArrayList<>(targetFields.size());
-
-            for (Map.Entry<Field, SqlValueCache> entry : targetFields.entrySet()) {
-                SqlValueCache annotation = entry.getValue();
-                Field field = entry.getKey();
-
-                if (accessorInstance == null && !Modifier.isStatic(field.getModifiers())) {
-                    throw new NullPointerException(String.format("Encountered a non-static field marked for processing, but no accessor instance given! (At field %s)", field.getName()));
-                }
+            FieldBinding[] currentBindings = getBindings();
+            List<SqlValueHolder<?>> result = new ArrayList<>(currentBindings.length);
 
-                result.add(annotation.type().createHolder(field, annotation, accessorInstance, dataSource));
+            for (FieldBinding binding : currentBindings) {
+                result.add(binding.createHolder(accessorInstance, dataSource));
             }
 
             return result;
         }
 
+        private FieldBinding[] getBindings() throws IllegalAccessException {
+            FieldBinding[] currentBindings = bindings;
+            if (currentBindings == null) {
+                if (targetFields == null) {
+                    currentBindings = new FieldBinding[0];
+                } else {
+                    currentBindings = new FieldBinding[targetFields.size()];
+                    int i = 0;
+                    for (Map.Entry<Field, SqlValueCache> entry : targetFields.entrySet()) {
+                        currentBindings[i++] = new FieldBinding(entry.getKey(), entry.getValue());
+                    }
+                }
+                bindings = currentBindings;
+            }
+            return currentBindings;
+        }
+
         public Map<Field, SqlValueCache> getTargetFields() {
             return this.targetFields;
         }
     }
+
+    /**
+     * Binds a single annotated field, creating holders for it without reflection.
+     */
+    private static class FieldBinding {
+        private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+        private final Field field;
+        private final SqlValueCache annotation;
+        private final boolean isStatic;
+        private final MethodHandle getter;
+        private final MethodHandle setter; //null for final fields, which are never populated
+
+        FieldBinding(Field field, SqlValueCache annotation) throws IllegalAccessException {
+            Validate.isTrue(annotation.type().acceptsFieldType(field.getType()), "Field is of invalid type! (Given %s)", field.getType());
+            if (!field.isAccessible()) {
+                field.setAccessible(true);
+            }
+            this.field = field;
+            this.annotation = annotation;
+            this.isStatic = Modifier.isStatic(field.getModifiers());
+            this.getter = toInstanceForm(LOOKUP.unreflectGetter(field)).asType(GETTER_TYPE);
+            if (Modifier.isFinal(field.getModifiers())) {
+                this.setter = null;
+            } else {
+                this.setter = toInstanceForm(LOOKUP.unreflectSetter(field)).asType(SETTER_TYPE);
+            }
+        }
+
+        private MethodHandle toInstanceForm(MethodHandle handle) {
+            if (isStatic) { //accept and ignore the accessor instance, so that all handles have the same shape
+                return MethodHandles.dropArguments(handle, 0, Object.class);
+            } else {
+                return handle;
+            }
+        }
+
+        SqlValueHolder<?> createHolder(@Nullable Object accessorInstance, @Nullable SqlValueHolder.DataSource dataSource) {
+            if (accessorInstance == null && !isStatic) {
+                throw new NullPointerException(String.format("Encountered a non-static field marked for processing, but no accessor instance given! (At field %s)", field.getName()));
+            }
+
+            try {
+                SqlValueHolder<?> holder = (SqlValueHolder<?>) (Object) getter.invokeExact(accessorInstance);
+                if (holder == null) {
+                    holder = annotation.type().newHolder(annotation, dataSource);
+                    if (setter != null) {
+                        setter.invokeExact(accessorInstance, (Object) holder);
+                    }
+                }
+                return holder;
+            } catch (Throwable throwable) {
+                throw Throwables.propagate(throwable);
+            }
+        }
+    }
 }
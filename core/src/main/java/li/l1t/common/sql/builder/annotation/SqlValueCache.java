@@ -169,6 +169,30 @@ public @interface SqlValueCache { //TO\DO In case I ever open-source XYC, this p
 
         protected abstract <T extends SqlValueHolder<?>> AnnotationToHolderFactory<T> getFactory();
 
+        /**
+         * Checks whether fields of given type can hold the holders created by this type.
+         *
+         * @param fieldType the declared type of the field
+         * @return whether the field type is compatible with this type
+         */
+        public boolean acceptsFieldType(@Nonnull Class<?> fieldType) {
+            return getExpectedClass().isAssignableFrom(fieldType);
+        }
+
+        /**
+         * Creates a new holder corresponding to this type, without accessing any field.
+         *
+         * @param annotation the annotation providing information about what kind of holder to generate
+         * @param dataSource the data source to use to fetch data from a database
+         * @return the created holder
+         */
+        @Nonnull
+        public SqlValueHolder<?> newHolder(@Nonnull SqlValueCache annotation, @Nullable SqlValueHolder.DataSource dataSource) {
+            SqlValueHolder<?> holder = getFactory().fromAnnotation(annotation);
+            holder.setDataSource(dataSource);
+            return holder;
+        }
+
         /**
          * Creates a new implementation corresponding to this type, if the given Field does not already contain one.
          * If it does, returns the value of the Field.
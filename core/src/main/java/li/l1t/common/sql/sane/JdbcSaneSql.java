@@ -0,0 +1,116 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane;
+
+import li.l1t.common.exception.DatabaseException;
+import li.l1t.common.sql.sane.result.QueryResult;
+import li.l1t.common.sql.sane.scoped.JdbcScopedSession;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * A sane SQL accessor backed by JDBC connections, which additionally provides scoped sessions
+ * exposing the underlying connection, for example to run multiple statements in a transaction.
+ * Decorators that should be usable wherever a {@link SingleSql} is expected implement this
+ * interface and delegate scoped sessions to the decorated instance. Large results can be streamed
+ * with a fetch size hint.
+ * <p>
+ * Accessors that route statements between multiple databases override the consistency hooks,
+ * which by default do nothing, since a single database is always consistent with itself.
+ * Decorators must delegate them to the decorated instance.
+ * </p>
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public interface JdbcSaneSql extends SaneSql {
+    /**
+     * @return the scoped session of the current thread, creating a new session if the thread
+     * does not have one yet
+     */
+    JdbcScopedSession scoped();
+
+    /**
+     * Executes a query like {@link #query(String, Object...)}, but hints the driver to fetch rows
+     * from the database in chunks of given size while the result is read, instead of loading the
+     * whole result into memory at once. Whether the hint has an effect depends on the driver. For
+     * example, MySQL Connector/J only honours positive fetch sizes if {@code useCursorFetch=true}
+     * is set in the JDBC URL, and streams row by row for a fetch size of {@link
+     * Integer#MIN_VALUE}. The connection is occupied until the result is closed.
+     *
+     * @param fetchSize  the amount of rows to fetch at once, zero to let the driver decide
+     * @param sqlQuery   the SQL query to execute
+     * @param parameters the parameters for the query
+     * @return the result of the query, which must be closed
+     * @throws DatabaseException if a database error occurs
+     */
+    QueryResult streamQuery(int fetchSize, String sqlQuery, Object... parameters) throws DatabaseException;
+
+    /**
+     * @return an accessor executing all statements on the primary database, so that reads observe
+     * the latest state, which is this accessor unless statements are routed between multiple
+     * databases
+     */
+    default JdbcSaneSql primary() {
+        return this;
+    }
+
+    /**
+     * Records a write concerning given key, so that {@link #readConsistently(Object, Supplier)
+     * reads for it} observe the write. Does nothing by default.
+     *
+     * @param consistencyKey the key identifying the changed data, for example a player id
+     */
+    default void recordWrite(Object consistencyKey) {
+        //no-op
+    }
+
+    /**
+     * Runs a reader so that it observes the writes {@link #recordWrite(Object) recorded} for given
+     * key. Just runs the reader by default.
+     *
+     * @param consistencyKey the key identifying the data read
+     * @param reader         the reader to run
+     * @param <T>            the type of data read
+     * @return the result of the reader
+     */
+    default <T> T readConsistently(Object consistencyKey, Supplier<T> reader) {
+        return reader.get();
+    }
+
+    /**
+     * Runs a reader so that it observes the writes {@link #recordWrite(Object) recorded} for any
+     * of given keys. Just runs the reader by default.
+     *
+     * @param consistencyKeys the keys identifying the data read
+     * @param reader          the reader to run
+     * @param <T>             the type of data read
+     * @return the result of the reader
+     */
+    default <T> T readConsistently(Collection<?> consistencyKeys, Supplier<T> reader) {
+        return reader.get();
+    }
+}
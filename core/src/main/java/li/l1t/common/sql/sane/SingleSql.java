@@ -28,6 +28,7 @@ import com.google.common.base.Preconditions;
 import li.l1t.common.exception.DatabaseException;
 import li.l1t.common.sql.SqlConnectable;
 import li.l1t.common.sql.sane.connection.ConnectionManager;
+import li.l1t.common.sql.sane.connection.LeasingConnectionProvider;
 import li.l1t.common.sql.sane.connection.SimpleConnectionManager;
 import li.l1t.common.sql.sane.exception.SqlExecutionException;
 import li.l1t.common.sql.sane.exception.SqlStatementException;
@@ -38,45 +39,114 @@ import li.l1t.common.sql.sane.result.UpdateResult;
 import li.l1t.common.sql.sane.scoped.JdbcScopedSession;
 import li.l1t.common.sql.sane.scoped.ScopedSessionManager;
 import li.l1t.common.sql.sane.statement.GeneratedKeysStatementProvider;
+import li.l1t.common.sql.sane.statement.RecyclingStatementProvider;
 import li.l1t.common.sql.sane.statement.SimpleStatementProvider;
-import li.l1t.common.sql.sane.statement.StatementProvider;
+import li.l1t.common.sql.sane.statement.StatementCache;
 import li.l1t.common.util.Closer;
 import org.jetbrains.annotations.NotNull;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.function.Supplier;
+import java.util.function.Consumer;
 
 /**
- * Implementation of a sane SQL accessor class that manages a single database connection.
+ * Implementation of a sane SQL accessor class that manages a single database connection. If
+ * constructed with a {@link LeasingConnectionProvider leasing} connection manager, such as a
+ * {@link li.l1t.common.sql.sane.connection.PooledConnectionManager}, connections are leased per
+ * statement and scoped session and released once the respective result or session is closed.
+ * Prepared statements are cached per connection and SQL text and reused once their result has been
+ * closed.
  *
  * @author <a href="https://l1t.li/">Literallie</a>
  * @since 2016-10-09
  */
-public class SingleSql implements SaneSql {
+public class SingleSql implements JdbcSaneSql {
+    /**
+     * The default maximum amount of idle prepared statements cached per connection and statement
+     * type.
+     */
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
     private final ConnectionManager connectionManager;
-    private final StatementProvider simpleStatementProvider;
-    private final StatementProvider generatedKeysStatementProvider;
+    private final RecyclingStatementProvider simpleStatementProvider;
+    private final RecyclingStatementProvider generatedKeysStatementProvider;
     private final ScopedSessionManager<JdbcScopedSession> scopedSessionManager;
 
     public SingleSql(SqlConnectable connectable) {
-        this.connectionManager = new SimpleConnectionManager(connectable);
-        this.simpleStatementProvider = new SimpleStatementProvider(connectionManager);
-        this.generatedKeysStatementProvider = new GeneratedKeysStatementProvider(connectionManager);
-        Supplier<JdbcScopedSession> scopedSessionProvider = () -> new JdbcScopedSession(connectionManager.getConnection());
-        this.scopedSessionManager = new ScopedSessionManager<>(scopedSessionProvider);
+        this(new SimpleConnectionManager(connectable));
+    }
+
+    /**
+     * Creates a new sane SQL accessor using given connection manager and the {@link
+     * #DEFAULT_STATEMENT_CACHE_SIZE default statement cache size}.
+     *
+     * @param connectionManager the connection manager to obtain connections from
+     */
+    public SingleSql(ConnectionManager connectionManager) {
+        this(connectionManager, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new sane SQL accessor using given connection manager.
+     *
+     * @param connectionManager  the connection manager to obtain connections from
+     * @param statementCacheSize the maximum amount of idle prepared statements to cache per
+     *                           connection and statement type, zero to disable caching
+     */
+    public SingleSql(ConnectionManager connectionManager, int statementCacheSize) {
+        this.connectionManager = Preconditions.checkNotNull(connectionManager, "connectionManager");
+        this.simpleStatementProvider = new SimpleStatementProvider(connectionManager, statementCacheSize);
+        this.generatedKeysStatementProvider = new GeneratedKeysStatementProvider(connectionManager, statementCacheSize);
+        this.scopedSessionManager = new ScopedSessionManager<>(this::createScopedSession);
+    }
+
+    private JdbcScopedSession createScopedSession() {
+        Connection connection = connectionManager.getConnection();
+        return new JdbcScopedSession(connection, () -> releaseConnection(connection));
     }
 
     @Override
     public QueryResult query(String sqlQuery, Object... parameters) throws DatabaseException {
+        PreparedStatement statement = simpleStatement(sqlQuery, parameters);
         try {
-            return executeQuery(simpleStatement(sqlQuery, parameters));
+            return executeQuery(statement);
         } catch (SQLException e) {
+            recycleAndRelease(simpleStatementProvider, statement);
             throw new SqlExecutionException(e);
         }
     }
 
+    /**
+     * {@inheritDoc} Since prepared statements are reused, the fetch size is reset once the result
+     * is closed.
+     */
+    @Override
+    public QueryResult streamQuery(int fetchSize, String sqlQuery, Object... parameters) throws DatabaseException {
+        PreparedStatement statement = simpleStatement(sqlQuery, parameters);
+        try {
+            statement.setFetchSize(fetchSize);
+            Consumer<PreparedStatement> releaser = releaserFor(simpleStatementProvider, statement);
+            ResultSet resultSet = statement.executeQuery();
+            return new SimpleQueryResult(statement, resultSet, stmt -> {
+                resetFetchSize(stmt);
+                releaser.accept(stmt);
+            });
+        } catch (SQLException e) {
+            resetFetchSize(statement);
+            recycleAndRelease(simpleStatementProvider, statement);
+            throw new SqlExecutionException(e);
+        }
+    }
+
+    private void resetFetchSize(PreparedStatement statement) {
+        try {
+            statement.setFetchSize(0);
+        } catch (SQLException e) {
+            Closer.close(statement); //don't recycle a statement that would still stream
+        }
+    }
+
     private PreparedStatement simpleStatement(String sqlQuery, Object[] params) {
         Preconditions.checkNotNull(sqlQuery, "sqlQuery");
         Preconditions.checkNotNull(params, "params");
@@ -84,33 +154,68 @@ public class SingleSql implements SaneSql {
     }
 
     private QueryResult executeQuery(PreparedStatement statement) throws SQLException {
+        Consumer<PreparedStatement> releaser = releaserFor(simpleStatementProvider, statement);
         ResultSet resultSet = statement.executeQuery();
-        return new SimpleQueryResult(statement, resultSet);
+        return new SimpleQueryResult(statement, resultSet, releaser);
     }
 
     @Override
     public int updateRaw(String sqlQuery, Object... parameters) throws DatabaseException {
-        try (PreparedStatement statement = simpleStatement(sqlQuery, parameters)) {
+        PreparedStatement statement = simpleStatement(sqlQuery, parameters);
+        try {
             return statement.executeUpdate();
         } catch (SQLException e) {
             throw new SqlExecutionException(e);
+        } finally {
+            recycleAndRelease(simpleStatementProvider, statement);
         }
     }
 
     @Override
     public UpdateResult update(String sqlQuery, Object... parameters) throws DatabaseException {
+        PreparedStatement statement = genKeysStatement(sqlQuery, parameters);
         try {
-            return executeUpdate(genKeysStatement(sqlQuery, parameters));
+            return executeUpdate(statement);
         } catch (SQLException e) {
+            recycleAndRelease(generatedKeysStatementProvider, statement);
             throw new SqlStatementException(e);
         }
     }
 
     @NotNull
     private UpdateResult executeUpdate(PreparedStatement statement) throws SQLException {
+        Consumer<PreparedStatement> releaser = releaserFor(generatedKeysStatementProvider, statement);
         int affectedRowCount = statement.executeUpdate();
         ResultSet generatedKeys = statement.getGeneratedKeys();
-        return new SimpleUpdateResult(statement, generatedKeys, affectedRowCount);
+        return new SimpleUpdateResult(statement, generatedKeys, affectedRowCount, releaser);
+    }
+
+    private Consumer<PreparedStatement> releaserFor(RecyclingStatementProvider provider, PreparedStatement statement)
+            throws SQLException {
+        Connection connection = statement.getConnection();
+        return stmt -> {
+            provider.recycle(stmt);
+            releaseConnection(connection);
+        };
+    }
+
+    private void recycleAndRelease(RecyclingStatementProvider provider, PreparedStatement statement) {
+        Connection connection = null;
+        try {
+            connection = statement.getConnection();
+        } catch (SQLException ignored) {
+            //the statement is broken, there is nothing we can release
+        }
+        provider.recycle(statement);
+        if (connection != null) {
+            releaseConnection(connection);
+        }
+    }
+
+    private void releaseConnection(Connection connection) {
+        if (connectionManager instanceof LeasingConnectionProvider) {
+            ((LeasingConnectionProvider) connectionManager).releaseConnection(connection);
+        }
     }
 
     private PreparedStatement genKeysStatement(String sqlQuery, Object[] params) {
@@ -124,8 +229,38 @@ public class SingleSql implements SaneSql {
         return scopedSessionManager.scoped();
     }
 
+    /**
+     * Closes all cached statements and forces the connection manager to reconnect.
+     *
+     * @see ConnectionManager#forceReconnect()
+     */
+    public void forceReconnect() {
+        invalidateStatementCaches();
+        connectionManager.forceReconnect();
+    }
+
+    private void invalidateStatementCaches() {
+        simpleStatementProvider.getStatementCache().invalidate();
+        generatedKeysStatementProvider.getStatementCache().invalidate();
+    }
+
+    /**
+     * @return the cache of statements used for queries and raw updates
+     */
+    public StatementCache getSimpleStatementCache() {
+        return simpleStatementProvider.getStatementCache();
+    }
+
+    /**
+     * @return the cache of statements used for updates returning generated keys
+     */
+    public StatementCache getGeneratedKeysStatementCache() {
+        return generatedKeysStatementProvider.getStatementCache();
+    }
+
     @Override
     public void close() throws Exception {
+        invalidateStatementCaches();
         Closer.close(connectionManager);
     }
 }
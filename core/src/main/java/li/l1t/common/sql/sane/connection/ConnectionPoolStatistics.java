@@ -0,0 +1,192 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.connection;
+
+import java.time.Duration;
+
+/**
+ * An immutable snapshot of the counters of a {@link PooledConnectionManager}, intended to help
+ * sizing the pool for a specific server.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-04
+ */
+public class ConnectionPoolStatistics {
+    private final int maximumPoolSize;
+    private final int openConnectionCount;
+    private final int idleConnectionCount;
+    private final int activeLeaseCount;
+    private final long totalLeaseCount;
+    private final long timeoutCount;
+    private final long createdConnectionCount;
+    private final long discardedConnectionCount;
+    private final Duration totalWaitTime;
+    private final Duration maximumWaitTime;
+    private final Duration totalLeaseDuration;
+    private final Duration maximumLeaseDuration;
+
+    ConnectionPoolStatistics(int maximumPoolSize, int openConnectionCount, int idleConnectionCount,
+                             int activeLeaseCount, long totalLeaseCount, long timeoutCount,
+                             long createdConnectionCount, long discardedConnectionCount,
+                             Duration totalWaitTime, Duration maximumWaitTime,
+                             Duration totalLeaseDuration, Duration maximumLeaseDuration) {
+        this.maximumPoolSize = maximumPoolSize;
+        this.openConnectionCount = openConnectionCount;
+        this.idleConnectionCount = idleConnectionCount;
+        this.activeLeaseCount = activeLeaseCount;
+        this.totalLeaseCount = totalLeaseCount;
+        this.timeoutCount = timeoutCount;
+        this.createdConnectionCount = createdConnectionCount;
+        this.discardedConnectionCount = discardedConnectionCount;
+        this.totalWaitTime = totalWaitTime;
+        this.maximumWaitTime = maximumWaitTime;
+        this.totalLeaseDuration = totalLeaseDuration;
+        this.maximumLeaseDuration = maximumLeaseDuration;
+    }
+
+    /**
+     * @return the maximum amount of connections the pool may open at the same time
+     */
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    /**
+     * @return the amount of connections currently open, including idle and leased ones
+     */
+    public int getOpenConnectionCount() {
+        return openConnectionCount;
+    }
+
+    /**
+     * @return the amount of open connections currently waiting in the pool
+     */
+    public int getIdleConnectionCount() {
+        return idleConnectionCount;
+    }
+
+    /**
+     * @return the amount of connections currently leased to a thread
+     */
+    public int getActiveLeaseCount() {
+        return activeLeaseCount;
+    }
+
+    /**
+     * @return the amount of leases handed out since the pool was created, not counting repeated
+     * requests of a thread that already held a lease
+     */
+    public long getTotalLeaseCount() {
+        return totalLeaseCount;
+    }
+
+    /**
+     * @return the amount of lease requests that failed because no connection became available in
+     * time
+     */
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    /**
+     * @return the amount of physical connections opened since the pool was created
+     */
+    public long getCreatedConnectionCount() {
+        return createdConnectionCount;
+    }
+
+    /**
+     * @return the amount of physical connections closed because they were invalid, dirty or
+     * outdated
+     */
+    public long getDiscardedConnectionCount() {
+        return discardedConnectionCount;
+    }
+
+    /**
+     * @return the sum of the time all lease requests spent waiting for a connection
+     */
+    public Duration getTotalWaitTime() {
+        return totalWaitTime;
+    }
+
+    /**
+     * @return the longest time a single lease request spent waiting for a connection
+     */
+    public Duration getMaximumWaitTime() {
+        return maximumWaitTime;
+    }
+
+    /**
+     * @return the mean time lease requests spent waiting for a connection
+     */
+    public Duration getAverageWaitTime() {
+        return averageOf(totalWaitTime, totalLeaseCount);
+    }
+
+    /**
+     * @return the sum of the time all returned leases were held
+     */
+    public Duration getTotalLeaseDuration() {
+        return totalLeaseDuration;
+    }
+
+    /**
+     * @return the longest time a single returned lease was held
+     */
+    public Duration getMaximumLeaseDuration() {
+        return maximumLeaseDuration;
+    }
+
+    /**
+     * @return the mean time returned leases were held
+     */
+    public Duration getAverageLeaseDuration() {
+        return averageOf(totalLeaseDuration, totalLeaseCount - activeLeaseCount);
+    }
+
+    private Duration averageOf(Duration total, long count) {
+        if (count <= 0) {
+            return Duration.ZERO;
+        } else {
+            return total.dividedBy(count);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolStatistics{" +
+                openConnectionCount + "/" + maximumPoolSize + " open, " +
+                idleConnectionCount + " idle, " +
+                activeLeaseCount + " leased, " +
+                totalLeaseCount + " leases total, " +
+                timeoutCount + " timeouts, " +
+                createdConnectionCount + " created, " +
+                discardedConnectionCount + " discarded, " +
+                "wait avg " + getAverageWaitTime().toMillis() + "ms max " + maximumWaitTime.toMillis() + "ms, " +
+                "lease avg " + getAverageLeaseDuration().toMillis() + "ms max " + maximumLeaseDuration.toMillis() + "ms" +
+                '}';
+    }
+}
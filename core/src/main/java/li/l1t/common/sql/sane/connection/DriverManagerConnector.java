@@ -0,0 +1,50 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.connection;
+
+import com.google.common.base.Verify;
+import li.l1t.common.sql.SqlConnectable;
+import li.l1t.common.sql.SqlConnectables;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Connects to JDBC data sources using the JDBC {@link DriverManager}.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-04
+ */
+public class DriverManagerConnector implements SqlConnector {
+    @Override
+    public Connection obtainConnection(SqlConnectable connectable) throws SQLException {
+        String jdbcUrl = SqlConnectables.getHostString(connectable);
+        Connection connection = DriverManager.getConnection(
+                jdbcUrl, connectable.getSqlUser(), connectable.getSqlPwd()
+        );
+        return Verify.verifyNotNull(connection, "connection returned by JDBC driver", connectable);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.connection;
+
+import java.sql.Connection;
+
+/**
+ * A connection provider that leases connections to its callers instead of sharing a single
+ * connection with all of them. Every connection obtained from {@link #getConnection()} must be
+ * given back using {@link #releaseConnection(Connection)} once the caller is done with it.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-04
+ */
+public interface LeasingConnectionProvider extends ConnectionProvider {
+    /**
+     * Releases a single lease on given connection. If this was the last lease held on the
+     * connection, it is returned to the provider and may be handed out to other callers. Calls for
+     * connections not leased from this provider are silently ignored.
+     *
+     * @param connection the connection to release
+     */
+    void releaseConnection(Connection connection);
+}
@@ -0,0 +1,443 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.connection;
+
+import com.google.common.base.Preconditions;
+import li.l1t.common.sql.SqlConnectable;
+import li.l1t.common.sql.sane.exception.SqlConnectionException;
+import li.l1t.common.util.Closer;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A connection manager that keeps a bounded pool of connections to a JDBC data source and leases
+ * them to threads. A thread keeps its connection for as long as it holds at least one lease, so
+ * that all statements issued by a thread during a scoped session run on the same connection.
+ * Every call to {@link #getConnection()} must be matched by a call to {@link
+ * #releaseConnection(Connection)}, which is done automatically by {@link
+ * li.l1t.common.sql.sane.SingleSql} when results and scoped sessions are closed. If all
+ * connections are leased, callers wait for a connection to be returned until the lease timeout
+ * has passed. Idle connections are validated before being handed out again if they have not been
+ * used for some time.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-04
+ */
+public class PooledConnectionManager implements ConnectionManager, LeasingConnectionProvider {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long VALIDATION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private final SqlConnectable credentials;
+    private final SqlConnector connector;
+    private final int maximumPoolSize;
+    private final long leaseTimeoutNanos;
+    private final ReentrantLock poolLock = new ReentrantLock();
+    private final Condition connectionReturned = poolLock.newCondition();
+    private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+    private final Map<Connection, Lease> activeLeases = new IdentityHashMap<>();
+    private final ThreadLocal<Lease> threadLease = new ThreadLocal<>();
+    private int openConnectionCount = 0;
+    private long generation = 0;
+    private boolean closed = false;
+    private final LongAdder totalLeaseCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdConnectionCount = new LongAdder();
+    private final LongAdder discardedConnectionCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maximumWaitNanos = new AtomicLong();
+    private final LongAdder totalLeaseNanos = new LongAdder();
+    private final AtomicLong maximumLeaseNanos = new AtomicLong();
+
+    /**
+     * Creates a new pooled connection manager.
+     *
+     * @param credentials      the credentials to connect with
+     * @param connector        the connector used to open new connections
+     * @param maximumPoolSize  the maximum amount of connections open at the same time
+     * @param leaseTimeout     the maximum time to wait for a connection if all connections are
+     *                         leased
+     * @param leaseTimeoutUnit the unit of the lease timeout
+     */
+    public PooledConnectionManager(SqlConnectable credentials, SqlConnector connector, int maximumPoolSize,
+                                   long leaseTimeout, TimeUnit leaseTimeoutUnit) {
+        Preconditions.checkArgument(maximumPoolSize > 0, "maximumPoolSize must be positive: %s", maximumPoolSize);
+        Preconditions.checkArgument(leaseTimeout >= 0, "leaseTimeout must not be negative: %s", leaseTimeout);
+        this.credentials = Preconditions.checkNotNull(credentials, "credentials");
+        this.connector = Preconditions.checkNotNull(connector, "connector");
+        this.maximumPoolSize = maximumPoolSize;
+        this.leaseTimeoutNanos = leaseTimeoutUnit.toNanos(leaseTimeout);
+    }
+
+    /**
+     * Creates a new pooled connection manager that connects using the JDBC driver manager.
+     *
+     * @param credentials      the credentials to connect with
+     * @param maximumPoolSize  the maximum amount of connections open at the same time
+     * @param leaseTimeout     the maximum time to wait for a connection if all connections are
+     *                         leased
+     * @param leaseTimeoutUnit the unit of the lease timeout
+     */
+    public PooledConnectionManager(SqlConnectable credentials, int maximumPoolSize,
+                                   long leaseTimeout, TimeUnit leaseTimeoutUnit) {
+        this(credentials, new DriverManagerConnector(), maximumPoolSize, leaseTimeout, leaseTimeoutUnit);
+    }
+
+    /**
+     * Creates a new pooled connection manager that connects using the JDBC driver manager and
+     * waits up to ten seconds for a connection if all connections are leased.
+     *
+     * @param credentials     the credentials to connect with
+     * @param maximumPoolSize the maximum amount of connections open at the same time
+     */
+    public PooledConnectionManager(SqlConnectable credentials, int maximumPoolSize) {
+        this(credentials, maximumPoolSize, 10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * {@inheritDoc} If the current thread already holds a lease, the same connection is returned
+     * and the lease count is incremented. Otherwise, an idle connection is leased, a new connection
+     * is opened, or, if the pool is exhausted, this method blocks until a connection is returned.
+     *
+     * @throws SqlConnectionException if no connection could be obtained in time, or a new
+     *                                connection could not be opened
+     */
+    @Override
+    public Connection getConnection() throws SqlConnectionException {
+        Lease existingLease = threadLease.get();
+        if (existingLease != null && existingLease.retain()) {
+            return existingLease.connection();
+        }
+        long waitStartNanos = System.nanoTime();
+        PooledConnection pooled = acquire(waitStartNanos + leaseTimeoutNanos);
+        recordWait(System.nanoTime() - waitStartNanos);
+        Lease lease = new Lease(pooled);
+        poolLock.lock();
+        try {
+            activeLeases.put(pooled.connection, lease);
+        } finally {
+            poolLock.unlock();
+        }
+        threadLease.set(lease);
+        totalLeaseCount.increment();
+        return pooled.connection;
+    }
+
+    private PooledConnection acquire(long deadlineNanos) throws SqlConnectionException {
+        while (true) {
+            PooledConnection candidate = pollIdleOrReserveSlot(deadlineNanos);
+            if (candidate == null) {
+                return openReservedConnection();
+            } else if (isUsable(candidate)) {
+                return candidate;
+            } else {
+                discard(candidate);
+            }
+        }
+    }
+
+    private PooledConnection pollIdleOrReserveSlot(long deadlineNanos) throws SqlConnectionException {
+        poolLock.lock();
+        try {
+            while (true) {
+                checkNotClosed();
+                if (!idleConnections.isEmpty()) {
+                    return idleConnections.pop();
+                } else if (openConnectionCount < maximumPoolSize) {
+                    openConnectionCount++;
+                    return null;
+                }
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    timeoutCount.increment();
+                    throw new SqlConnectionException(new SQLTimeoutException(
+                            "No pooled connection became available in time, all " + maximumPoolSize + " are leased"
+                    ));
+                }
+                connectionReturned.awaitNanos(remainingNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SqlConnectionException(new SQLException("Interrupted while waiting for a pooled connection", e));
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    private void checkNotClosed() throws SqlConnectionException {
+        if (closed) {
+            throw new SqlConnectionException(new SQLException("Connection pool has already been closed"));
+        }
+    }
+
+    private PooledConnection openReservedConnection() throws SqlConnectionException {
+        long connectionGeneration = currentGeneration();
+        try {
+            Connection connection = connector.obtainConnection(credentials);
+            createdConnectionCount.increment();
+            return new PooledConnection(connection, connectionGeneration);
+        } catch (SQLException e) {
+            freeSlot();
+            throw new SqlConnectionException(e);
+        } catch (RuntimeException e) {
+            freeSlot();
+            throw e;
+        }
+    }
+
+    private long currentGeneration() {
+        poolLock.lock();
+        try {
+            return generation;
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            if (pooled.connection.isClosed()) {
+                return false;
+            } else if (System.nanoTime() - pooled.lastReturnedNanos > VALIDATION_INTERVAL_NANOS) {
+                return pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } else {
+                return true;
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        discardedConnectionCount.increment();
+        Closer.close(pooled.connection);
+        freeSlot();
+    }
+
+    private void freeSlot() {
+        poolLock.lock();
+        try {
+            openConnectionCount--;
+            connectionReturned.signal();
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    @Override
+    public void releaseConnection(Connection connection) {
+        Lease lease;
+        poolLock.lock();
+        try {
+            lease = activeLeases.get(connection);
+        } finally {
+            poolLock.unlock();
+        }
+        if (lease == null || !lease.release()) {
+            return;
+        }
+        recordLeaseDuration(System.nanoTime() - lease.leasedAtNanos);
+        if (threadLease.get() == lease) {
+            threadLease.remove();
+        }
+        returnToPool(lease.pooled);
+    }
+
+    private void returnToPool(PooledConnection pooled) {
+        poolLock.lock();
+        try {
+            activeLeases.remove(pooled.connection);
+            if (!closed && pooled.generation == generation && isClean(pooled)) {
+                pooled.lastReturnedNanos = System.nanoTime();
+                idleConnections.push(pooled);
+                connectionReturned.signal();
+                return;
+            }
+        } finally {
+            poolLock.unlock();
+        }
+        discard(pooled);
+    }
+
+    private boolean isClean(PooledConnection pooled) {
+        try {
+            return !pooled.connection.isClosed() && pooled.connection.getAutoCommit();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.add(waitNanos);
+        maximumWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private void recordLeaseDuration(long leaseNanos) {
+        totalLeaseNanos.add(leaseNanos);
+        maximumLeaseNanos.accumulateAndGet(leaseNanos, Math::max);
+    }
+
+    /**
+     * {@inheritDoc} Note that connections are leased per thread, so this only returns the
+     * connection leased to the current thread, if any.
+     *
+     * @return the connection currently leased to the calling thread, or null if it does not hold a
+     * lease
+     */
+    @Override
+    public Connection getCurrentConnection() {
+        Lease lease = threadLease.get();
+        return lease == null ? null : lease.connection();
+    }
+
+    /**
+     * {@inheritDoc} Since connections are pooled, this closes all idle connections and marks all
+     * leased connections to be closed once they are returned. New leases will use fresh
+     * connections.
+     */
+    @Override
+    public void forceReconnect() throws SqlConnectionException {
+        closeIdleConnections(true);
+    }
+
+    private void closeIdleConnections(boolean invalidateLeased) {
+        List<PooledConnection> toClose;
+        poolLock.lock();
+        try {
+            if (invalidateLeased) {
+                generation++;
+            }
+            toClose = new ArrayList<>(idleConnections);
+            idleConnections.clear();
+        } finally {
+            poolLock.unlock();
+        }
+        toClose.forEach(this::discard);
+    }
+
+    @Override
+    public boolean hasActiveConnection() {
+        try {
+            Connection connection = getConnection();
+            try {
+                return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } finally {
+                releaseConnection(connection);
+            }
+        } catch (SQLException | SqlConnectionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes all idle connections and prevents any further leases. Connections that are currently
+     * leased are closed once they are returned.
+     */
+    @Override
+    public void close() {
+        poolLock.lock();
+        try {
+            closed = true;
+            connectionReturned.signalAll();
+        } finally {
+            poolLock.unlock();
+        }
+        closeIdleConnections(false);
+    }
+
+    /**
+     * @return a snapshot of the current state and counters of this pool
+     */
+    public ConnectionPoolStatistics getStatistics() {
+        poolLock.lock();
+        try {
+            return new ConnectionPoolStatistics(
+                    maximumPoolSize, openConnectionCount, idleConnections.size(), activeLeases.size(),
+                    totalLeaseCount.sum(), timeoutCount.sum(),
+                    createdConnectionCount.sum(), discardedConnectionCount.sum(),
+                    Duration.ofNanos(totalWaitNanos.sum()), Duration.ofNanos(maximumWaitNanos.get()),
+                    Duration.ofNanos(totalLeaseNanos.sum()), Duration.ofNanos(maximumLeaseNanos.get())
+            );
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    /**
+     * @return the maximum amount of connections this pool opens at the same time
+     */
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    private static class PooledConnection {
+        private final Connection connection;
+        private final long generation;
+        private long lastReturnedNanos = System.nanoTime();
+
+        private PooledConnection(Connection connection, long generation) {
+            this.connection = connection;
+            this.generation = generation;
+        }
+    }
+
+    private static class Lease {
+        private final PooledConnection pooled;
+        private final long leasedAtNanos = System.nanoTime();
+        private int references = 1;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        Connection connection() {
+            return pooled.connection;
+        }
+
+        synchronized boolean retain() {
+            if (references <= 0) {
+                return false;
+            }
+            references++;
+            return true;
+        }
+
+        synchronized boolean release() {
+            return references > 0 && --references == 0;
+        }
+    }
+}
@@ -24,14 +24,12 @@
 
 package li.l1t.common.sql.sane.connection;
 
-import com.google.common.base.Verify;
+import com.google.common.base.Preconditions;
 import li.l1t.common.sql.SqlConnectable;
-import li.l1t.common.sql.SqlConnectables;
 import li.l1t.common.sql.sane.exception.SqlConnectionException;
 import li.l1t.common.util.Closer;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
@@ -45,11 +43,27 @@ import java.sql.SQLException;
  */
 public class SimpleConnectionManager implements ConnectionManager {
     private final SqlConnectable credentials;
+    private final SqlConnector connector;
     private Connection currentConnection;
 
+    /**
+     * Creates a new simple connection manager.
+     *
+     * @param credentials the credentials to connect with
+     * @param connector   the connector used to open new connections
+     */
+    public SimpleConnectionManager(SqlConnectable credentials, SqlConnector connector) {
+        this.credentials = credentials;
+        this.connector = Preconditions.checkNotNull(connector, "connector");
+    }
 
+    /**
+     * Creates a new simple connection manager that connects using the JDBC driver manager.
+     *
+     * @param credentials the credentials to connect with
+     */
     public SimpleConnectionManager(SqlConnectable credentials) {
-        this.credentials = credentials;
+        this(credentials, new DriverManagerConnector());
     }
 
 
@@ -96,17 +110,9 @@ public class SimpleConnectionManager implements ConnectionManager {
 
     private Connection connect() throws SqlConnectionException {
         try {
-            return obtainConnectionFrom(credentials);
+            return connector.obtainConnection(credentials);
         } catch (SQLException e) {
             throw new SqlConnectionException(e);
         }
     }
-
-    private Connection obtainConnectionFrom(SqlConnectable credentials) throws SQLException {
-        String jdbcUrl = SqlConnectables.getHostString(credentials);
-        Connection connection = DriverManager.getConnection(
-                jdbcUrl, credentials.getSqlUser(), credentials.getSqlPwd()
-        );
-        return Verify.verifyNotNull(connection, "connection returned by JDBC driver", credentials);
-    }
 }
@@ -28,6 +28,8 @@ import com.google.common.base.Preconditions;
 import li.l1t.common.util.Closer;
 
 import java.sql.PreparedStatement;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Abstract base class for closeable results.
@@ -37,14 +39,23 @@ import java.sql.PreparedStatement;
  */
 abstract class AbstractCloseableResult implements CloseableResult {
     private final PreparedStatement statement;
+    private final Consumer<? super PreparedStatement> statementReleaser;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
 
     AbstractCloseableResult(PreparedStatement statement) {
+        this(statement, stmt -> Closer.close(stmt));
+    }
+
+    AbstractCloseableResult(PreparedStatement statement, Consumer<? super PreparedStatement> statementReleaser) {
         this.statement = Preconditions.checkNotNull(statement, "statement");
+        this.statementReleaser = Preconditions.checkNotNull(statementReleaser, "statementReleaser");
     }
 
     @Override
     public void close() {
-        Closer.close(statement);
+        if (closed.compareAndSet(false, true)) {
+            statementReleaser.accept(statement);
+        }
     }
 
     @Override
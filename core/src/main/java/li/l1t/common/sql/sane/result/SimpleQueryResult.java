@@ -25,10 +25,12 @@
 package li.l1t.common.sql.sane.result;
 
 import com.google.common.base.Preconditions;
+import li.l1t.common.util.Closer;
 
 import javax.annotation.Nonnull;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.function.Consumer;
 
 /**
  * A simple implementation of a query result.
@@ -44,6 +46,18 @@ public class SimpleQueryResult extends AbstractCloseableResult implements QueryR
         this.resultSet = Preconditions.checkNotNull(resultSet, "resultSet");
     }
 
+    /**
+     * @param statement         the statement that produced the result set
+     * @param resultSet         the result set
+     * @param statementReleaser the handler that takes care of the statement once this result is
+     *                          closed, for example by closing it or returning it to a cache
+     */
+    public SimpleQueryResult(@Nonnull PreparedStatement statement, @Nonnull ResultSet resultSet,
+                             @Nonnull Consumer<? super PreparedStatement> statementReleaser) {
+        super(statement, statementReleaser);
+        this.resultSet = Preconditions.checkNotNull(resultSet, "resultSet");
+    }
+
     @Override
     public ResultSet rs() {
         return resultSet;
@@ -51,6 +65,7 @@ public class SimpleQueryResult extends AbstractCloseableResult implements QueryR
 
     @Override
     public void close() {
-        super.close(); //closing a prepared statement also closes its result set, so nothing to do here
+        Closer.close(resultSet); //released statements might not be closed, so we can't rely on that
+        super.close();
     }
 }
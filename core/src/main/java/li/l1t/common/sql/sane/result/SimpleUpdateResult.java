@@ -30,6 +30,7 @@ import li.l1t.common.util.Closer;
 import javax.annotation.Nonnull;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.function.Consumer;
 
 /**
  * A simple implementation of an update result.
@@ -48,6 +49,20 @@ public class SimpleUpdateResult extends AbstractCloseableResult implements Updat
         this.affectedRowCount = affectedRowCount;
     }
 
+    /**
+     * @param statement         the statement that was executed
+     * @param generatedKeys     the generated keys returned by the statement
+     * @param affectedRowCount  the amount of rows affected by the statement
+     * @param statementReleaser the handler that takes care of the statement once this result is
+     *                          closed, for example by closing it or returning it to a cache
+     */
+    public SimpleUpdateResult(@Nonnull PreparedStatement statement, @Nonnull ResultSet generatedKeys,
+                              int affectedRowCount, @Nonnull Consumer<? super PreparedStatement> statementReleaser) {
+        super(statement, statementReleaser);
+        this.generatedKeys = Preconditions.checkNotNull(generatedKeys, "generatedKeys");
+        this.affectedRowCount = affectedRowCount;
+    }
+
     @Override
     public void close() {
         Closer.close(generatedKeys);
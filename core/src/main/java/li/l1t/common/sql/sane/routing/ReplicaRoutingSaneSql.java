@@ -0,0 +1,242 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.routing;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import li.l1t.common.exception.DatabaseException;
+import li.l1t.common.sql.sane.JdbcSaneSql;
+import li.l1t.common.sql.sane.result.QueryResult;
+import li.l1t.common.sql.sane.result.UpdateResult;
+import li.l1t.common.sql.sane.scoped.JdbcScopedSession;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Routes statements between a primary database and a read replica. Updates and scoped sessions
+ * always use the primary. Queries use the replica, unless they are executed while the current
+ * thread holds a scoped session obtained from this accessor, or inside of {@link
+ * #readFromPrimary(Supplier)}.
+ * <p>
+ * Since replicas lag behind the primary, callers can record writes under a consistency key, for
+ * example the id of the player that has been changed. Reads {@link #readConsistently(Object,
+ * Supplier) for that key} are then routed to the primary for the read-your-writes window
+ * following the write.
+ * </p>
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class ReplicaRoutingSaneSql implements JdbcSaneSql {
+    private static final long MAX_TRACKED_WRITES = 100_000;
+    private final JdbcSaneSql primary;
+    private final JdbcSaneSql replica;
+    private final Cache<Object, Boolean> recentWrites;
+    private final ThreadLocal<JdbcScopedSession> currentSession = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> forcePrimary = new ThreadLocal<>();
+
+    /**
+     * @param primary              the accessor for the primary database, receiving all writes
+     * @param replica              the accessor for the read replica
+     * @param readYourWritesWindow the time after a recorded write during which reads for the
+     *                             same key are routed to the primary, should exceed the usual
+     *                             replication lag
+     */
+    public ReplicaRoutingSaneSql(JdbcSaneSql primary, JdbcSaneSql replica, Duration readYourWritesWindow) {
+        this(primary, replica, readYourWritesWindow, Ticker.systemTicker());
+    }
+
+    ReplicaRoutingSaneSql(JdbcSaneSql primary, JdbcSaneSql replica, Duration readYourWritesWindow, Ticker ticker) {
+        this.primary = Preconditions.checkNotNull(primary, "primary");
+        this.replica = Preconditions.checkNotNull(replica, "replica");
+        Preconditions.checkNotNull(readYourWritesWindow, "readYourWritesWindow");
+        Preconditions.checkArgument(!readYourWritesWindow.isNegative(), "readYourWritesWindow must not be negative: %s", readYourWritesWindow);
+        this.recentWrites = CacheBuilder.newBuilder()
+                .expireAfterWrite(readYourWritesWindow.toNanos(), TimeUnit.NANOSECONDS)
+                .maximumSize(MAX_TRACKED_WRITES)
+                .ticker(ticker)
+                .build();
+    }
+
+    @Override
+    public QueryResult query(String sqlQuery, Object... parameters) throws DatabaseException {
+        return readSql().query(sqlQuery, parameters);
+    }
+
+    @Override
+    public QueryResult streamQuery(int fetchSize, String sqlQuery, Object... parameters) throws DatabaseException {
+        return readSql().streamQuery(fetchSize, sqlQuery, parameters);
+    }
+
+    private JdbcSaneSql readSql() {
+        return Boolean.TRUE.equals(forcePrimary.get()) || isInScopedSession() ? primary : replica;
+    }
+
+    private boolean isInScopedSession() {
+        JdbcScopedSession session = currentSession.get();
+        if (session == null) {
+            return false;
+        } else if (!session.hasReferences()) {
+            currentSession.remove(); //closed, the next scoped() call creates a new session
+            return false;
+        } else {
+            return true;
+        }
+    }
+
+    @Override
+    public int updateRaw(String sqlQuery, Object... parameters) throws DatabaseException {
+        return primary.updateRaw(sqlQuery, parameters);
+    }
+
+    @Override
+    public UpdateResult update(String sqlQuery, Object... parameters) throws DatabaseException {
+        return primary.update(sqlQuery, parameters);
+    }
+
+    /**
+     * {@inheritDoc} Sessions are always opened on the primary, and queries of the current thread
+     * are routed to the primary while the session is referenced.
+     */
+    @Override
+    public JdbcScopedSession scoped() {
+        JdbcScopedSession session = primary.scoped();
+        currentSession.set(session);
+        return session;
+    }
+
+    /**
+     * Records a write concerning given key, so that reads for it are routed to the primary until
+     * the read-your-writes window has passed.
+     *
+     * @param consistencyKey the key identifying the changed data, for example a player id
+     */
+    @Override
+    public void recordWrite(Object consistencyKey) {
+        Preconditions.checkNotNull(consistencyKey, "consistencyKey");
+        recentWrites.put(consistencyKey, Boolean.TRUE);
+    }
+
+    /**
+     * @param consistencyKey the key identifying the data
+     * @return whether a write for given key has been recorded within the read-your-writes window
+     */
+    public boolean isRecentlyWritten(Object consistencyKey) {
+        Preconditions.checkNotNull(consistencyKey, "consistencyKey");
+        return recentWrites.getIfPresent(consistencyKey) != null;
+    }
+
+    /**
+     * Runs a reader, routing its queries to the primary if a write for given key has been
+     * recorded within the read-your-writes window, and to the replica otherwise.
+     *
+     * @param consistencyKey the key identifying the data read
+     * @param reader         the reader to run
+     * @param <T>            the type of data read
+     * @return the result of the reader
+     */
+    @Override
+    public <T> T readConsistently(Object consistencyKey, Supplier<T> reader) {
+        if (isRecentlyWritten(consistencyKey)) {
+            return readFromPrimary(reader);
+        } else {
+            return reader.get();
+        }
+    }
+
+    /**
+     * Runs a reader that reads data for multiple keys, routing its queries to the primary if a
+     * write for any of the keys has been recorded within the read-your-writes window.
+     *
+     * @param consistencyKeys the keys identifying the data read
+     * @param reader          the reader to run
+     * @param <T>             the type of data read
+     * @return the result of the reader
+     */
+    @Override
+    public <T> T readConsistently(Collection<?> consistencyKeys, Supplier<T> reader) {
+        Preconditions.checkNotNull(consistencyKeys, "consistencyKeys");
+        if (consistencyKeys.stream().anyMatch(this::isRecentlyWritten)) {
+            return readFromPrimary(reader);
+        } else {
+            return reader.get();
+        }
+    }
+
+    /**
+     * Runs a reader, routing all queries it executes on the current thread to the primary.
+     *
+     * @param reader the reader to run
+     * @param <T>    the type of data read
+     * @return the result of the reader
+     */
+    public <T> T readFromPrimary(Supplier<T> reader) {
+        Preconditions.checkNotNull(reader, "reader");
+        Boolean previous = forcePrimary.get();
+        forcePrimary.set(Boolean.TRUE);
+        try {
+            return reader.get();
+        } finally {
+            if (previous == null) {
+                forcePrimary.remove();
+            } else {
+                forcePrimary.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the accessor for the primary database
+     */
+    public JdbcSaneSql getPrimary() {
+        return primary;
+    }
+
+    @Override
+    public JdbcSaneSql primary() {
+        return primary;
+    }
+
+    /**
+     * @return the accessor for the read replica
+     */
+    public JdbcSaneSql getReplica() {
+        return replica;
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            replica.close();
+        } finally {
+            primary.close();
+        }
+    }
+}
@@ -29,6 +29,8 @@ import li.l1t.common.exception.InternalException;
 import li.l1t.common.sql.sane.sanebox.SqlSanebox;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -47,11 +49,24 @@ public class JdbcScopedSession implements RawScopedSession {
     private final AtomicInteger refCount = new AtomicInteger(0);
     private final AtomicBoolean transactionOpen = new AtomicBoolean(false);
     private final Connection connection;
+    private final Runnable closeHandler;
+    private final List<Runnable> commitHandlers = new ArrayList<>();
     private boolean previousAutoCommit = true;
     private boolean closed = false;
 
     public JdbcScopedSession(Connection connection) {
+        this(connection, () -> {
+        });
+    }
+
+    /**
+     * @param connection   the connection to use for this session
+     * @param closeHandler the handler to run once this session has been closed, for example to
+     *                     release the connection
+     */
+    public JdbcScopedSession(Connection connection, Runnable closeHandler) {
         this.connection = Preconditions.checkNotNull(connection, "connection");
+        this.closeHandler = Preconditions.checkNotNull(closeHandler, "closeHandler");
     }
 
     @Override
@@ -93,6 +108,30 @@ public class JdbcScopedSession implements RawScopedSession {
         checkActive();
         SqlSanebox.run(() -> connection().commit());
         endTransactionAndResetAutoCommit();
+        runCommitHandlers();
+    }
+
+    /**
+     * Registers a handler to run once the current transaction has been committed, for example to
+     * notify others of changes that only become visible with the commit. If there is no open
+     * transaction, the handler is run immediately. Handlers of transactions that are rolled back
+     * are discarded.
+     *
+     * @param handler the handler to run after the commit
+     */
+    public void runAfterCommit(Runnable handler) {
+        Preconditions.checkNotNull(handler, "handler");
+        if (hasTransaction()) {
+            commitHandlers.add(handler);
+        } else {
+            handler.run();
+        }
+    }
+
+    private void runCommitHandlers() {
+        List<Runnable> handlers = new ArrayList<>(commitHandlers);
+        commitHandlers.clear();
+        handlers.forEach(Runnable::run);
     }
 
     private void checkActive() {
@@ -114,6 +153,7 @@ public class JdbcScopedSession implements RawScopedSession {
         checkActive();
         SqlSanebox.run(() -> connection().rollback());
         endTransactionAndResetAutoCommit();
+        commitHandlers.clear();
         forceClose();
     }
 
@@ -154,7 +194,10 @@ public class JdbcScopedSession implements RawScopedSession {
     private void closeInternal() {
         refCount.set(0);
         transactionOpen.set(false);
-        closed = true;
+        if (!closed) {
+            closed = true;
+            closeHandler.run();
+        }
     }
 
     @Override
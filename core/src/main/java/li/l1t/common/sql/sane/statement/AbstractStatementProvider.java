@@ -27,6 +27,7 @@ package li.l1t.common.sql.sane.statement;
 import com.google.common.base.Verify;
 import li.l1t.common.exception.DatabaseException;
 import li.l1t.common.sql.sane.connection.ConnectionProvider;
+import li.l1t.common.sql.sane.connection.LeasingConnectionProvider;
 import li.l1t.common.sql.sane.exception.SqlStatementException;
 import org.jetbrains.annotations.NotNull;
 
@@ -37,26 +38,72 @@ import java.time.temporal.Temporal;
 import java.util.UUID;
 
 /**
- * Abstract base class for JDBC statement providers relying on {@link ConnectionProvider}
+ * Abstract base class for JDBC statement providers relying on {@link ConnectionProvider}. Keeps
+ * recycled statements in a per-connection {@link StatementCache}, if enabled.
  *
  * @author <a href="https://l1t.li/">Literallie</a>
  * @since 2016-10-09
  */
-abstract class AbstractStatementProvider implements StatementProvider {
+abstract class AbstractStatementProvider implements RecyclingStatementProvider {
     private final ConnectionProvider connectionProvider;
+    private final StatementCache statementCache;
 
     AbstractStatementProvider(ConnectionProvider connectionProvider) {
+        this(connectionProvider, 0);
+    }
+
+    AbstractStatementProvider(ConnectionProvider connectionProvider, int statementCacheSize) {
         this.connectionProvider = connectionProvider;
+        this.statementCache = new StatementCache(statementCacheSize);
     }
 
     @Override
     public PreparedStatement create(String sql, Object... parameters) {
+        Connection connection = connectionProvider.getConnection();
+        PreparedStatement statement = null;
+        boolean success = false;
         try {
-            PreparedStatement statement = prepareStatement(sql, connectionProvider.getConnection());
-            Verify.verifyNotNull(statement, "statement from driver");
-            return fillStatement(statement, parameters);
+            statement = cachedOrNewStatement(sql, connection);
+            PreparedStatement filledStatement = fillStatement(statement, parameters);
+            success = true;
+            return filledStatement;
         } catch (SQLException e) {
             throw new SqlStatementException(e);
+        } finally {
+            if (!success) {
+                if (statement != null) {
+                    statementCache.discard(statement);
+                }
+                releaseConnection(connection);
+            }
+        }
+    }
+
+    private PreparedStatement cachedOrNewStatement(String sql, Connection connection) throws SQLException {
+        PreparedStatement statement = statementCache.take(connection, sql);
+        if (statement != null) {
+            statement.clearParameters();
+        } else {
+            statement = prepareStatement(sql, connection);
+            Verify.verifyNotNull(statement, "statement from driver");
+            statementCache.track(statement, sql);
+        }
+        return statement;
+    }
+
+    @Override
+    public void recycle(PreparedStatement statement) {
+        statementCache.offer(statement);
+    }
+
+    @Override
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    private void releaseConnection(Connection connection) {
+        if (connectionProvider instanceof LeasingConnectionProvider) {
+            ((LeasingConnectionProvider) connectionProvider).releaseConnection(connection);
         }
     }
 
@@ -0,0 +1,50 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.statement;
+
+import java.sql.PreparedStatement;
+
+/**
+ * A statement provider that wants statements it created to be given back once the caller is done
+ * with them, so that they can be reused for later calls with the same SQL text.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-05
+ */
+public interface RecyclingStatementProvider extends StatementProvider {
+    /**
+     * Gives a statement created by this provider back to it. The provider either keeps it for
+     * reuse or closes it. Callers must not use the statement in any way after calling this
+     * method. Statements not created by this provider are closed.
+     *
+     * @param statement the statement to recycle
+     */
+    void recycle(PreparedStatement statement);
+
+    /**
+     * @return the cache this provider keeps recycled statements in
+     */
+    StatementCache getStatementCache();
+}
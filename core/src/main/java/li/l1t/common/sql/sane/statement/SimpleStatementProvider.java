@@ -41,6 +41,15 @@ public class SimpleStatementProvider extends AbstractStatementProvider {
         super(provider);
     }
 
+    /**
+     * @param provider           the provider to get connections from
+     * @param statementCacheSize the maximum amount of recycled statements to keep per connection,
+     *                           zero to close them right away
+     */
+    public SimpleStatementProvider(ConnectionProvider provider, int statementCacheSize) {
+        super(provider, statementCacheSize);
+    }
+
     @Override
     protected PreparedStatement prepareStatement(String sql, Connection connection) throws SQLException {
         return connection.prepareStatement(sql);
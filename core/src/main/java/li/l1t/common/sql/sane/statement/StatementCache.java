@@ -0,0 +1,284 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.statement;
+
+import com.google.common.base.Preconditions;
+import li.l1t.common.util.Closer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches idle prepared statements by connection and SQL text so that repeated statements do not
+ * need to be prepared again. Each connection has its own bounded cache that evicts and closes the
+ * least recently used statement once it is full. Statements are removed from the cache while they
+ * are in use, so a statement is never shared by two callers at the same time. Idle statements
+ * of connections that have been closed, for example because a pool discarded them, are closed and
+ * dropped once a closed connection is seen while taking a statement or when statements of a new
+ * connection are first cached, so a reconnect never hits a statement of a previous connection and
+ * discarded connections are not retained.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-05
+ */
+public class StatementCache {
+    private final int maximumSizePerConnection;
+    private final Map<Connection, Map<String, PreparedStatement>> idleStatements = new IdentityHashMap<>();
+    private final Map<PreparedStatement, String> statementsInUse = new IdentityHashMap<>();
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * @param maximumSizePerConnection the maximum amount of idle statements to keep per
+     *                                 connection, zero to disable caching
+     */
+    StatementCache(int maximumSizePerConnection) {
+        Preconditions.checkArgument(maximumSizePerConnection >= 0,
+                "maximumSizePerConnection must not be negative: %s", maximumSizePerConnection);
+        this.maximumSizePerConnection = maximumSizePerConnection;
+    }
+
+    /**
+     * @return whether this cache actually caches statements
+     */
+    public boolean isEnabled() {
+        return maximumSizePerConnection > 0;
+    }
+
+    /**
+     * Takes an idle statement for given SQL text from the cache and marks it as used.
+     *
+     * @param connection the connection the statement has to belong to
+     * @param sql        the SQL text of the statement
+     * @return the cached statement, or null if there is no usable cached statement
+     */
+    synchronized PreparedStatement take(Connection connection, String sql) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Map<String, PreparedStatement> statements = idleStatements.get(connection);
+        if (statements != null && isClosed(connection)) {
+            closeAll(idleStatements.remove(connection));
+            statements = null;
+        }
+        PreparedStatement statement = statements == null ? null : statements.remove(sql);
+        if (statement == null || isClosed(statement)) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        statementsInUse.put(statement, sql);
+        return statement;
+    }
+
+    private boolean isClosed(PreparedStatement statement) {
+        try {
+            return statement.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private boolean isClosed(Connection connection) {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private void closeAll(Map<String, PreparedStatement> statements) {
+        statements.values().forEach(statement -> Closer.close(statement));
+    }
+
+    /**
+     * Marks a freshly prepared statement as used, so that it will be accepted by {@link
+     * #offer(PreparedStatement)}.
+     *
+     * @param statement the statement
+     * @param sql       the SQL text the statement was prepared with
+     */
+    synchronized void track(PreparedStatement statement, String sql) {
+        if (isEnabled()) {
+            statementsInUse.put(statement, sql);
+        }
+    }
+
+    /**
+     * Offers a statement that is no longer in use to this cache. If the statement is not known to
+     * this cache, its connection has been closed, or there is already an idle statement with the
+     * same SQL text, it is closed instead.
+     *
+     * @param statement the statement to offer
+     */
+    void offer(PreparedStatement statement) {
+        if (!offerInternal(statement)) {
+            Closer.close(statement);
+        }
+    }
+
+    private synchronized boolean offerInternal(PreparedStatement statement) {
+        String sql = statementsInUse.remove(statement);
+        if (sql == null || isClosed(statement)) {
+            return false;
+        }
+        Connection connection = findOpenConnection(statement);
+        if (connection == null) {
+            return false;
+        }
+        Map<String, PreparedStatement> statements = idleStatements.get(connection);
+        if (statements == null) {
+            purgeClosedConnections(); //a new connection usually replaces one that has been closed
+            statements = new LruStatementMap();
+            idleStatements.put(connection, statements);
+        }
+        if (statements.containsKey(sql)) {
+            return false;
+        }
+        statements.put(sql, statement);
+        return true;
+    }
+
+    private void purgeClosedConnections() {
+        Iterator<Map.Entry<Connection, Map<String, PreparedStatement>>> it = idleStatements.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Connection, Map<String, PreparedStatement>> entry = it.next();
+            if (isClosed(entry.getKey())) {
+                closeAll(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    private Connection findOpenConnection(PreparedStatement statement) {
+        try {
+            Connection connection = statement.getConnection();
+            return connection == null || connection.isClosed() ? null : connection;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Forgets about a statement that is in use and closes it, for example because filling it
+     * failed.
+     *
+     * @param statement the statement to discard
+     */
+    void discard(PreparedStatement statement) {
+        synchronized (this) {
+            statementsInUse.remove(statement);
+        }
+        Closer.close(statement);
+    }
+
+    /**
+     * Closes and removes all idle statements from this cache. Statements currently in use are
+     * closed once they are offered back to the cache. This should be called when the underlying
+     * connections are replaced.
+     */
+    public void invalidate() {
+        List<PreparedStatement> toClose = new ArrayList<>();
+        synchronized (this) {
+            idleStatements.values().forEach(statements -> toClose.addAll(statements.values()));
+            idleStatements.clear();
+            statementsInUse.clear();
+        }
+        toClose.forEach(statement -> Closer.close(statement));
+    }
+
+    /**
+     * @return how many times an idle statement could be reused
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return how many times a statement had to be prepared because there was no idle one
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return how many idle statements were closed because their connection's cache was full
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the amount of idle statements currently cached over all connections
+     */
+    public synchronized int getIdleStatementCount() {
+        return idleStatements.values().stream()
+                .mapToInt(Map::size)
+                .sum();
+    }
+
+    /**
+     * @return the maximum amount of idle statements kept per connection
+     */
+    public int getMaximumSizePerConnection() {
+        return maximumSizePerConnection;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StatementCache{" +
+                "hits=" + hitCount +
+                ", misses=" + missCount +
+                ", evictions=" + evictionCount +
+                ", maxPerConnection=" + maximumSizePerConnection +
+                '}';
+    }
+
+    private class LruStatementMap extends LinkedHashMap<String, PreparedStatement> {
+        private static final long serialVersionUID = 1L;
+
+        private LruStatementMap() {
+            super(16, 0.75F, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() > maximumSizePerConnection) {
+                evictionCount++;
+                Closer.close(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.timing;
+
+import com.google.common.base.Preconditions;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of the counters of a single SQL template recorded by a {@link
+ * TimingSaneSql}. Latencies are recorded in a fixed histogram, so percentiles are approximated by
+ * the upper bound of the bucket they fall into.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class StatementStatistics {
+    private static final long[] BUCKET_UPPER_BOUNDS_MICROS = {
+            100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+            1_000_000, 2_500_000
+    };
+    static final int BUCKET_COUNT = BUCKET_UPPER_BOUNDS_MICROS.length + 1; //last bucket is unbounded
+    private final String template;
+    private final long executionCount;
+    private final long errorCount;
+    private final long rowCount;
+    private final long totalNanos;
+    private final long maximumNanos;
+    private final long[] bucketCounts;
+
+    StatementStatistics(String template, long executionCount, long errorCount, long rowCount,
+                        long totalNanos, long maximumNanos, long[] bucketCounts) {
+        this.template = template;
+        this.executionCount = executionCount;
+        this.errorCount = errorCount;
+        this.rowCount = rowCount;
+        this.totalNanos = totalNanos;
+        this.maximumNanos = maximumNanos;
+        this.bucketCounts = bucketCounts;
+    }
+
+    static int bucketIndexOf(long elapsedNanos) {
+        long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MICROS.length; i++) {
+            if (elapsedMicros < BUCKET_UPPER_BOUNDS_MICROS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_UPPER_BOUNDS_MICROS.length;
+    }
+
+    /**
+     * @return the SQL text of the statements, with parameter and row lists collapsed so that
+     * statements differing only in the amount of parameters share a template
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return the amount of executions, including failed ones
+     */
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    /**
+     * @return the amount of executions that failed with an exception
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return the amount of rows read from closed query results plus the amount of rows affected
+     * by updates
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the sum of the time all executions took
+     */
+    public Duration getTotalTime() {
+        return Duration.ofNanos(totalNanos);
+    }
+
+    /**
+     * @return the longest time a single execution took
+     */
+    public Duration getMaximumTime() {
+        return Duration.ofNanos(maximumNanos);
+    }
+
+    /**
+     * @return the mean time an execution took
+     */
+    public Duration getAverageTime() {
+        if (executionCount <= 0) {
+            return Duration.ZERO;
+        } else {
+            return Duration.ofNanos(totalNanos / executionCount);
+        }
+    }
+
+    /**
+     * Approximates a latency percentile from the histogram. Since only bucket boundaries are
+     * known, the result is the upper bound of the bucket the percentile falls into, or the maximum
+     * time if that is lower or the percentile falls into the last, unbounded bucket.
+     *
+     * @param percentile the percentile to compute, from 0 (exclusive) to 100 (inclusive)
+     * @return the approximate latency that the given percentage of executions did not exceed
+     */
+    public Duration getPercentile(double percentile) {
+        Preconditions.checkArgument(percentile > 0 && percentile <= 100, "percentile must be in (0, 100]: %s", percentile);
+        long rank = (long) Math.ceil(executionCount * percentile / 100D);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MICROS.length; i++) {
+            seen += bucketCounts[i];
+            if (seen >= rank && seen > 0) {
+                Duration upperBound = Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(BUCKET_UPPER_BOUNDS_MICROS[i]));
+                return upperBound.compareTo(getMaximumTime()) < 0 ? upperBound : getMaximumTime();
+            }
+        }
+        return getMaximumTime();
+    }
+
+    /**
+     * @return a copy of the histogram counts, where the bucket at index {@code i} counts
+     * executions faster than {@link #getBucketUpperBound(int) its upper bound} but not faster than
+     * the previous bucket's upper bound
+     */
+    public long[] getBucketCounts() {
+        return Arrays.copyOf(bucketCounts, bucketCounts.length);
+    }
+
+    /**
+     * @param bucketIndex the index of the histogram bucket
+     * @return the exclusive upper latency bound of given bucket, or null for the last bucket,
+     * which is unbounded
+     */
+    public static Duration getBucketUpperBound(int bucketIndex) {
+        Preconditions.checkElementIndex(bucketIndex, BUCKET_COUNT, "bucketIndex");
+        if (bucketIndex == BUCKET_UPPER_BOUNDS_MICROS.length) {
+            return null;
+        }
+        return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(BUCKET_UPPER_BOUNDS_MICROS[bucketIndex]));
+    }
+
+    @Override
+    public String toString() {
+        return "StatementStatistics{" +
+                executionCount + " executions, " +
+                errorCount + " errors, " +
+                rowCount + " rows, " +
+                "total " + getTotalTime().toMillis() + "ms, " +
+                "avg " + toMillis(getAverageTime()) + "ms " +
+                "p95 " + toMillis(getPercentile(95)) + "ms " +
+                "max " + toMillis(getMaximumTime()) + "ms: " +
+                template +
+                '}';
+    }
+
+    private String toMillis(Duration duration) {
+        return String.format("%.2f", duration.toNanos() / 1_000_000D);
+    }
+}
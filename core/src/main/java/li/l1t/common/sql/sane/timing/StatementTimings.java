@@ -0,0 +1,76 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.timing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates the execution counters of a single SQL template. Safe for concurrent use.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+class StatementTimings {
+    private final String template;
+    private final LongAdder executionCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+    private final LongAdder rowCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maximumNanos = new AtomicLong();
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(StatementStatistics.BUCKET_COUNT);
+
+    StatementTimings(String template) {
+        this.template = template;
+    }
+
+    void recordExecution(long elapsedNanos) {
+        executionCount.increment();
+        totalNanos.add(elapsedNanos);
+        maximumNanos.accumulateAndGet(elapsedNanos, Math::max);
+        bucketCounts.incrementAndGet(StatementStatistics.bucketIndexOf(elapsedNanos));
+    }
+
+    void recordError(long elapsedNanos) {
+        recordExecution(elapsedNanos);
+        errorCount.increment();
+    }
+
+    void recordRows(long rows) {
+        rowCount.add(rows);
+    }
+
+    StatementStatistics snapshot() {
+        long[] buckets = new long[bucketCounts.length()];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = bucketCounts.get(i);
+        }
+        return new StatementStatistics(
+                template, executionCount.sum(), errorCount.sum(), rowCount.sum(),
+                totalNanos.sum(), maximumNanos.get(), buckets
+        );
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.timing;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import li.l1t.common.exception.DatabaseException;
+import li.l1t.common.sql.sane.JdbcSaneSql;
+import li.l1t.common.sql.sane.result.QueryResult;
+import li.l1t.common.sql.sane.result.SimpleQueryResult;
+import li.l1t.common.sql.sane.result.UpdateResult;
+import li.l1t.common.sql.sane.scoped.JdbcScopedSession;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Decorates a sane SQL accessor, recording latency histograms, row counts and error counts per
+ * SQL template. Statements that take at least a configurable threshold are logged together with
+ * the first calling frame outside of the sane SQL framework. Scoped sessions are provided by the
+ * decorated accessor, so statements executed in a session are recorded as well.
+ * <p>
+ * Row counts of queries are only known once the caller has closed the result. Updates count
+ * their affected rows.
+ * </p>
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class TimingSaneSql implements JdbcSaneSql {
+    private static final Logger LOGGER = Logger.getLogger(TimingSaneSql.class.getName());
+    private static final String SANE_SQL_PACKAGE = "li.l1t.common.sql.sane.";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern ROW_LIST = Pattern.compile("(\\([^()]*\\))(?:\\s*,\\s*\\1)+");
+    /**
+     * The maximum amount of distinct statement templates statistics are kept for. Statistics of
+     * the least recently executed templates are discarded beyond that, so that statements built
+     * from unbounded input cannot make the statistics grow without bound. The same amount of
+     * normalised SQL texts is cached.
+     */
+    public static final long MAX_TRACKED_TEMPLATES = 1024;
+    private final JdbcSaneSql delegate;
+    private final long slowStatementThresholdNanos;
+    private final LoadingCache<String, StatementTimings> timings;
+    private final LoadingCache<String, String> templateCache;
+
+    /**
+     * @param delegate               the accessor to execute statements with
+     * @param slowStatementThreshold the minimum time a statement has to take to be logged, or a
+     *                               negative duration to not log any statements
+     */
+    public TimingSaneSql(JdbcSaneSql delegate, Duration slowStatementThreshold) {
+        this.delegate = Preconditions.checkNotNull(delegate, "delegate");
+        Preconditions.checkNotNull(slowStatementThreshold, "slowStatementThreshold");
+        this.slowStatementThresholdNanos = slowStatementThreshold.isNegative() ?
+                Long.MAX_VALUE : slowStatementThreshold.toNanos();
+        this.timings = CacheBuilder.newBuilder()
+                .maximumSize(MAX_TRACKED_TEMPLATES)
+                .build(CacheLoader.from(StatementTimings::new));
+        this.templateCache = CacheBuilder.newBuilder()
+                .maximumSize(MAX_TRACKED_TEMPLATES)
+                .build(CacheLoader.from(TimingSaneSql::templateOf));
+    }
+
+    private TimingSaneSql(JdbcSaneSql delegate, TimingSaneSql statisticsOwner) {
+        this.delegate = delegate;
+        this.slowStatementThresholdNanos = statisticsOwner.slowStatementThresholdNanos;
+        this.timings = statisticsOwner.timings;
+        this.templateCache = statisticsOwner.templateCache;
+    }
+
+    /**
+     * Collapses whitespace, parameter lists and repeated row lists of a SQL statement, so that
+     * statements that only differ in the amount of parameters map to the same template.
+     *
+     * @param sql the SQL text to normalise
+     * @return the template of given SQL text
+     */
+    static String templateOf(String sql) {
+        String template = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        template = PARAMETER_LIST.matcher(template).replaceAll("?, ...");
+        return ROW_LIST.matcher(template).replaceAll("$1, ...");
+    }
+
+    @Override
+    public QueryResult query(String sqlQuery, Object... parameters) throws DatabaseException {
+        StatementTimings statementTimings = timingsFor(sqlQuery);
+        long startNanos = System.nanoTime();
+        QueryResult result;
+        try {
+            result = delegate.query(sqlQuery, parameters);
+        } catch (RuntimeException e) {
+            statementTimings.recordError(System.nanoTime() - startNanos);
+            throw e;
+        }
+        recordExecution(statementTimings, sqlQuery, System.nanoTime() - startNanos);
+        return countingRows(result, statementTimings);
+    }
+
+    /**
+     * {@inheritDoc} Only the time until the first rows are available is recorded, not the time
+     * spent reading the result.
+     */
+    @Override
+    public QueryResult streamQuery(int fetchSize, String sqlQuery, Object... parameters) throws DatabaseException {
+        StatementTimings statementTimings = timingsFor(sqlQuery);
+        long startNanos = System.nanoTime();
+        QueryResult result;
+        try {
+            result = delegate.streamQuery(fetchSize, sqlQuery, parameters);
+        } catch (RuntimeException e) {
+            statementTimings.recordError(System.nanoTime() - startNanos);
+            throw e;
+        }
+        recordExecution(statementTimings, sqlQuery, System.nanoTime() - startNanos);
+        return countingRows(result, statementTimings);
+    }
+
+    private QueryResult countingRows(QueryResult result, StatementTimings statementTimings) {
+        RowCountingResultSet countingResultSet = RowCountingResultSet.wrap(result.rs());
+        return new SimpleQueryResult(result.getStatement(), countingResultSet.proxy(), stmt -> {
+            statementTimings.recordRows(countingResultSet.getRowCount());
+            result.close();
+        });
+    }
+
+    @Override
+    public int updateRaw(String sqlQuery, Object... parameters) throws DatabaseException {
+        StatementTimings statementTimings = timingsFor(sqlQuery);
+        long startNanos = System.nanoTime();
+        int affectedRowCount;
+        try {
+            affectedRowCount = delegate.updateRaw(sqlQuery, parameters);
+        } catch (RuntimeException e) {
+            statementTimings.recordError(System.nanoTime() - startNanos);
+            throw e;
+        }
+        recordExecution(statementTimings, sqlQuery, System.nanoTime() - startNanos);
+        statementTimings.recordRows(affectedRowCount);
+        return affectedRowCount;
+    }
+
+    @Override
+    public UpdateResult update(String sqlQuery, Object... parameters) throws DatabaseException {
+        StatementTimings statementTimings = timingsFor(sqlQuery);
+        long startNanos = System.nanoTime();
+        UpdateResult result;
+        try {
+            result = delegate.update(sqlQuery, parameters);
+        } catch (RuntimeException e) {
+            statementTimings.recordError(System.nanoTime() - startNanos);
+            throw e;
+        }
+        recordExecution(statementTimings, sqlQuery, System.nanoTime() - startNanos);
+        statementTimings.recordRows(result.getAffectedRowCount());
+        return result;
+    }
+
+    private StatementTimings timingsFor(String sqlQuery) {
+        Preconditions.checkNotNull(sqlQuery, "sqlQuery");
+        return timings.getUnchecked(templateCache.getUnchecked(sqlQuery));
+    }
+
+    private void recordExecution(StatementTimings statementTimings, String sqlQuery, long elapsedNanos) {
+        statementTimings.recordExecution(elapsedNanos);
+        if (elapsedNanos >= slowStatementThresholdNanos && LOGGER.isLoggable(Level.WARNING)) {
+            LOGGER.warning(String.format("Slow SQL statement took %dms, called from %s: %s",
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), findCallSite(), sqlQuery));
+        }
+    }
+
+    private String findCallSite() {
+        return Arrays.stream(new Throwable().getStackTrace())
+                .filter(frame -> !frame.getClassName().startsWith(SANE_SQL_PACKAGE))
+                .findFirst()
+                .map(StackTraceElement::toString)
+                .orElse("unknown");
+    }
+
+    @Override
+    public JdbcScopedSession scoped() {
+        return delegate.scoped();
+    }
+
+    /**
+     * {@inheritDoc} Statements executed on the primary are recorded in the statistics of this
+     * accessor.
+     */
+    @Override
+    public JdbcSaneSql primary() {
+        JdbcSaneSql delegatePrimary = delegate.primary();
+        return delegatePrimary == delegate ? this : new TimingSaneSql(delegatePrimary, this);
+    }
+
+    @Override
+    public void recordWrite(Object consistencyKey) {
+        delegate.recordWrite(consistencyKey);
+    }
+
+    @Override
+    public <T> T readConsistently(Object consistencyKey, Supplier<T> reader) {
+        return delegate.readConsistently(consistencyKey, reader);
+    }
+
+    @Override
+    public <T> T readConsistently(Collection<?> consistencyKeys, Supplier<T> reader) {
+        return delegate.readConsistently(consistencyKeys, reader);
+    }
+
+    /**
+     * @return a snapshot of the statistics of the templates executed since creation or the last
+     * reset, limited to the {@link #MAX_TRACKED_TEMPLATES} most recently executed ones, ordered
+     * by descending total time
+     */
+    public List<StatementStatistics> getStatistics() {
+        return timings.asMap().values().stream()
+                .map(StatementTimings::snapshot)
+                .sorted(Comparator.comparing(StatementStatistics::getTotalTime).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param sqlQuery the SQL text of a statement, which is normalised to its template
+     * @return a snapshot of the statistics of given statement's template, or an empty optional if
+     * it has not been executed since creation or the last reset
+     */
+    public Optional<StatementStatistics> getStatistics(String sqlQuery) {
+        Preconditions.checkNotNull(sqlQuery, "sqlQuery");
+        return Optional.ofNullable(timings.getIfPresent(templateCache.getUnchecked(sqlQuery)))
+                .map(StatementTimings::snapshot);
+    }
+
+    /**
+     * Discards all recorded statistics.
+     */
+    public void resetStatistics() {
+        timings.invalidateAll();
+    }
+
+    /**
+     * @return the decorated accessor
+     */
+    public JdbcSaneSql getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void close() throws Exception {
+        delegate.close();
+    }
+}
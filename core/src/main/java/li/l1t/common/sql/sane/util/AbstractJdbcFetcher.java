@@ -25,12 +25,21 @@
 package li.l1t.common.sql.sane.util;
 
 import com.google.common.collect.ImmutableList;
+import li.l1t.common.exception.DatabaseException;
 import li.l1t.common.sql.sane.AbstractSqlConnected;
+import li.l1t.common.sql.sane.JdbcSaneSql;
 import li.l1t.common.sql.sane.SaneSql;
 import li.l1t.common.sql.sane.result.QueryResult;
 
 import java.sql.SQLException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Abstract base class for fetchers that fetch data from JDBC SQL data sources.
@@ -39,6 +48,11 @@ import java.util.Collection;
  * @since 2016-10-10
  */
 public abstract class AbstractJdbcFetcher<T> extends AbstractSqlConnected {
+    /**
+     * The default amount of rows fetched from the database at once by {@link
+     * #streamSelect(String, Object...)}.
+     */
+    public static final int DEFAULT_STREAM_FETCH_SIZE = 500;
     protected final JdbcEntityCreator<? extends T> creator;
 
     protected AbstractJdbcFetcher(JdbcEntityCreator<? extends T> creator, SaneSql saneSql) {
@@ -56,6 +70,81 @@ public abstract class AbstractJdbcFetcher<T> extends AbstractSqlConnected {
 
     protected abstract String buildSelect(String whereClause);
 
+    /**
+     * Selects rows like {@link #select(String, Object...)}, but streams the entities instead of
+     * collecting them, so that large results can be processed in constant memory. Rows are
+     * fetched in chunks of {@link #DEFAULT_STREAM_FETCH_SIZE} if the connected accessor is a
+     * {@link JdbcSaneSql} and the driver honours fetch sizes.
+     *
+     * @param whereClause the condition selecting the rows to stream
+     * @param parameters  the parameters for the condition
+     * @return a lazily populated stream of entities that must be closed after use, unless it has
+     * been consumed completely
+     * @see JdbcSaneSql#streamQuery(int, String, Object...)
+     */
+    protected Stream<T> streamSelect(String whereClause, Object... parameters) {
+        String sqlQuery = buildSelect(whereClause);
+        QueryResult result;
+        if (sql() instanceof JdbcSaneSql) {
+            result = ((JdbcSaneSql) sql()).streamQuery(DEFAULT_STREAM_FETCH_SIZE, sqlQuery, parameters);
+        } else {
+            result = sql().query(sqlQuery, parameters);
+        }
+        return streamAll(result);
+    }
+
+    /**
+     * Creates a stream of the entities of all remaining rows of a result. The result is closed
+     * when the stream is closed or all rows have been read.
+     *
+     * @param result the result to stream
+     * @return a lazily populated sequential stream of entities
+     */
+    protected Stream<T> streamAll(QueryResult result) {
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (proceedToNextRow(result)) {
+                        action.accept(entityFromCurrentRow(result));
+                        return true;
+                    } else {
+                        result.close();
+                        return false;
+                    }
+                } catch (SQLException e) {
+                    result.close();
+                    throw DatabaseException.wrap(e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false)
+                .onClose(result::close);
+    }
+
+    /**
+     * Builds a condition matching rows whose given column is equal to any of a number of
+     * parameters, for example {@code player_uuid IN (?, ?, ?)}.
+     *
+     * @param column         the column to compare
+     * @param parameterCount the amount of parameters, must be positive
+     * @return the condition
+     */
+    protected String buildInCondition(String column, int parameterCount) {
+        return column + " IN (" + String.join(", ", Collections.nCopies(parameterCount, "?")) + ")";
+    }
+
+    /**
+     * @param uuids the unique ids to convert
+     * @return an array of statement parameters representing given unique ids in the same order
+     */
+    protected Object[] uuidParameters(Collection<UUID> uuids) {
+        return uuids.stream()
+                .map(UUID::toString)
+                .toArray();
+    }
+
     protected Collection<T> collectAll(QueryResult result) throws SQLException {
         ImmutableList.Builder<T> products = ImmutableList.builder();
         while (proceedToNextRow(result)) {
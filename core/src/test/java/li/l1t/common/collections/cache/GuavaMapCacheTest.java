@@ -0,0 +1,160 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.collections.cache;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class GuavaMapCacheTest {
+    private final FakeTicker ticker = new FakeTicker();
+    private final List<Runnable> scheduledRefreshes = new ArrayList<>();
+    private final AtomicInteger supplierCalls = new AtomicInteger();
+
+    private GuavaMapCache<String, Integer> givenARefreshAheadCache() {
+        return new GuavaMapCache<>(1, 5, TimeUnit.MINUTES, scheduledRefreshes::add, ticker);
+    }
+
+    private Integer countingSupplier(String key) {
+        return supplierCalls.incrementAndGet();
+    }
+
+    @Test
+    public void testGetOrCompute__freshNoRefresh() {
+        //given
+        GuavaMapCache<String, Integer> cache = givenARefreshAheadCache();
+        cache.cache("a", 0);
+        ticker.advance(30, TimeUnit.SECONDS);
+        //when
+        Integer value = cache.getOrCompute("a", this::countingSupplier);
+        //then
+        assertThat(value, is(0));
+        assertThat(scheduledRefreshes, is(empty()));
+    }
+
+    @Test
+    public void testGetOrCompute__staleServedAndRefreshed() {
+        //given
+        GuavaMapCache<String, Integer> cache = givenARefreshAheadCache();
+        cache.cache("a", 0);
+        ticker.advance(2, TimeUnit.MINUTES);
+        //when
+        Integer value = cache.getOrCompute("a", this::countingSupplier);
+        cache.getOrCompute("a", this::countingSupplier);
+        //then
+        assertThat("stale value is not served", value, is(0));
+        assertThat("refresh not scheduled exactly once", scheduledRefreshes, hasSize(1));
+        scheduledRefreshes.get(0).run();
+        assertThat(cache.get("a"), is(Optional.of(1)));
+    }
+
+    @Test
+    public void testGetOrCompute__refreshAfterInvalidationDiscarded() {
+        //given
+        GuavaMapCache<String, Integer> cache = givenARefreshAheadCache();
+        cache.cache("a", 0);
+        ticker.advance(2, TimeUnit.MINUTES);
+        cache.getOrCompute("a", this::countingSupplier);
+        //when
+        cache.invalidateKey("a");
+        scheduledRefreshes.get(0).run();
+        //then
+        assertThat(cache.get("a"), is(Optional.empty()));
+    }
+
+    @Test
+    public void testGetOrCompute__hardExpiryBlocks() {
+        //given
+        GuavaMapCache<String, Integer> cache = givenARefreshAheadCache();
+        cache.cache("a", 0);
+        ticker.advance(6, TimeUnit.MINUTES);
+        //when
+        Integer value = cache.getOrCompute("a", this::countingSupplier);
+        //then
+        assertThat(value, is(1));
+        assertThat(scheduledRefreshes, is(empty()));
+    }
+
+    @Test
+    public void testCache__maximumSizeEvicts() {
+        //given
+        GuavaMapCache<String, Integer> cache = new GuavaMapCache<>(5, TimeUnit.MINUTES, 2);
+        //when
+        cache.cache("a", 1);
+        cache.cache("b", 2);
+        cache.cache("c", 3);
+        //then
+        assertThat(cache.getSize(), is(2L));
+        assertThat(cache.getEvictionCount(), is(1L));
+    }
+
+    @Test
+    public void testCache__maximumWeightEvicts() {
+        //given
+        GuavaMapCache<String, List<String>> cache = new GuavaMapCache<>(
+                5, TimeUnit.MINUTES, 3, (key, value) -> value.size()
+        );
+        //when
+        cache.cache("a", Arrays.asList("1", "2"));
+        cache.cache("b", Arrays.asList("3", "4"));
+        //then
+        assertThat(cache.getSize(), is(1L));
+        assertThat(cache.get("b").isPresent(), is(true));
+        assertThat(cache.getEvictionCount(), is(1L));
+    }
+
+    @Test
+    public void testInvalidateKey__notCountedAsEviction() {
+        //given
+        GuavaMapCache<String, Integer> cache = new GuavaMapCache<>(5, TimeUnit.MINUTES, 2);
+        cache.cache("a", 1);
+        //when
+        cache.invalidateKey("a");
+        //then
+        assertThat(cache.getEvictionCount(), is(0L));
+    }
+
+    private static class FakeTicker extends Ticker {
+        private long nanos = 0;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        private void advance(long duration, TimeUnit unit) {
+            nanos += unit.toNanos(duration);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.collections.cache;
+
+import org.junit.Test;
+
+import java.util.function.Function;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class MapIdCacheTest {
+    private final MapIdCache<String, String> cache = new MapIdCache<>(Function.identity());
+    private final SecondaryIndex<Character, String, String> byFirstChar = cache.addSecondaryIndex(value -> value.charAt(0));
+
+    @Test
+    public void testSecondaryIndex__find() {
+        //given
+        cache.cache("a1");
+        cache.cache("a2");
+        cache.cache("b1");
+        //when
+        //then
+        assertThat(byFirstChar.find('a'), containsInAnyOrder("a1", "a2"));
+        assertThat(byFirstChar.find('c'), is(empty()));
+    }
+
+    @Test
+    public void testSecondaryIndex__invalidate() {
+        //given
+        cache.cache("a1");
+        cache.cache("a2");
+        cache.cache("b1");
+        //when
+        byFirstChar.invalidate('a');
+        //then
+        assertThat(cache.containsKey("a1"), is(false));
+        assertThat(cache.containsKey("a2"), is(false));
+        assertThat(cache.containsKey("b1"), is(true));
+    }
+
+    @Test
+    public void testSecondaryIndex__invalidateKeyRemovesFromIndex() {
+        //given
+        cache.cache("a1");
+        cache.cache("a2");
+        //when
+        cache.invalidateKey("a1");
+        //then
+        assertThat(byFirstChar.find('a'), contains("a2"));
+    }
+
+    @Test
+    public void testSecondaryIndex__existingValuesIndexed() {
+        //given
+        MapIdCache<String, String> cache = new MapIdCache<>(Function.identity());
+        cache.cache("x1");
+        //when
+        SecondaryIndex<Character, String, String> index = cache.addSecondaryIndex(value -> value.charAt(0));
+        //then
+        assertThat(index.find('x'), contains("x1"));
+    }
+}
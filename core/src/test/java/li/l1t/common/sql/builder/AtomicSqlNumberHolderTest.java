@@ -0,0 +1,160 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.builder;
+
+import li.l1t.common.sql.builder.annotation.SqlValueCache;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("deprecation")
+public class AtomicSqlNumberHolderTest {
+    @Test
+    public void testAdd__queuesModifier() {
+        //given
+        IntSqlNumberHolder holder = new IntSqlNumberHolder("kills", 5);
+        //when
+        holder.add(3);
+        holder.add(-1);
+        //then
+        assertThat(holder.intValue(), is(7));
+        assertThat(holder.getModifier(), is(2));
+        assertThat(holder.isModified(), is(true));
+    }
+
+    @Test
+    public void testGetSnapshot__drainsModifier() {
+        //given
+        IntSqlNumberHolder holder = new IntSqlNumberHolder("kills", 5);
+        holder.add(3);
+        //when
+        Integer snapshot = (Integer) holder.getSnapshot();
+        //then
+        assertThat(snapshot, is(3));
+        assertThat(holder.isModified(), is(false));
+        assertThat((Integer) holder.getSnapshot(), is(0));
+        assertThat(holder.intValue(), is(8));
+    }
+
+    @Test
+    public void testAdd__registersChange() {
+        //given
+        LongSqlNumberHolder holder = new LongSqlNumberHolder("points", 1L);
+        SqlValueHolder.DataSource dataSource = mock(SqlValueHolder.DataSource.class);
+        holder.setDataSource(dataSource);
+        //when
+        holder.add(2L);
+        //then
+        verify(dataSource).registerChange(holder);
+        assertThat(holder.longValue(), is(3L));
+    }
+
+    @Test
+    public void testGetValue__zeroFetchesFromDataSource() {
+        //given
+        IntSqlNumberHolder holder = new IntSqlNumberHolder("kills");
+        SqlValueHolder.DataSource dataSource = mock(SqlValueHolder.DataSource.class);
+        when(dataSource.select(holder)).then(invocation -> {
+            holder.updateValue(42);
+            return true;
+        });
+        holder.setDataSource(dataSource);
+        //when
+        holder.add(1);
+        //then
+        assertThat(holder.intValue(), is(43));
+        assertThat(holder.getModifier(), is(1));
+    }
+
+    @Test
+    public void testUpdateValue__resetsModifier() {
+        //given
+        DoubleSqlNumberHolder holder = new DoubleSqlNumberHolder("coins", 1D);
+        holder.add(0.5D);
+        //when
+        holder.updateValue(4D);
+        //then
+        assertThat(holder.doubleValue(), is(4D));
+        assertThat(holder.isModified(), is(false));
+    }
+
+    @Test
+    public void testIsModified__negativeZeroDouble() {
+        //given
+        DoubleSqlNumberHolder holder = new DoubleSqlNumberHolder("coins", 1D);
+        //when
+        holder.add(-0D);
+        //then
+        assertThat(holder.isModified(), is(false));
+    }
+
+    @Test
+    public void testAdd__concurrentAddsNotLost() throws InterruptedException {
+        //given
+        IntSqlNumberHolder holder = new IntSqlNumberHolder("kills", 1);
+        List<Thread> threads = new ArrayList<>();
+        int[] drained = new int[1];
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    holder.add(1);
+                }
+            }));
+        }
+        Thread drainer = new Thread(() -> {
+            for (int j = 0; j < 1_000; j++) {
+                drained[0] += (Integer) holder.getSnapshot();
+            }
+        });
+        //when
+        threads.forEach(Thread::start);
+        drainer.start();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        drainer.join();
+        //then
+        assertThat(drained[0] + (Integer) holder.getSnapshot(), is(40_000));
+        assertThat(holder.intValue(), is(40_001));
+    }
+
+    @Test
+    public void testFromAnnotation__specialisedHolder() {
+        //given
+        SqlValueCache annotation = mock(SqlValueCache.class);
+        when(annotation.value()).thenReturn("kills");
+        doReturn(Integer.class).when(annotation).numberType();
+        //when
+        ConcurrentSqlNumberHolder<?> holder = ConcurrentSqlNumberHolder.fromAnnotation(annotation);
+        //then
+        assertThat(holder, is(instanceOf(IntSqlNumberHolder.class)));
+        assertThat(holder.getColumnName(), is("kills"));
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.builder;
+
+import li.l1t.common.sql.PreparedStatementFactory;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("deprecation")
+public class QueryBuilderTest {
+    @Test
+    public void testBuildUpdate__upsertSql() throws SQLException {
+        //given
+        SqlValueHolder<String> name = new SqlValueHolder<>("name", "Hans");
+        SqlIdentifierHolder<String> uuid = new SqlIdentifierHolder<>("uuid", "some-uuid");
+        QueryBuilder builder = new QueryBuilder("users").addPart((QuerySnapshot) name).addUniqueIdentifier(uuid);
+        PreparedStatementFactory factory = givenAStatementFactory();
+        //when
+        builder.buildUpdate(factory);
+        //then
+        verify(factory).prepareStatement(
+                "INSERT INTO users SET name=?,uuid=? ON DUPLICATE KEY UPDATE name=?,uuid=?");
+        assertThat(capturedArguments(factory), is(Matchers.<Object>arrayContaining("Hans", "some-uuid", "Hans", "some-uuid")));
+    }
+
+    @Test
+    public void testBuildTrueUpdate__reusesSqlAndRebindsValues() throws SQLException {
+        //given
+        SqlValueHolder<String> name = new SqlValueHolder<>("name", "Hans");
+        SqlIdentifierHolder<String> uuid = new SqlIdentifierHolder<>("uuid", "some-uuid");
+        QueryBuilder builder = new QueryBuilder("users").addPart((QuerySnapshot) name).addUniqueIdentifier(uuid);
+        PreparedStatementFactory factory = givenAStatementFactory();
+        builder.buildTrueUpdate(factory);
+        name.updateValue("Franz");
+        //when
+        builder.buildTrueUpdate(factory);
+        //then
+        verify(factory, times(2)).prepareStatement("UPDATE users SET name=? WHERE uuid=?");
+        assertThat(capturedArguments(factory), is(Matchers.<Object>arrayContaining("Franz", "some-uuid")));
+    }
+
+    @Test
+    public void testBuildTrueUpdate__shapeChangeRecompiles() throws SQLException {
+        //given
+        SqlValueHolder<String> name = new SqlValueHolder<>("name", "Hans");
+        QueryBuilder builder = new QueryBuilder("users").addPart((QuerySnapshot) name)
+                .addUniqueIdentifier(new SqlIdentifierHolder<>("uuid", "some-uuid"));
+        PreparedStatementFactory factory = givenAStatementFactory();
+        builder.buildTrueUpdate(factory);
+        builder.addUniqueIdentifier(new SimpleQuerySnapshot("username", "Hans", QuerySnapshot.Type.NEGATED_OBJECT_IDENTIFIER));
+        //when
+        builder.buildTrueUpdate(factory);
+        //then
+        verify(factory).prepareStatement("UPDATE users SET name=? WHERE uuid=? AND username!=?");
+        assertThat(capturedArguments(factory), is(Matchers.<Object>arrayContaining("Hans", "some-uuid", "Hans")));
+    }
+
+    @Test
+    public void testBuildSelect__sharedBetweenBuilders() throws SQLException {
+        //given
+        QueryBuilder first = new QueryBuilder("users").addPart((QuerySnapshot) new SqlValueHolder<>("name", "Hans"))
+                .addUniqueIdentifier(new SqlIdentifierHolder<>("uuid", "first"));
+        QueryBuilder second = new QueryBuilder("users").addPart((QuerySnapshot) new SqlValueHolder<>("name", "Franz"))
+                .addUniqueIdentifier(new SqlIdentifierHolder<>("uuid", "second"));
+        PreparedStatementFactory factory = givenAStatementFactory();
+        first.buildSelect(factory, false);
+        //when
+        second.buildSelect(factory, false);
+        //then
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(factory, times(2)).prepareStatement(sql.capture());
+        assertThat(sql.getAllValues().get(1), is(sameInstance(sql.getAllValues().get(0))));
+        assertThat(sql.getValue(), is("SELECT name,uuid FROM users WHERE uuid=?"));
+        assertThat(capturedArguments(factory), is(Matchers.<Object>arrayContaining("second")));
+    }
+
+    @Test
+    public void testBuildSelect__selectStar() throws SQLException {
+        //given
+        QueryBuilder builder = new QueryBuilder("users").addPart((QuerySnapshot) new SqlValueHolder<>("name", "Hans"))
+                .addUniqueIdentifier(new SqlIdentifierHolder<>("uuid", "some-uuid"));
+        PreparedStatementFactory factory = givenAStatementFactory();
+        //when
+        builder.buildSelect(factory, true);
+        //then
+        verify(factory).prepareStatement("SELECT * FROM users WHERE uuid=?");
+        assertThat(capturedArguments(factory), is(Matchers.<Object>arrayContaining("some-uuid")));
+    }
+
+    @Test
+    public void testBindTrueUpdateArguments__matchesSql() {
+        //given
+        SqlValueHolder<String> name = new SqlValueHolder<>("name", "Hans");
+        QueryBuilder builder = new QueryBuilder("users").addPart((QuerySnapshot) name)
+                .addUniqueIdentifier(new SqlIdentifierHolder<>("uuid", "some-uuid"));
+        //when
+        String sql = builder.getTrueUpdateSql();
+        Object[] arguments = builder.bindTrueUpdateArguments();
+        //then
+        assertThat(sql, is("UPDATE users SET name=? WHERE uuid=?"));
+        assertThat(arguments, is(Matchers.<Object>arrayContaining("Hans", "some-uuid")));
+    }
+
+    @Test
+    public void testGetTrueUpdateSql__noIdentifiers() {
+        //given
+        QueryBuilder builder = new QueryBuilder("users").addPart((QuerySnapshot) new SqlValueHolder<>("name", "Hans"));
+        //when
+        String sql = builder.getTrueUpdateSql();
+        //then
+        assertThat(sql, is(nullValue()));
+        assertThat(builder.bindTrueUpdateArguments(), is(nullValue()));
+    }
+
+    private PreparedStatementFactory givenAStatementFactory() throws SQLException {
+        PreparedStatementFactory factory = mock(PreparedStatementFactory.class);
+        when(factory.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+        return factory;
+    }
+
+    private Object[] capturedArguments(PreparedStatementFactory factory) throws SQLException {
+        ArgumentCaptor<Object[]> arguments = ArgumentCaptor.forClass(Object[].class);
+        verify(factory, atLeastOnce()).fillStatement(any(PreparedStatement.class), arguments.capture());
+        return arguments.getValue();
+    }
+}
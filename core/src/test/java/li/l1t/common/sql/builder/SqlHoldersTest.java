@@ -0,0 +1,123 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.builder;
+
+import li.l1t.common.sql.builder.annotation.SqlValueCache;
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("deprecation")
+public class SqlHoldersTest {
+    @Test
+    public void testBuild__populatesFields() throws IllegalAccessException {
+        //given
+        SqlHolders.CacheBuilder builder = SqlHolders.processClassStructure(Sample.class);
+        Sample sample = new Sample();
+        //when
+        List<SqlValueHolder<?>> holders = builder.build(sample, null);
+        //then
+        assertThat(holders, containsInAnyOrder(sample.name, sample.kills, sample.preset));
+        assertThat(sample.name.getColumnName(), is("name"));
+        assertThat(sample.kills, is(instanceOf(ConcurrentSqlNumberHolder.class)));
+    }
+
+    @Test
+    public void testBuild__keepsExistingHolders() throws IllegalAccessException {
+        //given
+        SqlHolders.CacheBuilder builder = SqlHolders.processClassStructure(Sample.class);
+        Sample sample = new Sample();
+        SqlValueHolder<?> preset = sample.preset;
+        //when
+        builder.build(sample, null);
+        builder.build(sample, null);
+        //then
+        assertThat(sample.preset, is(sameInstance(preset)));
+    }
+
+    @Test
+    public void testBuild__separateInstances() throws IllegalAccessException {
+        //given
+        SqlHolders.CacheBuilder builder = SqlHolders.processClassStructure(Sample.class);
+        Sample first = new Sample();
+        Sample second = new Sample();
+        //when
+        builder.build(first, null);
+        builder.build(second, null);
+        //then
+        assertThat(first.name, is(not(sameInstance(second.name))));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testBuild__noAccessorInstance() throws IllegalAccessException {
+        //given
+        SqlHolders.CacheBuilder builder = SqlHolders.processClassStructure(Sample.class);
+        //when
+        builder.build(null, null);
+        //then an exception is thrown
+    }
+
+    @Test
+    public void testUpdateFromResultSet__onlyAvailableColumns() throws IllegalAccessException, SQLException {
+        //given
+        Sample sample = new Sample();
+        List<SqlValueHolder<?>> holders = SqlHolders.processClassStructure(Sample.class).build(sample, null);
+        ResultSet resultSet = givenAResultSetWithColumns("name");
+        when(resultSet.getObject("name")).thenReturn("Literallie");
+        //when
+        SqlHolders.updateFromResultSet(holders, resultSet);
+        //then
+        assertThat(sample.name.getValue(), is("Literallie"));
+        assertThat(sample.preset.isFetched(), is(false));
+        verify(resultSet, never()).getObject("preset");
+    }
+
+    private ResultSet givenAResultSetWithColumns(String... columnNames) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(columnNames.length);
+        for (int i = 0; i < columnNames.length; i++) {
+            when(metaData.getColumnName(i + 1)).thenReturn(columnNames[i]);
+        }
+        return resultSet;
+    }
+
+    private static class Sample {
+        @SqlValueCache("name")
+        private SqlValueHolder<String> name;
+        @SqlValueCache(value = "kills", type = SqlValueCache.Type.NUMBER_MODIFICATION)
+        private ConcurrentSqlNumberHolder<Integer> kills;
+        @SqlValueCache("preset")
+        private final SqlValueHolder<String> preset = new SqlValueHolder<>("preset");
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.connection;
+
+import li.l1t.common.sql.SqlConnectable;
+import li.l1t.common.sql.sane.exception.SqlConnectionException;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class PooledConnectionManagerTest {
+    @Test
+    public void testGetConnection__sameThreadSameConnection() throws Exception {
+        //given
+        PooledConnectionManager manager = givenAPoolOfSize(2);
+        //when
+        Connection first = manager.getConnection();
+        Connection second = manager.getConnection();
+        //then
+        assertThat("thread does not reuse its lease", second, is(sameInstance(first)));
+        assertThat(manager.getStatistics().getOpenConnectionCount(), is(1));
+        assertThat(manager.getStatistics().getActiveLeaseCount(), is(1));
+    }
+
+    @Test
+    public void testReleaseConnection__returnedAfterLastRelease() throws Exception {
+        //given
+        PooledConnectionManager manager = givenAPoolOfSize(2);
+        Connection connection = manager.getConnection();
+        manager.getConnection();
+        //when
+        manager.releaseConnection(connection);
+        //then
+        assertThat("returned while still leased", manager.getStatistics().getIdleConnectionCount(), is(0));
+        manager.releaseConnection(connection);
+        assertThat("not returned after last release", manager.getStatistics().getIdleConnectionCount(), is(1));
+        assertThat(manager.getCurrentConnection(), is(nullValue()));
+    }
+
+    @Test
+    public void testGetConnection__reusesIdle() throws Exception {
+        //given
+        PooledConnectionManager manager = givenAPoolOfSize(2);
+        Connection first = manager.getConnection();
+        manager.releaseConnection(first);
+        //when
+        Connection second = manager.getConnection();
+        //then
+        assertThat("idle connection not reused", second, is(sameInstance(first)));
+        assertThat(manager.getStatistics().getCreatedConnectionCount(), is(1L));
+        assertThat(manager.getStatistics().getTotalLeaseCount(), is(2L));
+    }
+
+    @Test
+    public void testGetConnection__otherThreadOtherConnection() throws Exception {
+        //given
+        PooledConnectionManager manager = givenAPoolOfSize(2);
+        Connection first = manager.getConnection();
+        //when
+        Connection second = CompletableFuture.supplyAsync(manager::getConnection).get();
+        //then
+        assertThat("threads share a lease", second, is(not(sameInstance(first))));
+        assertThat(manager.getStatistics().getOpenConnectionCount(), is(2));
+    }
+
+    @Test(expected = SqlConnectionException.class)
+    public void testGetConnection__exhausted() throws Throwable {
+        //given
+        PooledConnectionManager manager = givenAPoolOfSize(1);
+        CompletableFuture.supplyAsync(manager::getConnection).get();
+        //when
+        manager.getConnection();
+        //then an exception is thrown
+    }
+
+    @Test
+    public void testReleaseConnection__dirtyDiscarded() throws Exception {
+        //given
+        PooledConnectionManager manager = givenAPoolOfSize(1);
+        Connection connection = manager.getConnection();
+        when(connection.getAutoCommit()).thenReturn(false);
+        //when
+        manager.releaseConnection(connection);
+        //then
+        verify(connection).close();
+        assertThat(manager.getStatistics().getOpenConnectionCount(), is(0));
+        assertThat(manager.getStatistics().getDiscardedConnectionCount(), is(1L));
+    }
+
+    @Test
+    public void testForceReconnect__leasedClosedOnRelease() throws Exception {
+        //given
+        PooledConnectionManager manager = givenAPoolOfSize(2);
+        Connection connection = manager.getConnection();
+        //when
+        manager.forceReconnect();
+        manager.releaseConnection(connection);
+        //then
+        verify(connection).close();
+        assertThat(manager.getConnection(), is(not(sameInstance(connection))));
+    }
+
+    private PooledConnectionManager givenAPoolOfSize(int maximumPoolSize) throws SQLException {
+        SqlConnector connector = mock(SqlConnector.class);
+        when(connector.obtainConnection(any())).thenAnswer(invocation -> givenAConnection());
+        return new PooledConnectionManager(
+                mock(SqlConnectable.class), connector, maximumPoolSize, 10, TimeUnit.MILLISECONDS
+        );
+    }
+
+    private Connection givenAConnection() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        return connection;
+    }
+}
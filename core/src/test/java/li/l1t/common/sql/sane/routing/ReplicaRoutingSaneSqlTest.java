@@ -0,0 +1,172 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.routing;
+
+import com.google.common.base.Ticker;
+import li.l1t.common.sql.sane.JdbcSaneSql;
+import li.l1t.common.sql.sane.result.SimpleQueryResult;
+import li.l1t.common.sql.sane.scoped.JdbcScopedSession;
+import li.l1t.common.sql.sane.timing.TimingSaneSql;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class ReplicaRoutingSaneSqlTest {
+    private final JdbcSaneSql primary = mock(JdbcSaneSql.class);
+    private final JdbcSaneSql replica = mock(JdbcSaneSql.class);
+    private final AtomicLong nanos = new AtomicLong();
+    private final ReplicaRoutingSaneSql sql = new ReplicaRoutingSaneSql(
+            primary, replica, Duration.ofSeconds(5), new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    });
+
+    @Test
+    public void testQuery__replica() {
+        //given
+        //when
+        sql.query("SELECT 1");
+        //then
+        verify(replica).query("SELECT 1");
+        verify(primary, never()).query("SELECT 1");
+    }
+
+    @Test
+    public void testUpdateRaw__primary() {
+        //given
+        //when
+        sql.updateRaw("DELETE FROM t");
+        //then
+        verify(primary).updateRaw("DELETE FROM t");
+        verifyZeroInteractions(replica);
+    }
+
+    @Test
+    public void testQuery__inTransaction() throws Exception {
+        //given
+        when(primary.scoped()).thenReturn(new JdbcScopedSession(mock(Connection.class)));
+        //when
+        try (JdbcScopedSession session = sql.scoped().tx()) {
+            sql.query("SELECT 1");
+            session.commit();
+        }
+        sql.query("SELECT 2");
+        //then
+        verify(primary).query("SELECT 1");
+        verify(replica).query("SELECT 2");
+    }
+
+    @Test
+    public void testReadConsistently__withinWindow() {
+        //given
+        sql.recordWrite("player");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        //when
+        sql.readConsistently("player", () -> sql.query("SELECT 1"));
+        sql.readConsistently("other", () -> sql.query("SELECT 2"));
+        //then
+        verify(primary).query("SELECT 1");
+        verify(replica).query("SELECT 2");
+    }
+
+    @Test
+    public void testReadConsistently__afterWindow() {
+        //given
+        sql.recordWrite("player");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        //when
+        sql.readConsistently("player", () -> sql.query("SELECT 1"));
+        //then
+        verify(replica).query("SELECT 1");
+    }
+
+    @Test
+    public void testReadConsistently__anyOfMultipleKeys() {
+        //given
+        sql.recordWrite("second");
+        //when
+        sql.readConsistently(Arrays.asList("first", "second"), () -> sql.query("SELECT 1"));
+        //then
+        verify(primary).query("SELECT 1");
+    }
+
+    @Test
+    public void testReadFromPrimary__resetsAfterwards() {
+        //given
+        //when
+        sql.readFromPrimary(() -> sql.query("SELECT 1"));
+        sql.query("SELECT 2");
+        //then
+        verify(primary).query("SELECT 1");
+        verify(replica).query("SELECT 2");
+    }
+
+    @Test
+    public void testReadConsistently__throughTimingDecorator() {
+        //given
+        TimingSaneSql timingSql = new TimingSaneSql(sql, Duration.ofMillis(-1));
+        givenAQueryResult(primary, "SELECT 1");
+        givenAQueryResult(replica, "SELECT 2");
+        timingSql.recordWrite("player");
+        //when
+        timingSql.readConsistently("player", () -> timingSql.query("SELECT 1"));
+        timingSql.readConsistently(Arrays.asList("other"), () -> timingSql.query("SELECT 2"));
+        //then
+        verify(primary).query("SELECT 1");
+        verify(replica).query("SELECT 2");
+    }
+
+    @Test
+    public void testPrimary__throughTimingDecorator() {
+        //given
+        TimingSaneSql timingSql = new TimingSaneSql(sql, Duration.ofMillis(-1));
+        givenAQueryResult(primary, "SELECT 1");
+        //when
+        timingSql.primary().query("SELECT 1");
+        //then
+        verify(primary).query("SELECT 1");
+        verify(replica, never()).query("SELECT 1");
+        assertThat(timingSql.getStatistics("SELECT 1").isPresent(), is(true));
+    }
+
+    private void givenAQueryResult(JdbcSaneSql target, String query) {
+        when(target.query(query)).thenAnswer(invocation ->
+                new SimpleQueryResult(mock(PreparedStatement.class), mock(ResultSet.class), stmt -> {
+                })
+        );
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package li.l1t.common.sql.sane.scoped;
+
+import li.l1t.common.exception.InternalException;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class JdbcScopedSessionTest {
+    private final JdbcScopedSession session = new JdbcScopedSession(mock(Connection.class));
+    private final AtomicInteger runCount = new AtomicInteger();
+
+    @Test
+    public void testRunAfterCommit__noTransaction() {
+        //given no transaction
+        //when
+        session.runAfterCommit(runCount::incrementAndGet);
+        //then
+        assertThat(runCount.get(), is(1));
+    }
+
+    @Test
+    public void testRunAfterCommit__afterCommit() {
+        //given
+        JdbcScopedSession scoped = session.tx();
+        //when
+        scoped.runAfterCommit(runCount::incrementAndGet);
+        //then
+        assertThat("handler ran before commit", runCount.get(), is(0));
+        scoped.commitIfLast();
+        assertThat(runCount.get(), is(1));
+    }
+
+    @Test
+    public void testRunAfterCommit__nested() {
+        //given
+        JdbcScopedSession outer = session.tx();
+        JdbcScopedSession inner = session.tx();
+        //when
+        inner.runAfterCommit(runCount::incrementAndGet);
+        inner.commitIfLast();
+        inner.close();
+        //then
+        assertThat("handler ran before outermost commit", runCount.get(), is(0));
+        outer.commitIfLast();
+        assertThat(runCount.get(), is(1));
+    }
+
+    @Test
+    public void testRunAfterCommit__rolledBack() {
+        //given
+        JdbcScopedSession scoped = session.tx();
+        scoped.runAfterCommit(runCount::incrementAndGet);
+        //when
+        try {
+            scoped.close();
+        } catch (InternalException ignored) {
+            //rolled back forcefully
+        }
+        //then
+        assertThat(runCount.get(), is(0));
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.statement;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class StatementCacheTest {
+    private final Connection connection = mock(Connection.class);
+
+    @Test
+    public void testTake__miss() {
+        //given
+        StatementCache cache = new StatementCache(2);
+        //when
+        PreparedStatement statement = cache.take(connection, "SELECT 1");
+        //then
+        assertThat(statement, is(nullValue()));
+        assertThat(cache.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void testTake__hitAfterOffer() throws SQLException {
+        //given
+        StatementCache cache = new StatementCache(2);
+        PreparedStatement statement = givenATrackedStatement(cache, "SELECT 1");
+        cache.offer(statement);
+        //when
+        PreparedStatement cached = cache.take(connection, "SELECT 1");
+        //then
+        assertThat(cached, is(sameInstance(statement)));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat("statement in use is still idle", cache.take(connection, "SELECT 1"), is(nullValue()));
+    }
+
+    @Test
+    public void testTake__otherConnectionMiss() throws SQLException {
+        //given
+        StatementCache cache = new StatementCache(2);
+        cache.offer(givenATrackedStatement(cache, "SELECT 1"));
+        //when
+        PreparedStatement cached = cache.take(mock(Connection.class), "SELECT 1");
+        //then
+        assertThat(cached, is(nullValue()));
+    }
+
+    @Test
+    public void testOffer__evictsLeastRecentlyUsed() throws SQLException {
+        //given
+        StatementCache cache = new StatementCache(1);
+        PreparedStatement first = givenATrackedStatement(cache, "SELECT 1");
+        PreparedStatement second = givenATrackedStatement(cache, "SELECT 2");
+        //when
+        cache.offer(first);
+        cache.offer(second);
+        //then
+        verify(first).close();
+        assertThat(cache.getEvictionCount(), is(1L));
+        assertThat(cache.getIdleStatementCount(), is(1));
+    }
+
+    @Test
+    public void testOffer__unknownClosed() throws SQLException {
+        //given
+        StatementCache cache = new StatementCache(2);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        //when
+        cache.offer(statement);
+        //then
+        verify(statement).close();
+    }
+
+    @Test
+    public void testOffer__disabledClosed() throws SQLException {
+        //given
+        StatementCache cache = new StatementCache(0);
+        PreparedStatement statement = givenATrackedStatement(cache, "SELECT 1");
+        //when
+        cache.offer(statement);
+        //then
+        verify(statement).close();
+    }
+
+    @Test
+    public void testTake__closedConnectionPurged() throws SQLException {
+        //given
+        StatementCache cache = new StatementCache(2);
+        PreparedStatement statement = givenATrackedStatement(cache, "SELECT 1");
+        cache.offer(statement);
+        when(connection.isClosed()).thenReturn(true);
+        //when
+        PreparedStatement cached = cache.take(connection, "SELECT 2");
+        //then
+        assertThat(cached, is(nullValue()));
+        verify(statement).close();
+        assertThat(cache.getIdleStatementCount(), is(0));
+    }
+
+    @Test
+    public void testOffer__newConnectionPurgesClosed() throws SQLException {
+        //given
+        StatementCache cache = new StatementCache(2);
+        PreparedStatement statement = givenATrackedStatement(cache, "SELECT 1");
+        cache.offer(statement);
+        when(connection.isClosed()).thenReturn(true);
+        Connection newConnection = mock(Connection.class);
+        PreparedStatement newStatement = mock(PreparedStatement.class);
+        when(newStatement.getConnection()).thenReturn(newConnection);
+        cache.track(newStatement, "SELECT 1");
+        //when
+        cache.offer(newStatement);
+        //then
+        verify(statement).close();
+        assertThat(cache.getIdleStatementCount(), is(1));
+    }
+
+    @Test
+    public void testInvalidate() throws SQLException {
+        //given
+        StatementCache cache = new StatementCache(2);
+        PreparedStatement statement = givenATrackedStatement(cache, "SELECT 1");
+        cache.offer(statement);
+        //when
+        cache.invalidate();
+        //then
+        verify(statement).close();
+        assertThat(cache.take(connection, "SELECT 1"), is(nullValue()));
+    }
+
+    private PreparedStatement givenATrackedStatement(StatementCache cache, String sql) throws SQLException {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.getConnection()).thenReturn(connection);
+        cache.track(statement, sql);
+        return statement;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.common.sql.sane.timing;
+
+import li.l1t.common.sql.sane.JdbcSaneSql;
+import li.l1t.common.sql.sane.exception.SqlExecutionException;
+import li.l1t.common.sql.sane.result.QueryResult;
+import li.l1t.common.sql.sane.result.SimpleQueryResult;
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class TimingSaneSqlTest {
+    private final JdbcSaneSql delegate = mock(JdbcSaneSql.class);
+    private final TimingSaneSql sql = new TimingSaneSql(delegate, Duration.ofMillis(-1));
+
+    @Test
+    public void testTemplateOf__collapsesLists() {
+        //given
+        String statement = "INSERT INTO t (a, b)\n  VALUES (?, ?), (?, ?),(?, ?)";
+        //when
+        String template = TimingSaneSql.templateOf(statement);
+        //then
+        assertThat(template, is("INSERT INTO t (a, b) VALUES (?, ...), ..."));
+    }
+
+    @Test
+    public void testTemplateOf__inConditionsShareTemplate() {
+        //given
+        String two = "SELECT * FROM t WHERE id IN (?, ?)";
+        String three = "SELECT * FROM t WHERE id IN (?, ?, ?)";
+        //when
+        String twoTemplate = TimingSaneSql.templateOf(two);
+        String threeTemplate = TimingSaneSql.templateOf(three);
+        //then
+        assertThat(twoTemplate, is(threeTemplate));
+    }
+
+    @Test
+    public void testQuery__countsRowsOnClose() throws SQLException {
+        //given
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenReturn(true, true, false);
+        givenAQueryResult("SELECT 1", resultSet);
+        //when
+        try (QueryResult result = sql.query("SELECT 1")) {
+            while (result.rs().next()) {
+                result.rs().getInt(1);
+            }
+        }
+        //then
+        StatementStatistics statistics = sql.getStatistics("SELECT 1").orElseThrow(AssertionError::new);
+        assertThat(statistics.getExecutionCount(), is(1L));
+        assertThat(statistics.getRowCount(), is(2L));
+        assertThat(statistics.getErrorCount(), is(0L));
+        verify(resultSet).getInt(1);
+    }
+
+    @Test
+    public void testUpdateRaw__countsAffectedRows() {
+        //given
+        when(delegate.updateRaw("UPDATE t SET a=?", 4)).thenReturn(3);
+        //when
+        sql.updateRaw("UPDATE t SET a=?", 4);
+        sql.updateRaw("UPDATE t SET a=?", 4);
+        //then
+        StatementStatistics statistics = sql.getStatistics("UPDATE t SET a=?").orElseThrow(AssertionError::new);
+        assertThat(statistics.getExecutionCount(), is(2L));
+        assertThat(statistics.getRowCount(), is(6L));
+        assertThat(sum(statistics.getBucketCounts()), is(2L));
+    }
+
+    @Test
+    public void testUpdateRaw__countsErrors() {
+        //given
+        when(delegate.updateRaw("DELETE FROM t")).thenThrow(new SqlExecutionException(new SQLException()));
+        //when
+        try {
+            sql.updateRaw("DELETE FROM t");
+        } catch (SqlExecutionException ignored) {
+            //expected
+        }
+        //then
+        StatementStatistics statistics = sql.getStatistics("DELETE FROM t").orElseThrow(AssertionError::new);
+        assertThat(statistics.getErrorCount(), is(1L));
+        assertThat(statistics.getExecutionCount(), is(1L));
+    }
+
+    @Test
+    public void testResetStatistics() {
+        //given
+        sql.updateRaw("DELETE FROM t");
+        //when
+        sql.resetStatistics();
+        //then
+        assertThat(sql.getStatistics(), is(empty()));
+    }
+
+    @Test
+    public void testGetPercentile__bucketUpperBound() {
+        //given
+        long[] buckets = new long[StatementStatistics.BUCKET_COUNT];
+        buckets[0] = 9; //< 100us
+        buckets[3] = 1; //< 1ms
+        StatementStatistics statistics = new StatementStatistics(
+                "SELECT 1", 10, 0, 0, Duration.ofMillis(2).toNanos(), Duration.ofMillis(5).toNanos(), buckets
+        );
+        //when
+        Duration p50 = statistics.getPercentile(50);
+        Duration p100 = statistics.getPercentile(100);
+        //then
+        assertThat(p50, is(Duration.ofNanos(100_000)));
+        assertThat(p100, is(Duration.ofMillis(1)));
+    }
+
+    private void givenAQueryResult(String query, ResultSet resultSet) {
+        when(delegate.query(query)).thenAnswer(invocation ->
+                new SimpleQueryResult(mock(PreparedStatement.class), resultSet, stmt -> {
+                })
+        );
+    }
+
+    private long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
@@ -25,19 +25,28 @@
 package li.l1t.common.games.data;
 
 import li.l1t.common.sql.SafeSql;
+import org.bukkit.command.BlockCommandSender;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.entity.Player;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 /**
- * Creates default {@link PlayerWrapper}s.
+ * Creates default {@link PlayerWrapper}s. Wrappers are cached per UUID. Loads of different players run in parallel
+ * without blocking each other, while concurrent requests for the same player share a single load.
  *
  * @author <a href="http://xxyy.github.io/">xxyy</a>
  * @since 16.4.14
@@ -45,10 +54,10 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 @Deprecated
 public class DefaultPlayerWrapperFactory implements PlayerWrapperFactory<PlayerWrapper> {
-    private static final ReentrantLock WRAPPER_CACHE_LOCK = new ReentrantLock(false);
     private final SafeSql sql;
-    private Map<UUID, PlayerWrapper> wrappers = new HashMap<>();
-    private Map<String, UUID> nameToUuidMap = new HashMap<>();
+    private final ConcurrentMap<UUID, CompletableFuture<PlayerWrapper>> wrappers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, UUID> nameToUuidMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, String> uuidToNameMap = new ConcurrentHashMap<>();
 
     @java.beans.ConstructorProperties({"sql"})
     public DefaultPlayerWrapperFactory(SafeSql sql) {
@@ -57,74 +66,119 @@ public class DefaultPlayerWrapperFactory implements PlayerWrapperFactory<PlayerW
 
     @Override
     public void forceFetchAllProducts() {
-        WRAPPER_CACHE_LOCK.lock();
-        try {
-            for (PlayerWrapper wrp : wrappers.values()) {
-                wrp.forceFullFetch();
-            }
-        } finally {
-            WRAPPER_CACHE_LOCK.unlock();
+        for (PlayerWrapper wrp : getWrappers()) {
+            wrp.forceFullFetch();
         }
     }
 
     @Override
     public void forceFlushAllProducts() {
-        WRAPPER_CACHE_LOCK.lock();
-        try {
-            for (PlayerWrapper wrp : wrappers.values()) {
-                wrp.forceFullFlush();
-            }
-        } finally {
-            WRAPPER_CACHE_LOCK.unlock();
-        }
+        PlayerWrapperBase.flushAll(getSql(), getWrappers());
     }
 
     @Override
     public void free(@Nonnull UUID wrpUniqueId) {
-        WRAPPER_CACHE_LOCK.lock();
+        //names are only changed while holding the wrapper's entry, so that loads in flight cannot add them back
+        wrappers.compute(wrpUniqueId, (uuid, future) -> {
+            String name = uuidToNameMap.remove(uuid);
+            if (name != null) {
+                nameToUuidMap.remove(name, uuid);
+            }
+            return null;
+        });
+    }
 
-        try {
-            wrappers.remove(wrpUniqueId);
+    @Override
+    public boolean hasWrapper(@Nonnull UUID uuid) {
+        CompletableFuture<PlayerWrapper> future = wrappers.get(uuid);
+        return future != null && future.isDone() && !future.isCompletedExceptionally();
+    }
 
-            Iterator<UUID> iterator = nameToUuidMap.values().iterator();
-            while (iterator.hasNext()) {
-                if (wrpUniqueId.equals(iterator.next())) {
-                    iterator.remove();
-                    break;
-                }
-            }
-        } finally {
-            WRAPPER_CACHE_LOCK.unlock();
+    @Override
+    public boolean prefetch(@Nonnull UUID uuid, @Nullable String plrName) {
+        boolean[] created = new boolean[1];
+        PlayerWrapper wrapper = load(uuid, plrName, () -> {
+            created[0] = true;
+            return new PlayerWrapper(uuid, plrName, getSql());
+        });
+        if (created[0]) {
+            wrapper.impFetch();
         }
+        return created[0];
     }
 
     @Override
     public PlayerWrapper getWrapper(CommandSender sender) {
-        WRAPPER_CACHE_LOCK.lock();
-
-        try {
-            PlayerWrapper wrp = new PlayerWrapper(sender, getSql());
-            wrappers.put(wrp.getUniqueId(), wrp);
-            nameToUuidMap.put(sender.getName(), wrp.getUniqueId());
-
-            return wrp;
-        } finally {
-            WRAPPER_CACHE_LOCK.unlock();
+        UUID uuid;
+        if (sender instanceof Player) {
+            uuid = ((Player) sender).getUniqueId();
+        } else if (sender instanceof ConsoleCommandSender || sender instanceof BlockCommandSender) {
+            uuid = PlayerWrapper.CONSOLE_UUID;
+        } else {
+            return new PlayerWrapper(sender, getSql()); //throws the documented ClassCastException
         }
+
+        return load(uuid, sender.getName(), () -> new PlayerWrapper(sender, getSql()));
     }
 
     @Override
     public PlayerWrapper getWrapper(@Nonnull UUID uuid, @Nullable String plrName) {
-        WRAPPER_CACHE_LOCK.lock();
+        return load(uuid, plrName, () -> new PlayerWrapper(uuid, plrName, getSql()));
+    }
 
-        try {
-            PlayerWrapper wrp = new PlayerWrapper(uuid, plrName, getSql());
-            wrappers.put(wrp.getUniqueId(), wrp);
-            nameToUuidMap.put(plrName, uuid);
+    private PlayerWrapper load(@Nonnull UUID uuid, @Nullable String plrName, Supplier<PlayerWrapper> constructor) {
+        CompletableFuture<PlayerWrapper> future = wrappers.get(uuid);
+        if (future == null) {
+            CompletableFuture<PlayerWrapper> ownFuture = new CompletableFuture<>();
+            future = wrappers.putIfAbsent(uuid, ownFuture);
+            if (future == null) { //we won the race, so we load - everyone else waits for our future only
+                future = ownFuture;
+                try {
+                    ownFuture.complete(constructor.get());
+                } catch (RuntimeException | Error e) { //constructors throw AssertionError if the UUID cannot be found
+                    wrappers.remove(uuid, ownFuture);
+                    ownFuture.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+        PlayerWrapper wrapper = join(future);
+        rememberName(uuid, plrName, future);
+        return wrapper;
+    }
 
-            return wrp;
-        } finally {
-            WRAPPER_CACHE_LOCK.unlock();
+    private void rememberName(@Nonnull UUID uuid, @Nullable String plrName, CompletableFuture<PlayerWrapper> future) {
+        if (plrName == null) {
+            return;
+        }
+        //if the wrapper has been freed in the meantime, its name must not be remembered again
+        wrappers.computeIfPresent(uuid, (key, current) -> {
+            if (current == future) {
+                rememberName(key, plrName);
+            }
+            return current;
+        });
+    }
+
+    private void rememberName(@Nonnull UUID uuid, @Nonnull String plrName) {
+        String previousName = uuidToNameMap.put(uuid, plrName);
+        if (previousName != null && !previousName.equals(plrName)) {
+            nameToUuidMap.remove(previousName, uuid);
+        }
+        nameToUuidMap.put(plrName, uuid);
+    }
+
+    private PlayerWrapper join(CompletableFuture<PlayerWrapper> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
         }
     }
 
@@ -137,20 +191,47 @@ public class DefaultPlayerWrapperFactory implements PlayerWrapperFactory<PlayerW
      * @throws java.lang.NullPointerException If this player does not have a cached wrapper.
      */
     public PlayerWrapper getWrapper(@Nonnull String plrName) {
-        return getWrapper(nameToUuidMap.get(plrName), plrName); //Can't do anything else
+        return getWrapper(findCachedUniqueId(plrName), plrName); //Can't do anything else
+    }
+
+    @Nullable
+    UUID findCachedUniqueId(@Nonnull String plrName) {
+        return nameToUuidMap.get(plrName);
+    }
+
+    @Nullable
+    String findCachedName(@Nonnull UUID uuid) {
+        return uuidToNameMap.get(uuid);
     }
 
+    /**
+     * @return a snapshot of all wrappers that have finished loading
+     */
     @Override
     public Collection<PlayerWrapper> getWrappers() {
-        return wrappers.values();
+        List<PlayerWrapper> result = new ArrayList<>(wrappers.size());
+        for (CompletableFuture<PlayerWrapper> future : wrappers.values()) {
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                result.add(future.join());
+            }
+        }
+        return result;
     }
 
+    /**
+     * @return a snapshot of all wrappers that have finished loading, by their UUID
+     */
     public Map<UUID, PlayerWrapper> getWrapperMap() {
-        return this.wrappers;
+        Map<UUID, PlayerWrapper> result = new HashMap<>();
+        wrappers.forEach((uuid, future) -> {
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                result.put(uuid, future.join());
+            }
+        });
+        return result;
     }
 
     public SafeSql getSql() {
         return this.sql;
     }
 }
-
@@ -232,12 +232,12 @@ public class PlayerWrapper extends PlayerWrapperBase {
      * @return Whether the operation succeeded.
      */
     public boolean modifyPassesAmount(int modifier) {
-        if (modifier < 0 && ((this.passesAmount.getValue() + modifier) < 0)) {
+        if (modifier < 0 && ((this.passesAmount.intValue() + modifier) < 0)) {
             return false; //pls stahp haxe
         }
 
-        this.passesUsed.modify(-modifier);
-        this.passesAmount.modify(modifier);
+        this.passesUsed.add(-modifier);
+        this.passesAmount.add(modifier);
 
         this.xyFlush(); //safety!
 
@@ -265,7 +265,7 @@ public class PlayerWrapper extends PlayerWrapperBase {
      * @see PlayerWrapper#getPassesUsed()
      */
     public int getPassesAmount() {
-        return lockedRead(this.passesAmount);
+        return this.passesAmount.intValue();
     }
 
     /**
@@ -275,7 +275,7 @@ public class PlayerWrapper extends PlayerWrapperBase {
      * @return The all-time count of passes used by the wrapped player.
      */
     public int getPassesUsed() {
-        return lockedRead(this.passesUsed);
+        return this.passesUsed.intValue();
     }
 
     /**
@@ -284,7 +284,7 @@ public class PlayerWrapper extends PlayerWrapperBase {
      * @param amount Can also be negative!
      */
     public void summonPasses(int amount) {
-        lockedModify(this.passesAmount, amount);
+        this.passesAmount.add(amount);
         this.xyFlush();//safety!
     }
 
@@ -433,14 +433,14 @@ public class PlayerWrapper extends PlayerWrapperBase {
      * @return the amount of other players the wrapped player has killed.
      */
     public int getKillsAmount() {
-        return lockedRead(this.kills);
+        return this.kills.intValue();
     }
 
     /**
      * @return how often the wrapped player has died, on the whole network.
      */
     public int getDeathsAmount() {
-        return lockedRead(this.deaths);
+        return this.deaths.intValue();
     }
 
     /**
@@ -468,11 +468,11 @@ public class PlayerWrapper extends PlayerWrapperBase {
     }
 
     public void modifyKillsAmount(int modifier) {
-        lockedModify(this.kills, modifier);
+        this.kills.add(modifier);
     }
 
     public void modifyDeathsAmount(int modifier) {
-        lockedModify(this.deaths, modifier);
+        this.deaths.add(modifier);
     }
 
     @Override
@@ -28,7 +28,9 @@ import li.l1t.common.games.GameLib;
 import li.l1t.common.sql.QueryResult;
 import li.l1t.common.sql.SafeSql;
 import li.l1t.common.sql.builder.ConcurrentSqlNumberHolder;
+import li.l1t.common.sql.builder.IntSqlNumberHolder;
 import li.l1t.common.sql.builder.QueryBuilder;
+import li.l1t.common.sql.builder.QuerySnapshot;
 import li.l1t.common.sql.builder.SqlHolders;
 import li.l1t.common.sql.builder.SqlIdentifierHolder;
 import li.l1t.common.sql.builder.SqlUUIDHolder;
@@ -41,9 +43,17 @@ import org.bukkit.metadata.Metadatable;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.ref.WeakReference;
+import java.sql.BatchUpdateException;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 
 import static li.l1t.common.sql.builder.annotation.SqlValueCache.Type.NUMBER_MODIFICATION;
 import static li.l1t.common.sql.builder.annotation.SqlValueCache.Type.OBJECT_IDENTIFIER;
@@ -82,9 +92,9 @@ public abstract class PlayerWrapperBase implements SqlValueHolder.DataSource, Me
     protected SqlUUIDHolder uuid;
 
     @SqlValueCache(value = "passes_used", numberType = Integer.class, type = NUMBER_MODIFICATION)
-    protected ConcurrentSqlNumberHolder<Integer> passesUsed;
+    protected IntSqlNumberHolder passesUsed;
     @SqlValueCache(value = "passes_amount", numberType = Integer.class, type = NUMBER_MODIFICATION)
-    protected ConcurrentSqlNumberHolder<Integer> passesAmount;
+    protected IntSqlNumberHolder passesAmount;
 
     @SqlValueCache(value = "nickname", type = OBJECT_UPDATE)
     protected SqlValueHolder<String> nick;
@@ -92,9 +102,9 @@ public abstract class PlayerWrapperBase implements SqlValueHolder.DataSource, Me
     protected SqlValueHolder<String> groupName;
 
     @SqlValueCache(value = "kills", numberType = Integer.class, type = NUMBER_MODIFICATION)
-    protected ConcurrentSqlNumberHolder<Integer> kills;
+    protected IntSqlNumberHolder kills;
     @SqlValueCache(value = "deaths", numberType = Integer.class, type = NUMBER_MODIFICATION)
-    protected ConcurrentSqlNumberHolder<Integer> deaths;
+    protected IntSqlNumberHolder deaths;
 
     protected Collection<SqlValueHolder<?>> valueHolders;
     protected QueryBuilder queryBuilder;
@@ -163,6 +173,81 @@ public abstract class PlayerWrapperBase implements SqlValueHolder.DataSource, Me
         this.impFlush();
     }
 
+    /**
+     * Writes all data stored in given wrappers to database, like {@link #forceFullFlush()} would for each of them,
+     * but with as few round trips as possible. Wrappers without unsaved changes are skipped, and the updates of all
+     * other wrappers are grouped by statement and sent as one JDBC batch per distinct statement. Implementation data
+     * is still flushed separately for each wrapper using {@link #impFlush()}.
+     * <p>
+     * Wrappers are marked clean before their pending modifications are consumed, so that modifications made while
+     * the batch is running are written with the next flush. If a batch fails, the modifications consumed for its
+     * wrappers are restored and the wrappers are marked as changed again. Since {@link SafeSql#executeBatchUpdate(String,
+     * Collection, Function)} commits the updates that were executed before the failure, only the wrappers whose
+     * updates did not succeed according to the {@link BatchUpdateException#getUpdateCounts() update counts} are
+     * restored.</p>
+     *
+     * @param sql      the SafeSql to execute the batches with
+     * @param wrappers the wrappers to flush
+     */
+    public static void flushAll(@Nonnull SafeSql sql, @Nonnull Collection<? extends PlayerWrapperBase> wrappers) {
+        Map<String, FlushBatch> batches = new HashMap<>();
+        for (PlayerWrapperBase wrapper : wrappers) {
+            if (wrapper.xyChanged) {
+                wrapper.addToFlushBatch(batches);
+            }
+        }
+
+        for (Map.Entry<String, FlushBatch> entry : batches.entrySet()) {
+            FlushBatch batch = entry.getValue();
+            try {
+                sql.executeBatchUpdate(entry.getKey(), batch.arguments, Function.<Object[]>identity());
+            } catch (BatchUpdateException e) {
+                sql.formatAndPrintException(e, "PlayerWrapperBase#flushAll");
+                batch.restoreFailed(e.getUpdateCounts());
+            } catch (SQLException e) {
+                sql.formatAndPrintException(e, "PlayerWrapperBase#flushAll");
+                batch.restoreFailed(new int[0]);
+            }
+        }
+
+        for (PlayerWrapperBase wrapper : wrappers) {
+            wrapper.impFlush();
+        }
+    }
+
+    private void addToFlushBatch(Map<String, FlushBatch> batches) {
+        this.xyChanged = false; //before consuming modifiers, so that concurrent modifications mark us changed again
+        try {
+            this.queryBuilder.addUniqueIdentifier(this.uuid);
+            String updateSql = this.queryBuilder.getTrueUpdateSql();
+            if (updateSql != null) {
+                batches.computeIfAbsent(updateSql, key -> new FlushBatch())
+                        .add(this, this.queryBuilder.bindTrueUpdateArguments());
+            }
+        } finally {
+            this.queryBuilder.clearUniqueIdentifiers();
+        }
+    }
+
+    private void restoreFlushArguments(Object[] arguments) {
+        Set<QuerySnapshot> parts = this.queryBuilder.getQueryParts();
+        if (parts != null) {
+            int index = 0; //parts are bound first, in iteration order
+            for (QuerySnapshot part : parts) {
+                if (part instanceof ConcurrentSqlNumberHolder) {
+                    restoreModifier((ConcurrentSqlNumberHolder<?>) part, arguments[index]);
+                }
+                index++;
+            }
+        }
+        this.xyChanged = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Number> void restoreModifier(ConcurrentSqlNumberHolder<T> holder, Object consumed) {
+        holder.restoreModifier((T) consumed);
+    }
+
     /**
      * Returns the group the wrapped player is in.
      *
@@ -336,6 +421,8 @@ public abstract class PlayerWrapperBase implements SqlValueHolder.DataSource, Me
             this.xyChanged = false;
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            this.queryBuilder.clearUniqueIdentifiers(); //Otherwise every flush would add another identical identifier
         }
     }
 
@@ -396,4 +483,26 @@ public abstract class PlayerWrapperBase implements SqlValueHolder.DataSource, Me
     public SafeSql getSql() {
         return this.sql;
     }
+
+    private static class FlushBatch {
+        private final List<PlayerWrapperBase> wrappers = new ArrayList<>();
+        private final List<Object[]> arguments = new ArrayList<>();
+
+        void add(PlayerWrapperBase wrapper, Object[] arguments) {
+            this.wrappers.add(wrapper);
+            this.arguments.add(arguments);
+        }
+
+        /**
+         * @param updateCounts the update counts reported for the batch, which either stop at the first failed update
+         *                     or mark failed updates with {@link Statement#EXECUTE_FAILED}
+         */
+        void restoreFailed(int[] updateCounts) {
+            for (int i = 0; i < wrappers.size(); i++) {
+                if (i >= updateCounts.length || updateCounts[i] == Statement.EXECUTE_FAILED) {
+                    wrappers.get(i).restoreFlushArguments(arguments.get(i));
+                }
+            }
+        }
+    }
 }
@@ -24,13 +24,16 @@
 
 package li.l1t.common.games.data;
 
+import li.l1t.common.prefetch.PrefetchTask;
 import li.l1t.common.sql.SafeSql;
 import org.bukkit.command.CommandSender;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collection;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author <a href="http://xxyy.github.io/">xxyy</a>
@@ -81,6 +84,77 @@ public interface PlayerWrapperFactory<T extends PlayerWrapper> {
      */
     T getWrapper(@Nonnull UUID uuid, @Nullable String plrName);
 
+    /**
+     * Checks whether this instance currently keeps a completely loaded wrapper for a player.
+     *
+     * @param uuid the unique id of the player
+     * @return whether a wrapper for the player is cached
+     */
+    default boolean hasWrapper(@Nonnull UUID uuid) {
+        return getWrappers().stream().anyMatch(wrapper -> uuid.equals(wrapper.getUniqueId()));
+    }
+
+    /**
+     * Wraps a player and fetches their data, so that it is available without querying the database once the player
+     * has joined. This blocks while fetching and is intended to be called while the player is logging in, for example
+     * as a {@link PrefetchTask}. Wrappers that are created by this method only fetch implementation data, since their
+     * constructor already fetches the rest. Wrappers that are already cached are left alone, since the player might
+     * still be online with modifications that have not been flushed yet.
+     * <p>
+     * This is called from prefetch threads, concurrently with the main thread. The default implementation is only
+     * thread-safe if {@link #getWrapper(UUID, String)} is, and cannot tell reliably whether it created the wrapper.
+     * Factories should therefore override it with per-player loading, like the bundled factories do.</p>
+     *
+     * @param uuid    the unique id of the player to prefetch
+     * @param plrName name of the player to prefetch
+     * @return whether this call created the wrapper
+     */
+    default boolean prefetch(@Nonnull UUID uuid, @Nullable String plrName) {
+        if (hasWrapper(uuid)) {
+            return false;
+        }
+        T wrapper = getWrapper(uuid, plrName);
+        if (wrapper == null) {
+            return false;
+        }
+        wrapper.impFetch();
+        return true;
+    }
+
+    /**
+     * Creates a task for a {@link li.l1t.common.prefetch.LoginPrefetcher} that {@link #prefetch(UUID, String)
+     * prefetches} players while they log in and {@link #free(UUID) frees} their wrappers if they do not join after
+     * all. Only wrappers that have been created by the task for a login that has not been claimed are freed, so that
+     * the wrapper of a player who is still online is kept if another login with their unique id fails.
+     *
+     * @return a prefetch task for this factory
+     */
+    default PrefetchTask prefetchTask() {
+        Set<UUID> created = ConcurrentHashMap.newKeySet();
+        return new PrefetchTask() {
+            @Override
+            public void prefetch(UUID playerId, String playerName) {
+                if (PlayerWrapperFactory.this.prefetch(playerId, playerName)) {
+                    created.add(playerId);
+                } else {
+                    created.remove(playerId); //the wrapper belongs to an earlier login now
+                }
+            }
+
+            @Override
+            public void claim(UUID playerId) {
+                created.remove(playerId); //the wrapper belongs to the player who joined now
+            }
+
+            @Override
+            public void release(UUID playerId) {
+                if (created.remove(playerId)) {
+                    free(playerId);
+                }
+            }
+        };
+    }
+
     /**
      * @return All products that strong references are kept for by this instance.
      */
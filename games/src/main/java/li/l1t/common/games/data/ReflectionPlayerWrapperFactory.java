@@ -34,15 +34,20 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.reflect.Constructor;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.UUID;
 import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Factory class that produces implementations of {@link PlayerWrapper} and stores the instances.
+ * Factory class that produces implementations of {@link PlayerWrapper} and stores the instances. Wrappers may be
+ * requested from multiple threads, for example while prefetching, and are constructed at most once per UUID.
  *
  * @param <T> Implementation of {@link PlayerWrapper} that is produced by this factory.
  * @author <a href="http://xxyy.github.io/">xxyy</a>
@@ -54,8 +59,9 @@ public class ReflectionPlayerWrapperFactory<T extends PlayerWrapper> implements
     private static final PlayerWrapperFactory<PlayerWrapper> GENERIC_FACTORY = new DefaultPlayerWrapperFactory(GameLib.getSql());
     final Class<T> clazz;
     final SafeSql ssql;
-    final Map<String, UUID> nameToUuidMap = new WeakHashMap<>();
+    final Map<String, UUID> nameToUuidMap = Collections.synchronizedMap(new WeakHashMap<>());
     Map<UUID, T> wrappers = new ConcurrentHashMap<>(15, 0.75F, 2);
+    private final ConcurrentMap<UUID, CompletableFuture<T>> loading = new ConcurrentHashMap<>();
 
     /**
      * Creates a new factory that is capable of managing
@@ -93,9 +99,7 @@ public class ReflectionPlayerWrapperFactory<T extends PlayerWrapper> implements
         if (this.wrappers.isEmpty()) {
             return;
         }
-        for (T wrp : this.wrappers.values()) {
-            wrp.forceFullFlush();
-        }
+        PlayerWrapperBase.flushAll(this.ssql, this.wrappers.values());
     }
 
     @Override
@@ -103,54 +107,97 @@ public class ReflectionPlayerWrapperFactory<T extends PlayerWrapper> implements
         this.wrappers.remove(wrpUniqueId);
     }
 
+    @Override
+    public boolean hasWrapper(@Nonnull UUID uuid) {
+        return this.wrappers.containsKey(uuid);
+    }
+
+    @Override
+    public boolean prefetch(@Nonnull UUID uuid, @Nullable String plrName) {
+        boolean[] created = new boolean[1];
+        T wrapper = load(uuid, () -> {
+            created[0] = true;
+            return construct(uuid, plrName);
+        });
+        if (wrapper == null || !created[0]) {
+            return false;
+        }
+        wrapper.impFetch();
+        return true;
+    }
+
     @Override
     public T getWrapper(CommandSender sender) {
-        T rtrn;
         UUID uuid;
         if (sender instanceof ConsoleCommandSender) {
             uuid = PlayerWrapper.CONSOLE_UUID;
-            rtrn = this.wrappers.get(uuid);
         } else if (sender instanceof Player) {
             uuid = ((Player) sender).getUniqueId();
-            rtrn = this.wrappers.get(uuid);
         } else {
-            uuid = null;
-            rtrn = null;
-        }
-
-        if (rtrn == null) {
-            try {
-                Constructor<T> constructor = clazz.getDeclaredConstructor(CommandSender.class, SafeSql.class);
-                constructor.setAccessible(true);
-                rtrn = constructor.newInstance(sender, ssql);
-                this.wrappers.put(uuid, rtrn);
-                this.nameToUuidMap.put(rtrn.name(), rtrn.getUniqueId());
-            } catch (Exception ex) { //multi-catch seems to confuse proguard
-                Logger.getLogger(ReflectionPlayerWrapperFactory.class.getName()).log(Level.SEVERE,
-                        "Could not acquire instance - Missing T(CommandSender, SafeSql) constructor, probably.", ex);
-            }
+            return construct(sender); //cannot be cached without a UUID
         }
-        return rtrn;
+        return load(uuid, () -> construct(sender));
     }
 
     @Override
     public T getWrapper(@Nonnull UUID uuid, @Nullable String plrName) {
+        return load(uuid, () -> construct(uuid, plrName));
+    }
+
+    /**
+     * Gets the cached wrapper for a player or loads it. Concurrent requests for the same player share a single load,
+     * while loads of different players run in parallel.
+     */
+    private T load(@Nonnull UUID uuid, Supplier<T> constructor) {
         T rtrn = this.wrappers.get(uuid);
-        if (rtrn == null) {
-            try {
-                Constructor<T> constructor = clazz.getDeclaredConstructor(UUID.class, String.class, SafeSql.class);
-                constructor.setAccessible(true);
-                rtrn = constructor.newInstance(uuid, plrName, ssql);
-                this.wrappers.put(uuid, rtrn);
-                this.nameToUuidMap.put(rtrn.name(), uuid);
-            } catch (Exception ex) { //multi-catch seems to confuse proguard
-                Logger.getLogger(ReflectionPlayerWrapperFactory.class.getName()).log(Level.SEVERE,
-                        "Could not acquire instance - Missing T(String, SafeSql) constructor, probably.", ex);
+        if (rtrn != null) {
+            return rtrn;
+        }
+        CompletableFuture<T> ownFuture = new CompletableFuture<>();
+        CompletableFuture<T> future = this.loading.putIfAbsent(uuid, ownFuture);
+        if (future != null) {
+            return future.join(); //failed loads complete with null
+        }
+        try {
+            rtrn = this.wrappers.get(uuid); //might have completed before we registered our load
+            if (rtrn == null) {
+                rtrn = constructor.get();
+                if (rtrn != null) {
+                    this.wrappers.put(uuid, rtrn);
+                    this.nameToUuidMap.put(rtrn.name(), uuid);
+                }
             }
+        } finally {
+            this.loading.remove(uuid, ownFuture);
+            ownFuture.complete(rtrn);
         }
         return rtrn;
     }
 
+    private T construct(CommandSender sender) {
+        try {
+            Constructor<T> constructor = clazz.getDeclaredConstructor(CommandSender.class, SafeSql.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(sender, ssql);
+        } catch (Exception ex) { //multi-catch seems to confuse proguard
+            Logger.getLogger(ReflectionPlayerWrapperFactory.class.getName()).log(Level.SEVERE,
+                    "Could not acquire instance - Missing T(CommandSender, SafeSql) constructor, probably.", ex);
+            return null;
+        }
+    }
+
+    private T construct(@Nonnull UUID uuid, @Nullable String plrName) {
+        try {
+            Constructor<T> constructor = clazz.getDeclaredConstructor(UUID.class, String.class, SafeSql.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(uuid, plrName, ssql);
+        } catch (Exception ex) { //multi-catch seems to confuse proguard
+            Logger.getLogger(ReflectionPlayerWrapperFactory.class.getName()).log(Level.SEVERE,
+                    "Could not acquire instance - Missing T(String, SafeSql) constructor, probably.", ex);
+            return null;
+        }
+    }
+
     /**
      * @return A map mapping player names to all products that strong references are kept for by this instance.
      */
@@ -0,0 +1,235 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package li.l1t.common.games.data;
+
+import li.l1t.common.prefetch.PrefetchTask;
+import li.l1t.common.sql.SafeSql;
+import org.bukkit.entity.Player;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("deprecation")
+public class DefaultPlayerWrapperFactoryTest {
+    private static final int THREAD_COUNT = 8;
+    private final DefaultPlayerWrapperFactory factory = new DefaultPlayerWrapperFactory(mock(SafeSql.class));
+    private final UUID uuid = UUID.randomUUID();
+
+    @Test
+    public void testGetWrapper__concurrentSingleConstruction() throws Exception {
+        //given
+        Player player = givenAPlayer("Hans");
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        List<Future<PlayerWrapper>> results = new ArrayList<>();
+        Callable<PlayerWrapper> task = () -> {
+            start.await();
+            return factory.getWrapper(player);
+        };
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            results.add(executor.submit(task));
+        }
+        //when
+        start.countDown();
+        //then
+        PlayerWrapper first = results.get(0).get(10, TimeUnit.SECONDS);
+        for (Future<PlayerWrapper> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS), is(sameInstance(first)));
+        }
+        executor.shutdown();
+        //getWrapper reads the UUID once per call, and the constructor once per construction
+        verify(player, times(THREAD_COUNT + 1)).getUniqueId();
+    }
+
+    @Test
+    public void testGetWrapper__failedLoadRetried() {
+        //given
+        Player player = mock(Player.class);
+        when(player.getName()).thenReturn("Hans");
+        when(player.getUniqueId())
+                .thenReturn(uuid) //getWrapper
+                .thenThrow(new IllegalStateException("test")) //constructor
+                .thenReturn(uuid);
+        try {
+            factory.getWrapper(player);
+            fail("failure of constructor was not propagated");
+        } catch (IllegalStateException expected) {
+            //the load failed
+        }
+        //when
+        PlayerWrapper wrapper = factory.getWrapper(player);
+        //then
+        assertThat(wrapper, is(notNullValue()));
+        assertThat(factory.getWrapperMap().get(uuid), is(sameInstance(wrapper)));
+    }
+
+    @Test
+    public void testGetWrapper__failedLoadWithErrorRetried() {
+        //given
+        Player player = mock(Player.class);
+        when(player.getName()).thenReturn("Hans");
+        when(player.getUniqueId())
+                .thenReturn(uuid) //getWrapper
+                .thenThrow(new AssertionError("test")) //constructor
+                .thenReturn(uuid);
+        boolean propagated = false;
+        try {
+            factory.getWrapper(player);
+        } catch (AssertionError expected) {
+            propagated = true; //the load failed
+        }
+        assertThat("failure of constructor was not propagated", propagated, is(true));
+        //when
+        PlayerWrapper wrapper = factory.getWrapper(player);
+        //then
+        assertThat(wrapper, is(notNullValue()));
+    }
+
+    @Test
+    public void testFree__removesNameMappings() {
+        //given
+        factory.getWrapper(givenAPlayer("Hans"));
+        //when
+        factory.free(uuid);
+        //then
+        assertThat(factory.findCachedUniqueId("Hans"), is(nullValue()));
+        assertThat(factory.findCachedName(uuid), is(nullValue()));
+        assertThat(factory.getWrapperMap().containsKey(uuid), is(false));
+    }
+
+    @Test
+    public void testFree__duringLoadKeepsNameMappingsRemoved() {
+        //given
+        Player player = mock(Player.class);
+        when(player.getName()).thenReturn("Hans");
+        when(player.getUniqueId())
+                .thenReturn(uuid) //getWrapper
+                .thenAnswer(invocation -> { //constructor, while the load is in flight
+                    factory.free(uuid);
+                    return uuid;
+                });
+        //when
+        factory.getWrapper(player);
+        //then
+        assertThat(factory.findCachedUniqueId("Hans"), is(nullValue()));
+        assertThat(factory.findCachedName(uuid), is(nullValue()));
+    }
+
+    @Test
+    public void testGetWrapper__rename() {
+        //given
+        factory.getWrapper(givenAPlayer("Hans"));
+        //when
+        factory.getWrapper(givenAPlayer("Franz"));
+        //then
+        assertThat(factory.findCachedUniqueId("Hans"), is(nullValue()));
+        assertThat(factory.findCachedUniqueId("Franz"), is(uuid));
+        assertThat(factory.findCachedName(uuid), is("Franz"));
+    }
+
+    @Test
+    public void testHasWrapper() {
+        //given
+        factory.getWrapper(givenAPlayer("Hans"));
+        //when
+        boolean cached = factory.hasWrapper(uuid);
+        //then
+        assertThat(cached, is(true));
+        assertThat(factory.hasWrapper(UUID.randomUUID()), is(false));
+    }
+
+    @Test
+    public void testPrefetch__cachedWrapperNotRefreshed() {
+        //given
+        PlayerWrapper wrapper = factory.getWrapper(givenAPlayer("Hans"));
+        //when
+        boolean created = factory.prefetch(uuid, "Hans");
+        //then
+        assertThat(created, is(false));
+        assertThat(factory.getWrapperMap().get(uuid), is(sameInstance(wrapper)));
+    }
+
+    @Test
+    public void testPrefetchTask__releaseKeepsWrapperOfEarlierLogin() throws Exception {
+        //given
+        PlayerWrapper wrapper = factory.getWrapper(givenAPlayer("Hans"));
+        PrefetchTask task = factory.prefetchTask();
+        task.prefetch(uuid, "Hans");
+        //when
+        task.release(uuid);
+        //then
+        assertThat(factory.getWrapperMap().get(uuid), is(sameInstance(wrapper)));
+    }
+
+    @Test
+    public void testPrefetchTask__releaseFreesCreatedWrapper() throws Exception {
+        //given
+        PrefetchTask task = factory.prefetchTask();
+        task.prefetch(uuid, "Hans");
+        //when
+        task.release(uuid);
+        //then
+        assertThat(factory.hasWrapper(uuid), is(false));
+    }
+
+    @Test
+    public void testPrefetchTask__claimedLoginNotReleased() throws Exception {
+        //given
+        PrefetchTask task = factory.prefetchTask();
+        task.prefetch(uuid, "Hans");
+        task.claim(uuid);
+        //when
+        task.release(uuid);
+        //then
+        assertThat(factory.hasWrapper(uuid), is(true));
+    }
+
+    private Player givenAPlayer(String name) {
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(uuid);
+        when(player.getName()).thenReturn(name);
+        return player;
+    }
+}
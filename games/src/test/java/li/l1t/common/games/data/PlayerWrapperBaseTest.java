@@ -0,0 +1,190 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package li.l1t.common.games.data;
+
+import li.l1t.common.sql.SafeSql;
+import org.bukkit.entity.Player;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("deprecation")
+public class PlayerWrapperBaseTest {
+    private final SafeSql sql = mock(SafeSql.class);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlushAll__groupsByStatement() throws SQLException {
+        //given
+        PlayerWrapper firstNick = givenAWrapperWithChangedNick("first");
+        PlayerWrapper secondNick = givenAWrapperWithChangedNick("second");
+        PlayerWrapper group = givenAWrapperWithChangedGroup("admin");
+        //when
+        PlayerWrapperBase.flushAll(sql, Arrays.asList(firstNick, secondNick, group));
+        //then
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Collection> dataCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(sql, times(1)).executeBatchUpdate(sqlCaptor.capture(), dataCaptor.capture(), any());
+        assertThat(sqlCaptor.getValue(), containsString("nickname"));
+        assertThat(dataCaptor.getValue().size(), is(3));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlushAll__cleanSkipped() throws SQLException {
+        //given
+        PlayerWrapper changed = givenAWrapperWithChangedNick("changed");
+        PlayerWrapper clean = givenAWrapper();
+        //when
+        PlayerWrapperBase.flushAll(sql, Arrays.asList(changed, clean));
+        //then
+        ArgumentCaptor<Collection> dataCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(sql, times(1)).executeBatchUpdate(anyString(), dataCaptor.capture(), any());
+        assertThat(dataCaptor.getValue().size(), is(1));
+    }
+
+    @Test
+    public void testFlushAll__onlyClean() throws SQLException {
+        //given
+        PlayerWrapper clean = givenAWrapper();
+        //when
+        PlayerWrapperBase.flushAll(sql, Collections.singletonList(clean));
+        //then
+        verify(sql, never()).executeBatchUpdate(anyString(), anyCollection(), any());
+    }
+
+    @Test
+    public void testFlushAll__resetsChanged() {
+        //given
+        PlayerWrapper changed = givenAWrapperWithChangedNick("changed");
+        //when
+        PlayerWrapperBase.flushAll(sql, Collections.singletonList(changed));
+        //then
+        assertThat(changed.xyChanged, is(false));
+    }
+
+    @Test
+    public void testFlushAll__failedBatchKeepsChanged() throws SQLException {
+        //given
+        PlayerWrapper changed = givenAWrapperWithChangedNick("changed");
+        when(sql.executeBatchUpdate(anyString(), anyCollection(), any())).thenThrow(new SQLException("test"));
+        //when
+        PlayerWrapperBase.flushAll(sql, Collections.singletonList(changed));
+        //then
+        assertThat(changed.xyChanged, is(true));
+    }
+
+    @Test
+    public void testFlushAll__modifiedDuringFlush() throws SQLException {
+        //given
+        PlayerWrapper changed = givenAWrapperWithChangedKills(3);
+        when(sql.executeBatchUpdate(anyString(), anyCollection(), any())).thenAnswer(invocation -> {
+            changed.kills.add(2);
+            return new int[]{1};
+        });
+        //when
+        PlayerWrapperBase.flushAll(sql, Collections.singletonList(changed));
+        //then
+        assertThat(changed.xyChanged, is(true));
+        assertThat(changed.kills.getModifier(), is(2));
+    }
+
+    @Test
+    public void testFlushAll__failedBatchRestoresModifiers() throws SQLException {
+        //given
+        PlayerWrapper first = givenAWrapperWithChangedKills(3);
+        PlayerWrapper second = givenAWrapperWithChangedKills(5);
+        when(sql.executeBatchUpdate(anyString(), anyCollection(), any())).thenThrow(new SQLException("test"));
+        //when
+        PlayerWrapperBase.flushAll(sql, Arrays.asList(first, second));
+        //then
+        assertThat(first.kills.getModifier(), is(3));
+        assertThat(second.kills.getModifier(), is(5));
+        assertThat(second.xyChanged, is(true));
+    }
+
+    @Test
+    public void testFlushAll__partiallyFailedBatchRestoresFailedOnly() throws SQLException {
+        //given
+        PlayerWrapper first = givenAWrapperWithChangedKills(3);
+        PlayerWrapper second = givenAWrapperWithChangedKills(5);
+        when(sql.executeBatchUpdate(anyString(), anyCollection(), any()))
+                .thenThrow(new BatchUpdateException("test", new int[]{1})); //first update succeeded and is committed
+        //when
+        PlayerWrapperBase.flushAll(sql, Arrays.asList(first, second));
+        //then
+        assertThat(first.kills.getModifier(), is(0));
+        assertThat(first.xyChanged, is(false));
+        assertThat(second.kills.getModifier(), is(5));
+        assertThat(second.xyChanged, is(true));
+    }
+
+    private PlayerWrapper givenAWrapper() {
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.getName()).thenReturn("Hans");
+        PlayerWrapper wrapper = new PlayerWrapper(player, sql);
+        wrapper.valueHolders.forEach(holder -> holder.setFetched(true)); //no database to fetch from
+        return wrapper;
+    }
+
+    private PlayerWrapper givenAWrapperWithChangedNick(String nick) {
+        PlayerWrapper wrapper = givenAWrapper();
+        wrapper.nick.setValue(nick);
+        return wrapper;
+    }
+
+    private PlayerWrapper givenAWrapperWithChangedKills(int delta) {
+        PlayerWrapper wrapper = givenAWrapper();
+        wrapper.kills.updateValue(10); //non-zero, so that modifying does not fetch
+        wrapper.kills.add(delta);
+        return wrapper;
+    }
+
+    private PlayerWrapper givenAWrapperWithChangedGroup(String groupName) {
+        PlayerWrapper wrapper = givenAWrapper();
+        wrapper.groupName.setValue(groupName);
+        return wrapper;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.bench;
+
+import li.l1t.lanatus.api.LanatusConnected;
+import li.l1t.lanatus.api.account.MutableAccount;
+import li.l1t.lanatus.api.exception.AccountConflictException;
+import li.l1t.lanatus.api.product.Product;
+import li.l1t.lanatus.sql.SqlLanatusClient;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.UUID;
+
+/**
+ * Abstract base class for benchmarks that need a Lanatus client connected to a fresh benchmark
+ * database. Subclasses seed their data in {@link #seed()}, which is called once per trial.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public abstract class AbstractLanatusBenchmark implements LanatusConnected {
+    private BenchmarkDatabase database;
+    private SqlLanatusClient client;
+
+    @Setup(Level.Trial)
+    public void setUpDatabase() throws Exception {
+        database = BenchmarkDatabase.create();
+        client = new SqlLanatusClient(database.sql(), "xyc-bench");
+        seed();
+    }
+
+    /**
+     * Inserts the data needed by this benchmark into the database.
+     *
+     * @throws Exception if an error occurs seeding the data
+     */
+    protected abstract void seed() throws Exception;
+
+    @TearDown(Level.Trial)
+    public void tearDownDatabase() throws Exception {
+        client.close();
+        database.close();
+    }
+
+    public BenchmarkDatabase database() {
+        return database;
+    }
+
+    @Override
+    public SqlLanatusClient client() {
+        return client;
+    }
+
+    protected UUID givenAPlayerWithMelons(int melonsCount) throws AccountConflictException {
+        UUID playerId = UUID.randomUUID();
+        MutableAccount mutable = client().accounts().findMutable(playerId);
+        mutable.setMelonsCount(melonsCount);
+        client().accounts().save(mutable);
+        return playerId;
+    }
+
+    protected Product givenAFreeProduct() {
+        return client().products().registration(UUID.randomUUID())
+                .withMelonsCost(0)
+                .register();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.bench;
+
+import li.l1t.common.sql.SqlConnectable;
+import li.l1t.common.sql.SqlConnectables;
+import li.l1t.common.sql.sane.SingleSql;
+import li.l1t.common.sql.sane.SqlConnected;
+import org.flywaydb.core.Flyway;
+
+import java.util.UUID;
+
+/**
+ * Sets up a private in-memory H2 database with the Lanatus schema for a benchmark, using the same
+ * Flyway migrations and MySQL compatibility mode as the integration tests.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class BenchmarkDatabase implements SqlConnected, AutoCloseable {
+    private static final String SCHEMA_NAME = "mt_main";
+    private final SingleSql sql;
+
+    private BenchmarkDatabase(SingleSql sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * Creates a new database with a unique name, so that state never leaks between benchmarks,
+     * and migrates it to the current schema.
+     *
+     * @return the connected database
+     */
+    public static BenchmarkDatabase create() {
+        String baseUrl = "jdbc:h2:mem:lanatus-bench-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        runFlywayMigration(baseUrl + ";INIT=CREATE SCHEMA IF NOT EXISTS " + SCHEMA_NAME + "\\;SET SCHEMA=" + SCHEMA_NAME);
+        loadH2Driver();
+        return new BenchmarkDatabase(new SingleSql(credentialsFrom(baseUrl + ";INIT=SET SCHEMA=" + SCHEMA_NAME)));
+    }
+
+    private static void runFlywayMigration(String jdbcUrl) {
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(jdbcUrl, "", "");
+        flyway.setBaselineOnMigrate(true);
+        flyway.migrate();
+    }
+
+    private static void loadH2Driver() {
+        try {
+            Class.forName("org.h2.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("missing h2 driver in classpath", e);
+        }
+    }
+
+    private static SqlConnectable credentialsFrom(String jdbcUrl) {
+        return SqlConnectables.fromCredentials(jdbcUrl, SCHEMA_NAME, "", "");
+    }
+
+    @Override
+    public SingleSql sql() {
+        return sql;
+    }
+
+    @Override
+    public void close() throws Exception {
+        sql.close();
+    }
+}
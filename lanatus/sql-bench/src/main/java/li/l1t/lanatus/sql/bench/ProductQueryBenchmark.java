@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.bench;
+
+import li.l1t.lanatus.api.product.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures product queries through {@link li.l1t.lanatus.sql.product.SqlProductQueryBuilder#execute()}
+ * against a catalogue of {@value #PRODUCT_COUNT} products.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProductQueryBenchmark extends AbstractLanatusBenchmark {
+    private static final int PRODUCT_COUNT = 1_000;
+    private static final String OTHER_MODULE = "xyc-bench-other";
+
+    @Override
+    protected void seed() throws Exception {
+        for (int i = 0; i < PRODUCT_COUNT; i++) {
+            client().products().registration(UUID.randomUUID())
+                    .inModule(i % 2 == 0 ? client().getModuleName() : OTHER_MODULE)
+                    .withDisplayName("Benchmark Product #" + i)
+                    .withDescription("Product number " + i + " of the benchmark catalogue")
+                    .register();
+        }
+    }
+
+    @Benchmark
+    public Collection<Product> execute__inThisModule() {
+        return client().products().query()
+                .inThisModule()
+                .execute();
+    }
+
+    @Benchmark
+    public Collection<Product> execute__containing() {
+        return client().products().query()
+                .inAnyModule()
+                .containing("#42")
+                .execute();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.bench;
+
+import li.l1t.common.sql.sane.result.QueryResult;
+import li.l1t.lanatus.sql.account.SqlAccountRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of a simple parameterised single-row query through {@link
+ * li.l1t.common.sql.sane.SingleSql#query(String, Object...)}, including statement preparation
+ * and result set handling.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SaneSqlBenchmark extends AbstractLanatusBenchmark {
+    private static final String SELECT_ACCOUNT = "SELECT player_uuid, melons, lastrank " +
+            "FROM " + SqlAccountRepository.TABLE_NAME + " WHERE player_uuid=?";
+    private String playerId;
+
+    @Override
+    protected void seed() throws Exception {
+        playerId = givenAPlayerWithMelons(42).toString();
+    }
+
+    @Benchmark
+    public int query() throws SQLException {
+        try (QueryResult result = database().sql().query(SELECT_ACCOUNT, playerId)) {
+            return result.rs().next() ? result.rs().getInt("melons") : -1;
+        }
+    }
+
+    @Benchmark
+    public boolean query__noResult() throws SQLException {
+        try (QueryResult result = database().sql().query(SELECT_ACCOUNT, UUID.randomUUID().toString())) {
+            return result.rs().next();
+        }
+    }
+}
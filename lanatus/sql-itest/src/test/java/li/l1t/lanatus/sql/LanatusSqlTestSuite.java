@@ -25,7 +25,10 @@
 package li.l1t.lanatus.sql;
 
 import li.l1t.lanatus.sql.account.SqlAccountRepositoryTest;
+import li.l1t.lanatus.sql.async.AsyncLanatusClientTest;
 import li.l1t.lanatus.sql.builder.melons.SqlCreditMelonsBuilderTest;
+import li.l1t.lanatus.sql.invalidation.DatagramInvalidationTransportTest;
+import li.l1t.lanatus.sql.invalidation.InvalidationBusTest;
 import li.l1t.lanatus.sql.position.SqlPositionRepositoryTest;
 import li.l1t.lanatus.sql.product.SqlProductQueryBuilderTest;
 import li.l1t.lanatus.sql.product.SqlProductRegistrationBuilderTest;
@@ -49,7 +52,9 @@ import org.junit.runners.Suite;
         SqlPositionRepositoryTest.class,
         SqlProductRepositoryTest.class, SqlProductRegistrationBuilderTest.class, SqlProductQueryBuilderTest.class,
         SqlPurchaseRepositoryTest.class, SqlPurchaseBuilderTest.class,
-        SqlCreditMelonsBuilderTest.class
+        SqlCreditMelonsBuilderTest.class,
+        InvalidationBusTest.class, DatagramInvalidationTransportTest.class, AsyncLanatusClientTest.class,
+        ReplicaRoutingTest.class
 })
 public class LanatusSqlTestSuite {
     @ClassRule
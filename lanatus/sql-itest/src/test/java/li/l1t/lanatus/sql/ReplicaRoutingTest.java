@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql;
+
+import li.l1t.common.sql.SqlConnectables;
+import li.l1t.common.sql.sane.SingleSql;
+import li.l1t.common.sql.sane.routing.ReplicaRoutingSaneSql;
+import li.l1t.lanatus.api.account.MutableAccount;
+import li.l1t.lanatus.api.exception.AccountConflictException;
+import org.flywaydb.core.Flyway;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests routing of a client's reads to a replica, using a second, empty H2 database as replica so
+ * that reads from it can be told apart from reads from the primary.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class ReplicaRoutingTest extends AbstractLanatusSqlTest {
+    private static final String REPLICA_URL = "jdbc:h2:mem:lanatus-sql-replica;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static SingleSql replicaSql;
+    private SqlLanatusClient routedClient;
+
+    @BeforeClass
+    public static void setUpReplica() {
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(REPLICA_URL + ";INIT=CREATE SCHEMA IF NOT EXISTS mt_main\\;SET SCHEMA=mt_main", "", "");
+        flyway.setBaselineOnMigrate(true);
+        flyway.migrate();
+        replicaSql = new SingleSql(SqlConnectables.fromCredentials(
+                REPLICA_URL + ";INIT=SET SCHEMA=mt_main", "mt_main", "", ""
+        ));
+    }
+
+    @AfterClass
+    public static void tearDownReplica() throws Exception {
+        replicaSql.close();
+    }
+
+    @After
+    public void tearDown() {
+        if (routedClient != null) {
+            routedClient.close();
+        }
+    }
+
+    @Test
+    public void testFind__readYourWrites() throws AccountConflictException {
+        //given
+        givenARoutedClient(Duration.ofMinutes(1));
+        UUID playerId = UUID.randomUUID();
+        //when
+        saveMelons(playerId, 42);
+        //then
+        assertThat(routedClient.accounts().findOrDefault(playerId).getMelonsCount(), is(42));
+    }
+
+    @Test
+    public void testFind__otherPlayersFromReplica() throws AccountConflictException {
+        //given
+        givenARoutedClient(Duration.ofMinutes(1));
+        UUID playerId = givenAPlayerWithMelons(42); //written by another client, not yet replicated
+        //when
+        boolean found = routedClient.accounts().find(playerId).isPresent();
+        //then
+        assertFalse("replica was not used", found);
+    }
+
+    @Test
+    public void testFind__afterWindow() throws AccountConflictException {
+        //given
+        givenARoutedClient(Duration.ZERO);
+        UUID playerId = UUID.randomUUID();
+        //when
+        saveMelons(playerId, 42);
+        //then
+        assertFalse("primary used after window", routedClient.accounts().find(playerId).isPresent());
+    }
+
+    @Test
+    public void testBuildPurchase__transactionOnPrimary() throws AccountConflictException {
+        //given
+        givenARoutedClient(Duration.ZERO);
+        UUID playerId = givenAPlayerWithMelons(42);
+        UUID productId = client().products().registration(UUID.randomUUID()).register().getUniqueId();
+        //when
+        routedClient.startPurchase(playerId).withProductId(productId).build();
+        //then
+        assertThat(client().purchases().findByPlayer(playerId).size(), is(1));
+    }
+
+    private void givenARoutedClient(Duration readYourWritesWindow) {
+        routedClient = new SqlLanatusClient(
+                new ReplicaRoutingSaneSql(sql(), replicaSql, readYourWritesWindow), "xyc-it"
+        );
+    }
+
+    private void saveMelons(UUID playerId, int melonsCount) throws AccountConflictException {
+        MutableAccount mutable = routedClient.accounts().findMutable(playerId);
+        mutable.setMelonsCount(melonsCount);
+        routedClient.accounts().save(mutable);
+    }
+}
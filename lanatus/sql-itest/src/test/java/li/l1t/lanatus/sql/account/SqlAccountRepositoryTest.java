@@ -32,14 +32,20 @@ import li.l1t.lanatus.sql.SqlLanatusClient;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests the integration of the sql account repository with the database, verifying only using the
@@ -81,6 +87,22 @@ public class SqlAccountRepositoryTest extends AbstractLanatusSqlTest {
         assertSame("cache does not return the same object every time", first, second);
     }
 
+    @Test
+    public void testFindAll__existingAndMissing() {
+        //given
+        UUID missingId = UUID.randomUUID();
+        repo().clearCache();
+        //when
+        Map<UUID, AccountSnapshot> accounts = repo().findAll(Arrays.asList(PLAYER_ID, missingId));
+        //then
+        assertThat(accounts, hasKey(PLAYER_ID));
+        assertThat(accounts, not(hasKey(missingId)));
+        assertThat(accounts.get(PLAYER_ID).getLastRank(), is(EXPECTED_RANK));
+        assertSame("findAll does not cache found accounts", accounts.get(PLAYER_ID), findAccount(PLAYER_ID));
+        assertTrue("findAll does not cache absence", repo().isCached(missingId));
+        assertFalse("cached absence is not absent", repo().find(missingId).isPresent());
+    }
+
     @Test
     public void testRefresh__notSame() {
         //given
@@ -152,6 +174,59 @@ public class SqlAccountRepositoryTest extends AbstractLanatusSqlTest {
         thenTheRemoteMelonsCountHasChangedBy(mutable, 50 - 20);
     }
 
+    @Test(expected = AccountConflictException.class)
+    public void testSave__concurrent_rankChange() throws AccountConflictException {
+        //given
+        UUID playerId = givenAPlayerWithMelons(5);
+        MutableAccount mutable = repo().findMutable(playerId);
+        mutable.setLastRank("rank-x");
+        MutableAccount concurrent = repo().findMutable(playerId);
+        concurrent.setLastRank("rank-y");
+        repo().save(concurrent);
+        //when
+        repo().save(mutable);
+        //then an exception is thrown
+    }
+
+    @Test
+    public void testSave__new() throws AccountConflictException {
+        //given
+        UUID playerId = UUID.randomUUID();
+        MutableAccount mutable = repo().findMutable(playerId);
+        mutable.setMelonsCount(77);
+        //when
+        repo().save(mutable);
+        //then
+        repo().clearCache();
+        assertThat(findAccount(playerId).getMelonsCount(), is(77));
+    }
+
+    @Test
+    public void testSave__new_createdConcurrently() throws AccountConflictException {
+        //given
+        UUID playerId = UUID.randomUUID();
+        MutableAccount mutable = repo().findMutable(playerId);
+        mutable.modifyMelonsCount(5);
+        MutableAccount concurrent = repo().findMutable(playerId);
+        concurrent.modifyMelonsCount(10);
+        repo().save(concurrent);
+        //when
+        repo().save(mutable);
+        //then
+        repo().clearCache();
+        assertThat(findAccount(playerId).getMelonsCount(), is(15));
+    }
+
+    @Test
+    public void testPrefetchPlayer__cachesAccount() {
+        //given
+        repo().clearCachesFor(PLAYER_ID);
+        //when
+        repo().prefetchPlayer(PLAYER_ID);
+        //then
+        assertTrue(repo().isCached(PLAYER_ID));
+    }
+
     private void thenTheRemoteMelonsCountHasChangedBy(MutableAccount mutable, int expectedModifier) {
         repo().clearCache();
         int remoteMelonsCount = findAccount(PLAYER_ID).getMelonsCount();
@@ -0,0 +1,109 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.async;
+
+import li.l1t.lanatus.api.account.AccountSnapshot;
+import li.l1t.lanatus.api.exception.AccountConflictException;
+import li.l1t.lanatus.api.exception.NoSuchProductException;
+import li.l1t.lanatus.api.product.Product;
+import li.l1t.lanatus.sql.AbstractLanatusSqlTest;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the integration of the asynchronous Lanatus facade with the database.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class AsyncLanatusClientTest extends AbstractLanatusSqlTest {
+    @Test
+    public void testFindAccount__uncached() throws AccountConflictException {
+        //given
+        UUID playerId = givenAPlayerWithMelons(42);
+        client().accounts().clearCache();
+        //when
+        CompletableFuture<Integer> melons = client().async().findAccountOrDefault(playerId)
+                .thenApply(account -> account.getMelonsCount());
+        //then
+        assertThat(melons.join(), is(42));
+    }
+
+    @Test
+    public void testFindAccount__cachedCompletesImmediately() throws AccountConflictException {
+        //given
+        UUID playerId = givenAPlayerWithMelons(42);
+        client().accounts().find(playerId);
+        //when
+        CompletableFuture<?> future = client().async().findAccount(playerId);
+        //then
+        assertThat(future.isDone(), is(true));
+    }
+
+    @Test
+    public void testFindAccountOrDefault__cachedAbsenceCompletesImmediately() {
+        //given
+        UUID playerId = UUID.randomUUID();
+        client().accounts().find(playerId);
+        //when
+        CompletableFuture<AccountSnapshot> future = client().async().findAccountOrDefault(playerId);
+        //then
+        assertThat(future.isDone(), is(true));
+        assertThat(future.join().existed(), is(false));
+    }
+
+    @Test
+    public void testFindProduct__nonExisting() {
+        //given
+        UUID productId = UUID.randomUUID();
+        //when
+        CompletableFuture<Product> future = client().async().findProduct(productId);
+        //then
+        try {
+            future.join();
+            fail("expected exception");
+        } catch (CompletionException e) {
+            assertThat(e.getCause(), is(instanceOf(NoSuchProductException.class)));
+        }
+    }
+
+    @Test
+    public void testCreditMelons() {
+        //given
+        UUID playerId = UUID.randomUUID();
+        //when
+        client().async().creditMelons(playerId, 20, "async").join();
+        //then
+        assertThat(findAccount(playerId).getMelonsCount(), is(20));
+    }
+}
@@ -24,15 +24,20 @@
 
 package li.l1t.lanatus.sql.builder.melons;
 
+import li.l1t.common.exception.DatabaseException;
 import li.l1t.lanatus.api.builder.CreditMelonsBuilder;
 import li.l1t.lanatus.api.exception.AccountConflictException;
 import li.l1t.lanatus.api.purchase.Purchase;
 import li.l1t.lanatus.sql.AbstractLanatusSqlTest;
+import li.l1t.lanatus.sql.SqlLanatusClient;
 import org.junit.Test;
 
+import java.time.Duration;
+import java.util.Collections;
 import java.util.UUID;
 
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -91,6 +96,76 @@ public class SqlCreditMelonsBuilderTest extends AbstractLanatusSqlTest {
         assertThat(comment, is(SOME_COMMENT));
     }
 
+    @Test
+    public void testCredit__writeBehind() throws AccountConflictException {
+        //given
+        UUID existingId = givenAPlayerWithMelons(500);
+        UUID newId = UUID.randomUUID();
+        SqlLanatusClient client = createClient();
+        client.enableWriteBehindCredits(Duration.ofHours(1), 1000);
+        client.creditMelons(existingId).withMelonsCount(200).build();
+        client.creditMelons(existingId).withMelonsCount(50).withComment(SOME_COMMENT).build();
+        client.creditMelons(newId).withMelonsCount(5).build();
+        //when
+        client.close();
+        //then
+        assertThat(remoteMelonsCount(existingId), is(500 + 200 + 50));
+        assertThat(remoteMelonsCount(newId), is(5));
+        assertThat(client().purchases().findByPlayer(existingId).size(), is(2));
+    }
+
+    @Test
+    public void testCredit__writeBehind__failingCreditDoesNotBlockOthers() {
+        //given
+        UUID playerId = UUID.randomUUID();
+        UUID failingId = UUID.randomUUID();
+        SqlLanatusClient client = createClient();
+        MelonCreditQueue queue = client.enableWriteBehindCredits(Duration.ofHours(1), 1000);
+        client.creditMelons(playerId).withMelonsCount(200).build();
+        client.creditMelons(failingId).withMelonsCount(5).withComment(givenACommentTooLongToStore()).build();
+        //when
+        boolean flushed = tryFlush(queue);
+        //then
+        assertFalse("flush does not report failure", flushed);
+        assertThat(remoteMelonsCount(playerId), is(200));
+        assertThat(queue.getPendingCount(), is(1));
+        flushUntilEmpty(queue);
+        client.close();
+    }
+
+    @Test
+    public void testCredit__writeBehind__failingCreditDropped() {
+        //given
+        UUID failingId = UUID.randomUUID();
+        SqlLanatusClient client = createClient();
+        MelonCreditQueue queue = client.enableWriteBehindCredits(Duration.ofHours(1), 1000);
+        client.creditMelons(failingId).withMelonsCount(5).withComment(givenACommentTooLongToStore()).build();
+        //when
+        flushUntilEmpty(queue);
+        //then
+        assertThat(queue.getPendingCount(), is(0));
+        client.close();
+    }
+
+    private String givenACommentTooLongToStore() {
+        return String.join("", Collections.nCopies(300, "x"));
+    }
+
+    private void flushUntilEmpty(MelonCreditQueue queue) {
+        for (int i = 0; i < 10 && queue.getPendingCount() > 0; i++) {
+            tryFlush(queue);
+        }
+    }
+
+    private boolean tryFlush(MelonCreditQueue queue) {
+        try {
+            queue.flush();
+            return true;
+        } catch (DatabaseException e) {
+            return false;
+        }
+    }
+
     private Purchase findSinglePurchaseByPlayer(UUID playerId) {
         return client().purchases().findByPlayer(playerId).stream().findFirst().orElseThrow(AssertionError::new);
     }
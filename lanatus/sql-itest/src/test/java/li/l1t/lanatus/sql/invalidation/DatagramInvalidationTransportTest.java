@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package li.l1t.lanatus.sql.invalidation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the datagram invalidation transport exchanges messages with its peers only.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class DatagramInvalidationTransportTest {
+    private final List<InvalidationMessage> received = new CopyOnWriteArrayList<>();
+    private final CountDownLatch markerReceived = new CountDownLatch(1);
+    private final InvalidationMessage marker = givenAMessage();
+    private InetSocketAddress address;
+    private DatagramInvalidationTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        address = findFreeLoopbackAddress();
+        transport = new DatagramInvalidationTransport(address, Collections.singletonList(address));
+        transport.subscribe(message -> {
+            received.add(message);
+            if (message.equals(marker)) {
+                markerReceived.countDown();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        transport.close();
+    }
+
+    @Test
+    public void testPublish__peerReceives() throws InterruptedException {
+        //given a transport that is its own peer
+        //when
+        transport.publish(marker);
+        //then
+        assertTrue("marker not received", markerReceived.await(2, TimeUnit.SECONDS));
+        assertThat(received, contains(marker));
+    }
+
+    @Test
+    public void testReceive__unknownAddressIgnored() throws Exception {
+        //given
+        InvalidationMessage foreign = givenAMessage();
+        try (DatagramSocket stranger = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            byte[] data = foreign.serialize().getBytes(StandardCharsets.UTF_8);
+            stranger.send(new DatagramPacket(data, data.length, address));
+        }
+        //when
+        transport.publish(marker); //processed after the foreign message by the same receiver thread
+        //then
+        assertTrue("marker not received", markerReceived.await(2, TimeUnit.SECONDS));
+        assertThat(received, contains(marker));
+    }
+
+    private InvalidationMessage givenAMessage() {
+        return new InvalidationMessage(InvalidationMessage.Type.PLAYER, UUID.randomUUID(), UUID.randomUUID());
+    }
+
+    private InetSocketAddress findFreeLoopbackAddress() throws Exception {
+        try (DatagramSocket probe = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), probe.getLocalPort());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.invalidation;
+
+import li.l1t.lanatus.api.account.MutableAccount;
+import li.l1t.lanatus.api.exception.AccountConflictException;
+import li.l1t.lanatus.sql.AbstractLanatusSqlTest;
+import li.l1t.lanatus.sql.SqlLanatusClient;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests that caches of multiple clients connected by an invalidation transport stay consistent.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class InvalidationBusTest extends AbstractLanatusSqlTest {
+    private final InvalidationTransport transport = new LoopbackInvalidationTransport();
+    private final SqlLanatusClient otherClient = createClient();
+
+    @After
+    public void tearDown() {
+        otherClient.close();
+        transport.close();
+    }
+
+    @Test
+    public void testSave__otherClientInvalidated() throws AccountConflictException {
+        //given
+        givenBothClientsConnected();
+        UUID playerId = givenAPlayerWithMelons(100);
+        assertThat(otherClient.accounts().findOrDefault(playerId).getMelonsCount(), is(100));
+        //when
+        MutableAccount account = client().accounts().findMutable(playerId);
+        account.setMelonsCount(300);
+        client().accounts().save(account);
+        //then
+        assertThat(otherClient.accounts().findOrDefault(playerId).getMelonsCount(), is(300));
+    }
+
+    private void givenBothClientsConnected() {
+        client().invalidation().connect(transport);
+        otherClient.invalidation().connect(transport);
+    }
+
+    @Test
+    public void testSave__notConnected() throws AccountConflictException {
+        //given
+        UUID playerId = givenAPlayerWithMelons(100);
+        assertThat(otherClient.accounts().findOrDefault(playerId).getMelonsCount(), is(100));
+        //when
+        MutableAccount account = client().accounts().findMutable(playerId);
+        account.setMelonsCount(300);
+        client().accounts().save(account);
+        //then
+        assertThat("cache invalidated without transport",
+                otherClient.accounts().findOrDefault(playerId).getMelonsCount(), is(100));
+    }
+
+    @Test
+    public void testRegisterProduct__otherSearchIndexInvalidated() {
+        //given
+        givenBothClientsConnected();
+        otherClient.products().query().containing("invalidated").execute();
+        UUID productId = UUID.randomUUID();
+        //when
+        client().products().registration(productId).withDisplayName("invalidated product").register();
+        //then
+        assertThat(otherClient.products().query().containing("invalidated").execute(),
+                hasItem(hasProperty("uniqueId", is(productId))));
+    }
+
+    @Test
+    public void testMessage__serializeRoundTrip() {
+        //given
+        InvalidationMessage message = new InvalidationMessage(
+                InvalidationMessage.Type.PRODUCT, UUID.randomUUID(), UUID.randomUUID()
+        );
+        //when
+        InvalidationMessage parsed = InvalidationMessage.parse(message.serialize());
+        //then
+        assertThat(parsed, is(message));
+    }
+}
@@ -145,4 +145,37 @@ public class SqlPositionRepositoryTest extends AbstractLanatusSqlTest {
         //then
         assertFalse(hasProduct);
     }
+
+    @Test
+    public void testPlayerHasProduct__cachedThenPurchased() {
+        //given
+        Product product = client().products().registration(UUID.randomUUID()).register();
+        assertFalse(client().positions().playerHasProduct(PLAYER_ID, product.getUniqueId()));
+        //when
+        purchase(client(), product);
+        //then
+        assertTrue(client().positions().playerHasProduct(PLAYER_ID, product.getUniqueId()));
+    }
+
+    @Test
+    public void testPrefetchPlayer__cachesProducts() {
+        //given
+        UUID playerId = UUID.randomUUID();
+        client().positions().clearCachesFor(playerId);
+        //when
+        client().positions().prefetchPlayer(playerId);
+        //then
+        assertTrue(client().positions().isPlayerCached(playerId));
+    }
+
+    @Test
+    public void testClearCache__purgesPlayerProducts() {
+        //given
+        UUID playerId = UUID.randomUUID();
+        client().positions().prefetchPlayer(playerId);
+        //when
+        client().positions().clearCache();
+        //then
+        assertFalse(client().positions().isPlayerCached(playerId));
+    }
 }
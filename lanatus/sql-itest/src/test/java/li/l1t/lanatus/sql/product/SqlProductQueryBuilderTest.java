@@ -30,13 +30,17 @@ import li.l1t.lanatus.sql.AbstractLanatusSqlTest;
 import org.junit.Test;
 
 import java.util.Collection;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.core.Every.everyItem;
 import static org.junit.Assert.assertThat;
 
@@ -167,4 +171,72 @@ public class SqlProductQueryBuilderTest extends AbstractLanatusSqlTest {
         thenTheResultHasAnItemWithId(productId, results);
         thenAllResultsContain(searchTerm, results);
     }
+
+    @Test
+    public void testQuery__containing__shortTerm() {
+        //given
+        String searchTerm = "qx";
+        UUID productId = givenAProductWithDisplayNameContaining(searchTerm);
+        ProductQueryBuilder query = givenAContainsQuery(searchTerm);
+        //when
+        Collection<Product> results = query.execute();
+        //then
+        thenTheResultHasAnItemWithId(productId, results);
+        thenAllResultsContain(searchTerm, results);
+    }
+
+    @Test
+    public void testQuery__containing__inModule__databaseMatchesIndex() {
+        //given
+        String searchTerm = "zebra";
+        UUID productId = givenAProductWith("zebramodule", "a striped " + searchTerm, "anything");
+        givenAProductWith("othermodule", "another " + searchTerm, "anything");
+        SqlProductQueryBuilder query = (SqlProductQueryBuilder) client().products().query()
+                .inModule("zebramodule")
+                .containing(searchTerm);
+        //when
+        Collection<Product> databaseResults = client().products().executeOnDatabase(query);
+        client().products().warmSearchIndex();
+        Collection<Product> indexResults = client().products().executeOnSearchIndex(query);
+        //then
+        assertThat(idsOf(databaseResults), contains(productId));
+        assertThat(idsOf(indexResults), is(idsOf(databaseResults)));
+    }
+
+    @Test
+    public void testQuery__containing__wildcardsMatchLiterally() {
+        //given
+        UUID productId = givenAProductWith("any", "a vip_ rank", "anything");
+        UUID otherId = givenAProductWith("any", "a vipx rank", "anything");
+        SqlProductQueryBuilder query = (SqlProductQueryBuilder) givenAContainsQuery("vip_");
+        //when
+        Collection<Product> databaseResults = client().products().executeOnDatabase(query);
+        client().products().warmSearchIndex();
+        Collection<Product> indexResults = client().products().executeOnSearchIndex(query);
+        //then
+        assertThat(idsOf(databaseResults), hasItem(productId));
+        assertThat(idsOf(databaseResults), not(hasItem(otherId)));
+        assertThat(idsOf(indexResults), is(idsOf(databaseResults)));
+    }
+
+    private Set<UUID> idsOf(Collection<Product> products) {
+        return products.stream()
+                .map(Product::getUniqueId)
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testQuery__clearCache__picksUpForeignProducts() {
+        //given
+        givenAContainsQuery("foreign").execute();
+        UUID productId = UUID.randomUUID();
+        createClient().products().registration(productId)
+                .withDisplayName("a foreign product")
+                .register();
+        //when
+        client().products().clearCache();
+        Collection<Product> results = givenAContainsQuery("foreign").execute();
+        //then
+        thenTheResultHasAnItemWithId(productId, results);
+    }
 }
@@ -37,6 +37,7 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isEmptyString;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assume.assumeThat;
@@ -127,6 +128,19 @@ public class SqlProductRegistrationBuilderTest extends AbstractLanatusSqlTest {
         thenTheProductIsNotChangedFromThePreviousValues(productId, result);
     }
 
+    @Test
+    public void testRegister__cachesCreatedProduct() {
+        //given
+        UUID productId = UUID.randomUUID();
+        givenTheProductDoesNotExist(productId);
+        Product created = givenABuilderWithConstantValues(productId).register();
+        //when
+        Product result = givenABuilderWithModifiedValues(productId).register();
+        //then
+        assertThat(result, is(sameInstance(created)));
+        assertThat(repo().findById(productId), is(sameInstance(created)));
+    }
+
     private ProductRegistrationBuilder givenABuilderWithModifiedValues(UUID productId) {
         return repo().registration(productId)
                 .inModule(OTHER_MODULE + "aa")
@@ -24,6 +24,7 @@
 
 package li.l1t.lanatus.sql.product;
 
+import li.l1t.common.sql.sane.scoped.JdbcScopedSession;
 import li.l1t.lanatus.api.exception.AccountConflictException;
 import li.l1t.lanatus.api.exception.NoSuchProductException;
 import li.l1t.lanatus.api.product.Product;
@@ -33,10 +34,17 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
 import java.util.UUID;
 
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
 
 /**
  * Tests the integration of the sql product repository with the database, verifying only using the
@@ -98,6 +106,41 @@ public class SqlProductRepositoryTest extends AbstractLanatusSqlTest {
         assertNotSame("clear cache does not purge cache", initial, repo().findById(PRODUCT_ID));
     }
 
+    @Test
+    public void testFindAllById__existingAndMissing() {
+        //given
+        UUID missingId = UUID.randomUUID();
+        repo().clearCache();
+        //when
+        Map<UUID, Product> products = repo().findAllById(Arrays.asList(PRODUCT_ID, missingId));
+        //then
+        assertThat(products, hasKey(PRODUCT_ID));
+        assertThat(products, not(hasKey(missingId)));
+        assertSame("findAllById does not cache found products", products.get(PRODUCT_ID), repo().findById(PRODUCT_ID));
+    }
+
+    @Test
+    public void testFindAllById__cached() {
+        //given
+        Product cached = repo().findById(PRODUCT_ID);
+        //when
+        Map<UUID, Product> products = repo().findAllById(Collections.singletonList(PRODUCT_ID));
+        //then
+        assertSame("findAllById does not use cache", cached, products.get(PRODUCT_ID));
+    }
+
+    @Test
+    public void testRegister__rolledBackNotCached() {
+        //given
+        UUID productId = UUID.randomUUID();
+        JdbcScopedSession outer = client().transaction();
+        repo().registration(productId).register();
+        //when
+        outer.rollbackAndClose();
+        //then
+        assertThat("rolled back product is cached", repo().isCached(productId), is(false));
+    }
+
     private SqlProductRepository repo() {
         return client().products();
     }
@@ -43,6 +43,7 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isEmptyString;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * @author <a href="https://l1t.li/">Literallie</a>
@@ -133,6 +134,24 @@ public class SqlPurchaseBuilderTest extends AbstractLanatusSqlTest {
         //then an exception is thrown
     }
 
+    @Test
+    public void testBuild__notEnoughMelons__existing() throws AccountConflictException {
+        //given
+        UUID playerId = givenAPlayerWithMelons(10);
+        PurchaseBuilder builder = client().startPurchase(playerId)
+                .withProductId(PRODUCT_ID)
+                .withMelonsCost(11);
+        //when
+        try {
+            builder.build();
+            fail("expected NotEnoughMelonsException");
+        } catch (NotEnoughMelonsException expected) {
+            //then
+            assertThat(findAccount(playerId).getMelonsCount(), is(10));
+            assertThat(builder.hasBeenBuilt(), is(false));
+        }
+    }
+
     @Test
     public void testBuild__melonsCheck() throws AccountConflictException {
         //given
@@ -36,10 +36,14 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
@@ -102,6 +106,18 @@ public class SqlPurchaseRepositoryTest extends AbstractLanatusSqlTest {
         assertSame("purchases are not cached", initial, cached);
     }
 
+    @Test
+    public void testStreamAll__containsPurchase() {
+        //given PURCHASE_ID
+        //when
+        List<UUID> purchaseIds;
+        try (Stream<Purchase> stream = repo().streamAll()) {
+            purchaseIds = stream.map(Purchase::getUniqueId).collect(Collectors.toList());
+        }
+        //then
+        assertThat(purchaseIds, hasItem(PURCHASE_ID));
+    }
+
     @Test
     public void testFindByPlayer__basic() {
         //given PURCHASE_ID, PLAYER_ID
@@ -129,6 +145,42 @@ public class SqlPurchaseRepositoryTest extends AbstractLanatusSqlTest {
         ));
     }
 
+    @Test
+    public void testFindByPlayer__caching() {
+        //given PURCHASE_ID, PLAYER_ID
+        repo().clearCache();
+        //when
+        repo().findByPlayer(PLAYER_ID);
+        //then
+        assertThat(repo().findCachedByPlayer(PLAYER_ID), hasItem(hasProperty("uniqueId", is(PURCHASE_ID))));
+    }
+
+    @Test
+    public void testFindByPlayer__resolvesProductsInBulk() throws AccountConflictException {
+        //given
+        UUID playerId = givenAPlayerWithMelons(1337);
+        Product first = client().products().registration(UUID.randomUUID()).register();
+        Product second = client().products().registration(UUID.randomUUID()).register();
+        client().startPurchase(playerId).withProduct(first).build();
+        client().startPurchase(playerId).withProduct(first).build();
+        client().startPurchase(playerId).withProduct(second).build();
+        repo().clearCache();
+        client().products().clearCache();
+        //when
+        Collection<Purchase> results = repo().findByPlayer(playerId);
+        //then
+        List<UUID> productIds = results.stream()
+                .map(purchase -> purchase.getProduct().getUniqueId())
+                .collect(Collectors.toList());
+        assertThat(productIds, containsInAnyOrder(
+                first.getUniqueId(), first.getUniqueId(), second.getUniqueId()
+        ));
+        Product resolved = client().products().findById(first.getUniqueId());
+        results.stream()
+                .filter(purchase -> purchase.getProduct().getUniqueId().equals(first.getUniqueId()))
+                .forEach(purchase -> assertSame("products are not shared between purchases", resolved, purchase.getProduct()));
+    }
+
     @Test
     public void testClearCache() {
         //given
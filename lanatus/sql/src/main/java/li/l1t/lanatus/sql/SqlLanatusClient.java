@@ -24,20 +24,35 @@
 
 package li.l1t.lanatus.sql;
 
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import li.l1t.common.sql.sane.AbstractSqlConnected;
+import li.l1t.common.sql.sane.JdbcSaneSql;
 import li.l1t.common.sql.sane.SaneSql;
+import li.l1t.common.sql.sane.routing.ReplicaRoutingSaneSql;
+import li.l1t.common.sql.sane.scoped.JdbcScopedSession;
 import li.l1t.lanatus.api.LanatusCache;
 import li.l1t.lanatus.api.LanatusClient;
 import li.l1t.lanatus.api.builder.CreditMelonsBuilder;
 import li.l1t.lanatus.sql.account.SqlAccountRepository;
+import li.l1t.lanatus.sql.async.AsyncLanatusClient;
+import li.l1t.lanatus.sql.builder.melons.MelonCreditQueue;
 import li.l1t.lanatus.sql.builder.melons.SqlCreditMelonsBuilder;
+import li.l1t.lanatus.sql.invalidation.InvalidationBus;
 import li.l1t.lanatus.sql.position.SqlPositionRepository;
 import li.l1t.lanatus.sql.product.SqlProductRepository;
 import li.l1t.lanatus.sql.purchase.SqlPurchaseBuilder;
 import li.l1t.lanatus.sql.purchase.SqlPurchaseRepository;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * An implementation of a Lanatus client using a SQL database as backend.
@@ -45,15 +60,26 @@ import java.util.function.Consumer;
  * @author <a href="http://xxyy.github.io/">xxyy</a>
  * @since 2016-09-28
  */
-public class SqlLanatusClient extends AbstractSqlConnected implements LanatusClient {
+public class SqlLanatusClient extends AbstractSqlConnected implements LanatusClient, AutoCloseable {
+    private static final int ASYNC_THREAD_COUNT = 4;
+    private static final int ASYNC_QUEUE_CAPACITY = 1024;
     private final String module;
+    private final ThreadPoolExecutor backgroundExecutor = createBackgroundExecutor();
     private SqlAccountRepository accountRepository = new SqlAccountRepository(this);
     private SqlProductRepository productRepository = new SqlProductRepository(this);
     private SqlPurchaseRepository purchaseRepository = new SqlPurchaseRepository(this);
     private SqlPositionRepository positionRepository = new SqlPositionRepository(this);
+    private final InvalidationBus invalidationBus = new InvalidationBus(
+            this::handleForeignPlayerChange, productId -> productRepository.clearCachesForProduct(productId)
+    );
+    private volatile MelonCreditQueue creditQueue;
+    private AsyncLanatusClient asyncClient;
 
     /**
-     * Constructs a new SQL Lanatus client.
+     * Constructs a new SQL Lanatus client. If given a {@link ReplicaRoutingSaneSql}, which may be
+     * wrapped in decorators, reads that are not part of a transaction use the replica, except for
+     * reads concerning players that have been changed within the read-your-writes window, and
+     * reads that precede writes.
      *
      * @param sql    the database connection to use
      * @param module the name of the module using this client
@@ -63,6 +89,15 @@ public class SqlLanatusClient extends AbstractSqlConnected implements LanatusCli
         this.module = module;
     }
 
+    private static ThreadPoolExecutor createBackgroundExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                2, 2, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("lanatus-background-%d").setDaemon(true).build()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     @Override
     public String getModuleName() {
         return module;
@@ -95,7 +130,24 @@ public class SqlLanatusClient extends AbstractSqlConnected implements LanatusCli
 
     @Override
     public CreditMelonsBuilder creditMelons(UUID playerId) {
-        return new SqlCreditMelonsBuilder(playerId, this);
+        return new SqlCreditMelonsBuilder(playerId, this, creditQueue);
+    }
+
+    /**
+     * Enables write-behind crediting of melons for this client. Positive credits made through
+     * {@link #creditMelons(UUID)} are then queued and written in batches instead of being written
+     * immediately. This means that they will not be reflected in account data until the next
+     * flush. Pending credits are flushed when this client is {@link #close() closed}.
+     *
+     * @param flushInterval  the interval to write pending credits at
+     * @param flushThreshold the amount of pending credits that causes an immediate write
+     * @return the queue used to store pending credits
+     * @throws IllegalStateException if write-behind crediting has already been enabled
+     */
+    public synchronized MelonCreditQueue enableWriteBehindCredits(Duration flushInterval, int flushThreshold) {
+        Preconditions.checkState(creditQueue == null, "write-behind credits already enabled");
+        creditQueue = new MelonCreditQueue(this, flushInterval, flushThreshold);
+        return creditQueue;
     }
 
     @Override
@@ -103,11 +155,159 @@ public class SqlLanatusClient extends AbstractSqlConnected implements LanatusCli
         forAllCaches(LanatusCache::clearCache);
     }
 
+    /**
+     * {@inheritDoc} If an invalidation transport is connected, other clients are notified to clear
+     * their caches for the player as well.
+     */
     @Override
     public void clearCachesFor(UUID playerId) {
+        clearLocalCachesFor(playerId);
+        invalidationBus.publishPlayer(playerId);
+    }
+
+    private void clearLocalCachesFor(UUID playerId) {
         forAllCaches(cache -> cache.clearCachesFor(playerId));
     }
 
+    private void handleForeignPlayerChange(UUID playerId) {
+        recordWriteFor(playerId); //the change might not have been replicated yet
+        clearLocalCachesFor(playerId);
+    }
+
+    /**
+     * Opens a transaction spanning all statements issued through {@link #sql()} on the current
+     * thread until the returned session is closed. Nested calls join the outer transaction.
+     *
+     * @return the scoped session of the transaction
+     * @throws IllegalStateException if the database connection of this client does not support
+     *                               scoped sessions, i.e. is not a {@link JdbcSaneSql}
+     */
+    public JdbcScopedSession transaction() {
+        SaneSql sql = sql();
+        Preconditions.checkState(sql instanceof JdbcSaneSql,
+                "database connection does not support transactions: %s", sql);
+        return ((JdbcSaneSql) sql).scoped().tx();
+    }
+
+    /**
+     * @return the database connection to use for reads that must observe the latest state, such
+     * as reads that precede writes, which is the primary if replica routing is used and the
+     * regular connection otherwise
+     * @see JdbcSaneSql#primary()
+     */
+    public SaneSql primarySql() {
+        if (sql() instanceof JdbcSaneSql) {
+            return ((JdbcSaneSql) sql()).primary();
+        } else {
+            return sql();
+        }
+    }
+
+    /**
+     * Runs a read concerning a single player so that it observes recent changes to that player,
+     * made through this client or announced on the {@link #invalidation() invalidation bus}.
+     *
+     * @param playerId the unique id of the player
+     * @param reader   the reader to run
+     * @param <T>      the type of data read
+     * @return the result of the reader
+     * @see JdbcSaneSql#readConsistently(Object, Supplier)
+     */
+    public <T> T readFor(UUID playerId, Supplier<T> reader) {
+        if (sql() instanceof JdbcSaneSql) {
+            return ((JdbcSaneSql) sql()).readConsistently(playerId, reader);
+        } else {
+            return reader.get();
+        }
+    }
+
+    /**
+     * Runs a read concerning multiple players so that it observes recent changes to any of them.
+     *
+     * @param playerIds the unique ids of the players
+     * @param reader    the reader to run
+     * @param <T>       the type of data read
+     * @return the result of the reader
+     * @see #readFor(UUID, Supplier)
+     */
+    public <T> T readFor(Collection<UUID> playerIds, Supplier<T> reader) {
+        if (sql() instanceof JdbcSaneSql) {
+            return ((JdbcSaneSql) sql()).readConsistently(playerIds, reader);
+        } else {
+            return reader.get();
+        }
+    }
+
+    /**
+     * Records that data of a player has been changed, so that {@link #readFor(UUID, Supplier)
+     * reads for the player} use the primary database for the read-your-writes window if replica
+     * routing is used. Does nothing otherwise.
+     *
+     * @param playerId the unique id of the player
+     * @see JdbcSaneSql#recordWrite(Object)
+     */
+    public void recordWriteFor(UUID playerId) {
+        if (sql() instanceof JdbcSaneSql) {
+            ((JdbcSaneSql) sql()).recordWrite(playerId);
+        }
+    }
+
+    /**
+     * Returns an asynchronous facade for this client, which runs database operations on a
+     * dedicated executor and completes lookups of cached data immediately. The facade is created
+     * on first access and shut down when this client is closed.
+     *
+     * @return the asynchronous facade of this client
+     */
+    public synchronized AsyncLanatusClient async() {
+        if (asyncClient == null) {
+            asyncClient = new AsyncLanatusClient(this, ASYNC_THREAD_COUNT, ASYNC_QUEUE_CAPACITY);
+        }
+        return asyncClient;
+    }
+
+    /**
+     * Returns the invalidation bus of this client, which keeps caches of multiple clients, for
+     * example on different servers, consistent. Changes made through this client are published to
+     * the bus, and changes received from it are applied to this client's caches. Connect a
+     * transport to the bus to enable it.
+     *
+     * @return the invalidation bus of this client
+     */
+    public InvalidationBus invalidation() {
+        return invalidationBus;
+    }
+
+    /**
+     * @return the executor used by this client for background tasks, such as refreshing cached
+     * values ahead of their expiry
+     */
+    public Executor getBackgroundExecutor() {
+        return backgroundExecutor;
+    }
+
+    /**
+     * Writes any pending melon credits, stops write-behind crediting, if enabled, shuts down the
+     * asynchronous facade, disconnects from the invalidation transport, and stops background
+     * tasks.
+     */
+    @Override
+    public void close() {
+        MelonCreditQueue queue = creditQueue;
+        if (queue != null) {
+            creditQueue = null;
+            queue.close();
+        }
+        synchronized (this) {
+            if (asyncClient != null) {
+                asyncClient.close();
+                asyncClient = null;
+            }
+        }
+        invalidationBus.close();
+        backgroundExecutor.shutdown();
+    }
+
     private void forAllCaches(Consumer<LanatusCache> consumer) {
         consumer.accept(accountRepository);
         consumer.accept(positionRepository);
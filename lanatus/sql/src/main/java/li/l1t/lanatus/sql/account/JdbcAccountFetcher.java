@@ -24,6 +24,8 @@
 
 package li.l1t.lanatus.sql.account;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import li.l1t.common.exception.DatabaseException;
 import li.l1t.common.exception.InternalException;
 import li.l1t.common.sql.sane.SaneSql;
@@ -31,6 +33,10 @@ import li.l1t.common.sql.sane.result.QueryResult;
 import li.l1t.lanatus.api.account.LanatusAccount;
 
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -41,6 +47,10 @@ import java.util.UUID;
  * @since 2016-09-29
  */
 class JdbcAccountFetcher<T extends LanatusAccount> extends li.l1t.common.sql.sane.util.AbstractJdbcFetcher<T> {
+    /**
+     * The maximum amount of player ids passed to a single bulk query.
+     */
+    static final int BULK_CHUNK_SIZE = 100;
     private final JdbcAccountCreator<? extends T> creator;
 
     public JdbcAccountFetcher(JdbcAccountCreator<? extends T> creator, SaneSql sql) {
@@ -65,6 +75,36 @@ class JdbcAccountFetcher<T extends LanatusAccount> extends li.l1t.common.sql.san
         }
     }
 
+    /**
+     * Fetches the accounts of multiple players, issuing a query for each {@link #BULK_CHUNK_SIZE}
+     * player ids.
+     *
+     * @param playerIds the unique ids of the players to fetch
+     * @return a map from player id to account, containing only the players that have an account
+     * @throws InternalException if a database error occurs
+     */
+    public Map<UUID, T> fetchAll(Collection<UUID> playerIds) throws InternalException {
+        if (playerIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        ImmutableMap.Builder<UUID, T> accounts = ImmutableMap.builder();
+        for (List<UUID> chunk : Iterables.partition(playerIds, BULK_CHUNK_SIZE)) {
+            fetchChunkInto(chunk, accounts);
+        }
+        return accounts.build();
+    }
+
+    private void fetchChunkInto(List<UUID> playerIds, ImmutableMap.Builder<UUID, T> accounts) {
+        try (QueryResult qr = executeSql(buildInCondition("player_uuid", playerIds.size()), uuidParameters(playerIds))) {
+            while (proceedToNextRow(qr)) {
+                T account = creator.createFromCurrentRow(qr.rs());
+                accounts.put(account.getPlayerId(), account);
+            }
+        } catch (SQLException e) {
+            throw InternalException.wrap(e);
+        }
+    }
+
     private boolean proceedToFirstRow(QueryResult qr) throws SQLException {
         return qr.rs().next();
     }
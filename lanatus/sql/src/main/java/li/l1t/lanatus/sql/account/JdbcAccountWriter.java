@@ -25,86 +25,178 @@
 package li.l1t.lanatus.sql.account;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.base.Verify;
+import com.google.common.base.VerifyException;
+import li.l1t.common.exception.DatabaseException;
 import li.l1t.common.sql.sane.AbstractSqlConnected;
 import li.l1t.common.sql.sane.SaneSql;
 import li.l1t.lanatus.api.account.AccountSnapshot;
+import li.l1t.lanatus.api.account.LanatusAccount;
 import li.l1t.lanatus.api.account.MutableAccount;
 import li.l1t.lanatus.api.exception.AccountConflictException;
+import li.l1t.lanatus.api.exception.NotEnoughMelonsException;
+import li.l1t.lanatus.sql.account.snapshot.AccountSnapshotFactory;
 
+import java.sql.SQLException;
 import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 
 /**
  * Writes the state of a mutable account to database, attempting basic conflict resolution if the
- * state changed in database.
+ * state changed in database. Conflicts are detected optimistically, without reading the current
+ * state first.
  *
  * @author <a href="http://xxyy.github.io/">xxyy</a>
  * @since 2016-10-07
  */
 class JdbcAccountWriter extends AbstractSqlConnected {
+    private static final int MAX_DELTA_ATTEMPTS = 3;
+    /**
+     * SQL state reported for unique key violations by standard-compliant databases such as H2.
+     * MySQL reports the generic integrity constraint violation state instead, which is why its
+     * vendor code is checked as well.
+     */
+    private static final String DUPLICATE_KEY_SQL_STATE = "23505";
+    /**
+     * MySQL vendor error code {@code ER_DUP_ENTRY}.
+     */
+    private static final int MYSQL_DUPLICATE_ENTRY_ERROR_CODE = 1062;
     private final JdbcAccountFetcher<AccountSnapshot> snapshotFetcher;
+    private final AccountSnapshotFactory snapshotFactory;
 
-    JdbcAccountWriter(SaneSql sql, JdbcAccountFetcher<AccountSnapshot> snapshotFetcher) {
+    JdbcAccountWriter(SaneSql sql, JdbcAccountFetcher<AccountSnapshot> snapshotFetcher,
+                      AccountSnapshotFactory snapshotFactory) {
         super(sql);
         this.snapshotFetcher = snapshotFetcher;
+        this.snapshotFactory = snapshotFactory;
     }
 
+    /**
+     * Writes the changes made to a mutable account using optimistic concurrency control: Melons
+     * are written as a difference to the initial state, and the last rank is only written if it
+     * has not changed in the database since the account was read. This takes a single statement
+     * unless a conflict is detected through the affected row count, in which case the current
+     * state is read to decide how to proceed.
+     *
+     * @param account the account to write
+     * @throws AccountConflictException if the last rank has been changed concurrently
+     */
     void write(MutableAccount account) throws AccountConflictException {
         Preconditions.checkNotNull(account, "account");
-        Optional<AccountSnapshot> currentState = snapshotFetcher.fetchOptionally(account.getPlayerId());
-        if (!currentState.isPresent()) {
-            createNewAccount(account);
-        } else if (localCopyIsDifferentFromRemote(account, currentState.get())) {
-            attemptUpdate(account, currentState.get());
-        } //no changes otherwise
+        AccountSnapshot initialState = account.getInitialState();
+        if (!initialState.existed() && tryInsert(account)) {
+            return;
+        } //else it has been created concurrently, so apply our changes as difference
+        if (!hasLocalChanges(account)) {
+            return;
+        }
+        if (updateIfRankUnchanged(account) == 0) {
+            resolveFailedUpdate(account);
+        }
     }
 
-    private void createNewAccount(MutableAccount account) {
-        int rowsAffected = insertRaw(
-                account.getPlayerId(), account.getMelonsCount(), account.getLastRank()
-        );
-        Verify.verify(rowsAffected == 1, "expected insert to affect single row, was: ", account, rowsAffected);
+    private boolean hasLocalChanges(MutableAccount account) {
+        return findMelonDifference(account) != 0 ||
+                !account.getLastRank().equals(account.getInitialState().getLastRank());
     }
 
-    private int insertRaw(UUID playerId, int melonsCount, String lastRank) {
-        return sql().updateRaw("INSERT INTO " + SqlAccountRepository.TABLE_NAME + " " +
-                        "SET player_uuid=?, created=?, melons=?, lastrank=?",
-                playerId.toString(), Instant.now(), melonsCount, lastRank
+    private int updateIfRankUnchanged(MutableAccount account) {
+        return sql().updateRaw("UPDATE " + SqlAccountRepository.TABLE_NAME + " " +
+                        "SET melons=melons+?, lastrank=? " +
+                        "WHERE player_uuid=? AND lastrank=?",
+                findMelonDifference(account), account.getLastRank(),
+                account.getPlayerId().toString(), account.getInitialState().getLastRank()
         );
     }
 
-    private boolean localCopyIsDifferentFromRemote(MutableAccount account, AccountSnapshot currentSnapshot) {
-        return !currentSnapshot.equals(account);
+    private void resolveFailedUpdate(MutableAccount account) throws AccountConflictException {
+        for (int attempt = 0; attempt < MAX_DELTA_ATTEMPTS; attempt++) {
+            Optional<AccountSnapshot> currentState = snapshotFetcher.fetchOptionally(account.getPlayerId());
+            if (currentState.isPresent()) {
+                if (lastRankChangedConcurrentlyInDatabase(account, currentState.get())) {
+                    throw new AccountConflictException(currentState.get(), account);
+                }
+                return; //the driver reports only changed rows and nothing changed
+            } else if (tryInsert(account) || updateIfRankUnchanged(account) == 1) {
+                return; //deleted concurrently
+            } //otherwise, deleted and created again concurrently - retry
+        }
+        throw new VerifyException("failed to write account after " + MAX_DELTA_ATTEMPTS + " attempts");
     }
 
-    private void attemptUpdate(MutableAccount account, AccountSnapshot currentSnapshot) throws AccountConflictException {
-        if (lastRankChangedConcurrentlyInDatabase(account, currentSnapshot)) {
-            throw new AccountConflictException(currentSnapshot, account);
-        } else {
-            updateUsingMelonsDifference(account);
+    /**
+     * Atomically adds a delta to the melons count of an account, creating the account if it does
+     * not exist yet. In the common case of an existing account with enough melons, this issues a
+     * single statement. The last rank is never touched, so this cannot conflict with concurrent
+     * rank changes.
+     *
+     * @param playerId    the unique id of the player owning the account
+     * @param melonsDelta the amount of melons to add, or a negative amount to subtract
+     * @throws NotEnoughMelonsException if the account would have a negative melons count
+     */
+    void writeMelonsDelta(UUID playerId, int melonsDelta) throws NotEnoughMelonsException {
+        Preconditions.checkNotNull(playerId, "playerId");
+        for (int attempt = 0; attempt < MAX_DELTA_ATTEMPTS; attempt++) {
+            if (updateMelonsIfSufficient(playerId, melonsDelta) == 1) {
+                return;
+            }
+            AccountSnapshot current = snapshotFetcher.fetchOrDefault(playerId);
+            int newMelonsCount = current.getMelonsCount() + melonsDelta;
+            if (current.existed() && melonsDelta == 0) {
+                return; //the driver reports only changed rows and nothing changed
+            } else if (newMelonsCount < 0) {
+                throw new NotEnoughMelonsException(current, Math.abs(newMelonsCount));
+            } else if (!current.existed() &&
+                    tryInsert(snapshotFactory.newInstance(playerId, newMelonsCount, current.getLastRank()))) {
+                return;
+            } //otherwise, melons have been added or the account has been created concurrently - retry
         }
+        throw new VerifyException("failed to apply melons delta after " + MAX_DELTA_ATTEMPTS + " attempts");
     }
 
-    private boolean lastRankChangedConcurrentlyInDatabase(MutableAccount account, AccountSnapshot currentSnapshot) {
-        return !currentSnapshot.getLastRank().equals(account.getInitialState().getLastRank());
+    private int updateMelonsIfSufficient(UUID playerId, int melonsDelta) {
+        return sql().updateRaw("UPDATE " + SqlAccountRepository.TABLE_NAME + " " +
+                        "SET melons=melons+? " +
+                        "WHERE player_uuid=? AND melons+?>=0",
+                melonsDelta, playerId.toString(), melonsDelta
+        );
     }
 
-    private void updateUsingMelonsDifference(MutableAccount account) {
-        int rowsAffected = updateRaw(
-                account.getPlayerId(), account.getLastRank(),
-                findMelonDifference(account)
-        );
-        Verify.verify(rowsAffected == 1, "did not update single row when writing account", account, rowsAffected);
+    /**
+     * Inserts an account as a single plain insert, relying on the primary key to detect accounts
+     * created concurrently instead of checking for them first, which would not be atomic.
+     *
+     * @param account the account to insert
+     * @return whether the account has been inserted, false if it already existed
+     */
+    private boolean tryInsert(LanatusAccount account) {
+        try {
+            int rowsAffected = sql().updateRaw("INSERT INTO " + SqlAccountRepository.TABLE_NAME + " " +
+                            "SET player_uuid=?, created=?, melons=?, lastrank=?",
+                    account.getPlayerId().toString(), Instant.now(), account.getMelonsCount(), account.getLastRank()
+            );
+            Verify.verify(rowsAffected == 1, "expected insert to affect single row, was: ", account, rowsAffected);
+            return true;
+        } catch (DatabaseException e) {
+            if (isDuplicateKey(e)) {
+                return false;
+            }
+            throw e;
+        }
     }
 
-    private int updateRaw(UUID playerId, String lastRank, int melonsDiff) {
-        return sql().updateRaw("UPDATE " + SqlAccountRepository.TABLE_NAME + " " +
-                        "SET melons=melons+?, lastrank=?" +
-                        "WHERE player_uuid=?",
-                melonsDiff, lastRank, playerId.toString()
-        );
+    private static boolean isDuplicateKey(DatabaseException e) {
+        return Throwables.getCausalChain(e).stream()
+                .filter(SQLException.class::isInstance)
+                .map(SQLException.class::cast)
+                .anyMatch(cause -> DUPLICATE_KEY_SQL_STATE.equals(cause.getSQLState()) ||
+                        cause.getErrorCode() == MYSQL_DUPLICATE_ENTRY_ERROR_CODE);
+    }
+
+    private boolean lastRankChangedConcurrentlyInDatabase(MutableAccount account, AccountSnapshot currentSnapshot) {
+        return !currentSnapshot.getLastRank().equals(account.getInitialState().getLastRank());
     }
 
     private int findMelonDifference(MutableAccount account) {
@@ -24,19 +24,29 @@
 
 package li.l1t.lanatus.sql.account;
 
+import com.google.common.base.Preconditions;
 import li.l1t.common.collections.cache.OptionalCache;
 import li.l1t.common.collections.cache.OptionalGuavaCache;
+import li.l1t.common.sql.sane.scoped.JdbcScopedSession;
 import li.l1t.lanatus.api.account.AccountRepository;
 import li.l1t.lanatus.api.account.AccountSnapshot;
 import li.l1t.lanatus.api.account.MutableAccount;
 import li.l1t.lanatus.api.exception.AccountConflictException;
+import li.l1t.lanatus.api.exception.NotEnoughMelonsException;
 import li.l1t.lanatus.sql.AbstractSqlLanatusRepository;
 import li.l1t.lanatus.sql.SqlLanatusClient;
 import li.l1t.lanatus.sql.account.mutable.MutableAccountFactory;
 import li.l1t.lanatus.sql.account.snapshot.AccountSnapshotFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An account repository that uses SQL as a backend.
@@ -51,12 +61,18 @@ public class SqlAccountRepository extends AbstractSqlLanatusRepository implement
             new JdbcAccountCreator<>(snapshotFactory),
             client().sql()
     );
-    private final OptionalCache<UUID, AccountSnapshot> snapshotCache = new OptionalGuavaCache<>();
+    private final OptionalCache<UUID, AccountSnapshot> snapshotCache = new OptionalGuavaCache<>(
+            1, 5, TimeUnit.MINUTES, client().getBackgroundExecutor()
+    );
     private final JdbcAccountFetcher<MutableAccount> mutableFetcher = new JdbcAccountFetcher<>(
             new JdbcAccountCreator<>(new MutableAccountFactory()),
-            client().sql()
+            client().primarySql() //mutable accounts are read to be written
+    );
+    private final JdbcAccountWriter accountWriter = new JdbcAccountWriter(
+            client().primarySql(),
+            new JdbcAccountFetcher<>(new JdbcAccountCreator<>(snapshotFactory), client().primarySql()),
+            snapshotFactory
     );
-    private final JdbcAccountWriter accountWriter = new JdbcAccountWriter(client().sql(), snapshotFetcher);
 
     public SqlAccountRepository(SqlLanatusClient client) {
         super(client);
@@ -73,8 +89,94 @@ public class SqlAccountRepository extends AbstractSqlLanatusRepository implement
                 .orElseGet(() -> snapshotFactory.defaultInstance(playerId));
     }
 
+    /**
+     * Loads the account of a player into the cache, unless it is already cached, so that
+     * subsequent lookups for the player do not need to query the database. Intended for warming
+     * the cache while a player is logging in.
+     *
+     * @param playerId the unique id of the player
+     */
+    public void prefetchPlayer(UUID playerId) {
+        getOrFetchSnapshot(playerId);
+    }
+
     private Optional<AccountSnapshot> getOrFetchSnapshot(UUID playerId) {
-        return snapshotCache.getOrCompute(playerId, snapshotFetcher::fetchOptionally);
+        return snapshotCache.getOrCompute(
+                playerId, id -> client().readFor(id, () -> snapshotFetcher.fetchOptionally(id))
+        );
+    }
+
+    /**
+     * Finds the accounts of multiple players at once. Players that are not in the cache are
+     * fetched in bulk, using a single query for every hundred players, instead of one query per
+     * player. All fetched accounts are cached, as is the absence of an account for players that do
+     * not have one.
+     *
+     * @param playerIds the unique ids of the players to find accounts for
+     * @return a map from player id to account snapshot, containing only the players that have an
+     * account
+     */
+    public Map<UUID, AccountSnapshot> findAll(Collection<UUID> playerIds) {
+        Preconditions.checkNotNull(playerIds, "playerIds");
+        Map<UUID, AccountSnapshot> result = new HashMap<>();
+        List<UUID> uncachedIds = new ArrayList<>();
+        for (UUID playerId : new LinkedHashSet<>(playerIds)) {
+            Optional<Optional<AccountSnapshot>> cached = snapshotCache.get(playerId);
+            if (cached.isPresent()) {
+                cached.get().ifPresent(snapshot -> result.put(playerId, snapshot));
+            } else {
+                uncachedIds.add(playerId);
+            }
+        }
+        fetchAndCacheAll(uncachedIds, result);
+        return result;
+    }
+
+    private void fetchAndCacheAll(List<UUID> playerIds, Map<UUID, AccountSnapshot> result) {
+        Map<UUID, AccountSnapshot> fetched = client().readFor(playerIds, () -> snapshotFetcher.fetchAll(playerIds));
+        for (UUID playerId : playerIds) {
+            AccountSnapshot snapshot = fetched.get(playerId);
+            if (snapshot == null) {
+                snapshotCache.cacheAbsence(playerId);
+            } else {
+                snapshotCache.cacheValue(playerId, snapshot);
+                result.put(playerId, snapshot);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the account snapshot, or its absence, of a player is currently cached, i.e.
+     * whether {@link #find(UUID)} can be answered without querying the database.
+     *
+     * @param playerId the unique id of the player
+     * @return whether the player's account state is cached
+     */
+    public boolean isCached(UUID playerId) {
+        return snapshotCache.containsKey(playerId);
+    }
+
+    /**
+     * Finds the account of a player only if it is currently cached, never querying the database.
+     *
+     * @param playerId the unique id of the player
+     * @return an Optional containing the cached result of {@link #find(UUID)}, or an empty
+     * Optional if it is not cached
+     */
+    public Optional<Optional<AccountSnapshot>> findCached(UUID playerId) {
+        return snapshotCache.get(playerId);
+    }
+
+    /**
+     * Finds the account of a player only if it is currently cached, never querying the database.
+     *
+     * @param playerId the unique id of the player
+     * @return an Optional containing the cached result of {@link #findOrDefault(UUID)}, or an
+     * empty Optional if it is not cached
+     */
+    public Optional<AccountSnapshot> findCachedOrDefault(UUID playerId) {
+        return findCached(playerId)
+                .map(account -> account.orElseGet(() -> snapshotFactory.defaultInstance(playerId)));
     }
 
     @Override
@@ -91,8 +193,33 @@ public class SqlAccountRepository extends AbstractSqlLanatusRepository implement
 
     @Override
     public void save(MutableAccount localCopy) throws AccountConflictException {
-        accountWriter.write(localCopy);
-        snapshotCache.invalidateKey(localCopy.getPlayerId());
+        UUID playerId = localCopy.getPlayerId();
+        try (JdbcScopedSession scoped = client().transaction()) {
+            accountWriter.write(localCopy);
+            //changes are only visible to others after the outermost transaction has been committed
+            scoped.runAfterCommit(() -> client().invalidation().publishPlayer(playerId));
+            scoped.commitIfLast();
+        }
+        client().recordWriteFor(playerId);
+        snapshotCache.invalidateKey(playerId);
+    }
+
+    /**
+     * Atomically adds a delta to the melons count of a player's account, creating the account if
+     * it does not exist yet. Unlike modifying a {@link MutableAccount} and {@link
+     * #save(MutableAccount) saving} it, this does not need to read the account first in the common
+     * case and can therefore not conflict with concurrent changes. Other clients are not notified
+     * of the change, since this is intended to be used inside of larger transactions.
+     *
+     * @param playerId    the unique id of the player
+     * @param melonsDelta the amount of melons to add, or a negative amount to subtract
+     * @throws NotEnoughMelonsException if the account does not have enough melons to subtract the
+     *                                  delta
+     */
+    public void applyMelonsDelta(UUID playerId, int melonsDelta) throws NotEnoughMelonsException {
+        accountWriter.writeMelonsDelta(playerId, melonsDelta);
+        client().recordWriteFor(playerId);
+        snapshotCache.invalidateKey(playerId);
     }
 
     @Override
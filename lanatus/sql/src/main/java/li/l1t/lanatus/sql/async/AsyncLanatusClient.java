@@ -0,0 +1,207 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.async;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import li.l1t.lanatus.api.account.AccountSnapshot;
+import li.l1t.lanatus.api.position.Position;
+import li.l1t.lanatus.api.product.Product;
+import li.l1t.lanatus.api.purchase.Purchase;
+import li.l1t.lanatus.sql.SqlLanatusClient;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * An asynchronous facade for a SQL Lanatus client. All operations return futures that are
+ * completed on a dedicated, bounded executor, so that callers like the server main thread never
+ * block on the database. If the result of a lookup is already cached, the returned future is
+ * completed immediately on the calling thread instead, avoiding the thread hop. If the executor is
+ * saturated, futures are completed exceptionally with a {@link RejectedExecutionException}.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class AsyncLanatusClient implements AutoCloseable {
+    private final SqlLanatusClient client;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Creates a new asynchronous facade.
+     *
+     * @param client        the client to delegate to
+     * @param threadCount   the maximum amount of threads to run database operations on
+     * @param queueCapacity the maximum amount of operations waiting for a thread
+     */
+    public AsyncLanatusClient(SqlLanatusClient client, int threadCount, int queueCapacity) {
+        Preconditions.checkArgument(threadCount > 0, "threadCount must be positive: %s", threadCount);
+        Preconditions.checkArgument(queueCapacity > 0, "queueCapacity must be positive: %s", queueCapacity);
+        this.client = Preconditions.checkNotNull(client, "client");
+        this.executor = new ThreadPoolExecutor(
+                threadCount, threadCount, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("lanatus-async-%d").setDaemon(true).build()
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs an arbitrary operation on the client asynchronously.
+     *
+     * @param operation the operation to run
+     * @param <T>       the result type of the operation
+     * @return a future completed with the result of the operation
+     */
+    public <T> CompletableFuture<T> supply(Function<? super SqlLanatusClient, T> operation) {
+        Preconditions.checkNotNull(operation, "operation");
+        try {
+            return CompletableFuture.supplyAsync(() -> operation.apply(client), executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    private <T> CompletableFuture<T> fromCacheOrSupply(Supplier<Optional<T>> cachedLookup, Supplier<T> lookup) {
+        Optional<T> cached = cachedLookup.get(); //never loads, so that the calling thread never blocks
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        return supply(ignored -> lookup.get());
+    }
+
+    /**
+     * @param playerId the unique id of the player
+     * @return a future completed with the player's account, if it exists
+     * @see li.l1t.lanatus.api.account.AccountRepository#find(UUID)
+     */
+    public CompletableFuture<Optional<AccountSnapshot>> findAccount(UUID playerId) {
+        return fromCacheOrSupply(() -> client.accounts().findCached(playerId), () -> client.accounts().find(playerId));
+    }
+
+    /**
+     * @param playerId the unique id of the player
+     * @return a future completed with the player's account, or the default account if it does not
+     * exist
+     * @see li.l1t.lanatus.api.account.AccountRepository#findOrDefault(UUID)
+     */
+    public CompletableFuture<AccountSnapshot> findAccountOrDefault(UUID playerId) {
+        return fromCacheOrSupply(() -> client.accounts().findCachedOrDefault(playerId), () -> client.accounts().findOrDefault(playerId));
+    }
+
+    /**
+     * @param purchaseId the unique id of the purchase
+     * @return a future completed with the purchase, or completed exceptionally with a {@link
+     * li.l1t.lanatus.api.exception.NoSuchPurchaseException} if it does not exist
+     * @see li.l1t.lanatus.api.purchase.PurchaseRepository#findById(UUID)
+     */
+    public CompletableFuture<Purchase> findPurchase(UUID purchaseId) {
+        return fromCacheOrSupply(() -> client.purchases().findCached(purchaseId), () -> client.purchases().findById(purchaseId));
+    }
+
+    /**
+     * @param playerId the unique id of the player
+     * @return a future completed with all purchases of the player
+     * @see li.l1t.lanatus.api.purchase.PurchaseRepository#findByPlayer(UUID)
+     */
+    public CompletableFuture<Collection<Purchase>> findPurchasesByPlayer(UUID playerId) {
+        return supply(client -> client.purchases().findByPlayer(playerId));
+    }
+
+    /**
+     * @param purchaseId the unique id of the purchase
+     * @return a future completed with the position created by the purchase, if any
+     * @see li.l1t.lanatus.api.position.PositionRepository#findByPurchase(UUID)
+     */
+    public CompletableFuture<Optional<Position>> findPositionByPurchase(UUID purchaseId) {
+        return fromCacheOrSupply(() -> client.positions().findCachedByPurchase(purchaseId), () -> client.positions().findByPurchase(purchaseId));
+    }
+
+    /**
+     * @param playerId the unique id of the player
+     * @return a future completed with all positions owned by the player
+     * @see li.l1t.lanatus.api.position.PositionRepository#findAllByPlayer(UUID)
+     */
+    public CompletableFuture<Collection<Position>> findPositionsByPlayer(UUID playerId) {
+        return supply(client -> client.positions().findAllByPlayer(playerId));
+    }
+
+    /**
+     * @param playerId  the unique id of the player
+     * @param productId the unique id of the product
+     * @return a future completed with whether the player owns the product
+     * @see li.l1t.lanatus.api.position.PositionRepository#playerHasProduct(UUID, UUID)
+     */
+    public CompletableFuture<Boolean> playerHasProduct(UUID playerId, UUID productId) {
+        return fromCacheOrSupply(
+                () -> client.positions().findCachedPlayerHasProduct(playerId, productId),
+                () -> client.positions().playerHasProduct(playerId, productId)
+        );
+    }
+
+    /**
+     * @param productId the unique id of the product
+     * @return a future completed with the product, or completed exceptionally with a {@link
+     * li.l1t.lanatus.api.exception.NoSuchProductException} if it does not exist
+     * @see li.l1t.lanatus.api.product.ProductRepository#findById(UUID)
+     */
+    public CompletableFuture<Product> findProduct(UUID productId) {
+        return fromCacheOrSupply(() -> client.products().findCached(productId), () -> client.products().findById(productId));
+    }
+
+    /**
+     * Credits melons to a player asynchronously.
+     *
+     * @param playerId    the unique id of the player
+     * @param melonsCount the amount of melons to credit
+     * @param comment     the comment to store with the credit
+     * @return a future completed once the credit has been written, or queued if write-behind
+     * credits are enabled
+     */
+    public CompletableFuture<Void> creditMelons(UUID playerId, int melonsCount, String comment) {
+        return supply(client -> {
+            client.creditMelons(playerId).withMelonsCount(melonsCount).withComment(comment).build();
+            return null;
+        });
+    }
+
+    /**
+     * Stops accepting new operations. Operations that have already been submitted are still
+     * executed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.builder.melons;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import li.l1t.common.exception.DatabaseException;
+import li.l1t.common.sql.sane.scoped.ScopedSession;
+import li.l1t.lanatus.api.product.Product;
+import li.l1t.lanatus.sql.SqlLanatusClient;
+import li.l1t.lanatus.sql.purchase.SqlPurchaseRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A write-behind queue for melon credits. Instead of running a full purchase transaction for every
+ * credit, credits are collected in memory and written in a single transaction once a configurable
+ * interval has passed or a configurable amount of credits is pending. Each credit is still stored
+ * as a separate purchase, using multi-row inserts, but the accounts are updated only once per
+ * player. Caches of credited players are invalidated after each flush, so account data
+ * does not include pending credits until they have been flushed. Closing the queue flushes all
+ * pending credits.
+ * <p>
+ * If writing all credits at once fails, the credits of each player are written in a separate
+ * transaction, so that a credit that cannot be written does not hold back the credits of other
+ * players. Credits that have failed to be written {@value #MAX_WRITE_ATTEMPTS} times are dropped
+ * and logged with level {@link Level#SEVERE}.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class MelonCreditQueue implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(MelonCreditQueue.class.getName());
+    private static final int INSERT_CHUNK_SIZE = 100;
+    private static final int MAX_WRITE_ATTEMPTS = 5;
+    private final SqlLanatusClient client;
+    private final int flushThreshold;
+    private final ScheduledExecutorService executor;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Object queueLock = new Object();
+    private Map<UUID, List<QueuedCredit>> pendingCredits = new LinkedHashMap<>();
+    private int pendingCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a new credit queue and starts flushing it periodically.
+     *
+     * @param client         the client to write credits with
+     * @param flushInterval  the interval to flush pending credits at
+     * @param flushThreshold the amount of pending credits that causes an immediate flush
+     */
+    public MelonCreditQueue(SqlLanatusClient client, Duration flushInterval, int flushThreshold) {
+        Preconditions.checkArgument(!flushInterval.isNegative() && !flushInterval.isZero(),
+                "flushInterval must be positive: %s", flushInterval);
+        Preconditions.checkArgument(flushThreshold > 0, "flushThreshold must be positive: %s", flushThreshold);
+        this.client = Preconditions.checkNotNull(client, "client");
+        this.flushThreshold = flushThreshold;
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("lanatus-melon-credits-%d").setDaemon(true).build()
+        );
+        long intervalMillis = flushInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::flushAndLog, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a credit for writing with the next flush.
+     *
+     * @param playerId    the unique id of the player to credit
+     * @param melonsCount the positive amount of melons to credit
+     * @param comment     the comment to store with the credit
+     * @throws IllegalStateException if this queue has already been closed
+     */
+    public void enqueue(UUID playerId, int melonsCount, String comment) throws IllegalStateException {
+        Preconditions.checkNotNull(playerId, "playerId");
+        Preconditions.checkNotNull(comment, "comment");
+        Preconditions.checkArgument(melonsCount > 0, "melonsCount must be positive: %s", melonsCount);
+        synchronized (queueLock) { //close() sets closed under this lock, so its final flush sees this credit
+            Preconditions.checkState(!closed, "credit queue already closed");
+            pendingCredits.computeIfAbsent(playerId, id -> new ArrayList<>())
+                    .add(new QueuedCredit(melonsCount, comment));
+            if (++pendingCount >= flushThreshold) {
+                executor.execute(this::flushAndLog); //not shut down yet, close() shuts down after setting closed
+            }
+        }
+    }
+
+    /**
+     * @return the amount of credits that have not been written yet
+     */
+    public int getPendingCount() {
+        synchronized (queueLock) {
+            return pendingCount;
+        }
+    }
+
+    private void flushAndLog() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to flush melon credits, retrying with next flush", e);
+        }
+    }
+
+    /**
+     * Writes all pending credits to the database in a single transaction, blocking the calling
+     * thread. If that fails, the credits of each player are written in a separate transaction.
+     * Credits of players that could still not be written are queued again, unless they have
+     * already failed too often.
+     *
+     * @throws DatabaseException if a database error occurs while writing the credits of any player
+     */
+    public void flush() throws DatabaseException {
+        flushLock.lock();
+        try {
+            Map<UUID, List<QueuedCredit>> batch = drainPending();
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                writeBatch(batch);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Failed to write melon credits at once, writing each player separately", e);
+                writeEachPlayer(batch);
+                return;
+            }
+            batch.keySet().forEach(client::clearCachesFor);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void writeEachPlayer(Map<UUID, List<QueuedCredit>> batch) {
+        RuntimeException failure = null;
+        for (Map.Entry<UUID, List<QueuedCredit>> entry : batch.entrySet()) {
+            try {
+                writeBatch(Collections.singletonMap(entry.getKey(), entry.getValue()));
+                client.clearCachesFor(entry.getKey());
+            } catch (RuntimeException e) {
+                requeueOrDrop(entry.getKey(), entry.getValue(), e);
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Map<UUID, List<QueuedCredit>> drainPending() {
+        synchronized (queueLock) {
+            if (pendingCredits.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            Map<UUID, List<QueuedCredit>> batch = pendingCredits;
+            pendingCredits = new LinkedHashMap<>();
+            pendingCount = 0;
+            return batch;
+        }
+    }
+
+    private void requeueOrDrop(UUID playerId, List<QueuedCredit> credits, RuntimeException cause) {
+        List<QueuedCredit> retained = new ArrayList<>(credits.size());
+        for (QueuedCredit credit : credits) {
+            if (++credit.failedAttempts < MAX_WRITE_ATTEMPTS) {
+                retained.add(credit);
+            } else {
+                LOGGER.log(Level.SEVERE, String.format(
+                        "Dropping melon credit of %d melons to %s (comment: '%s') after %d failed attempts",
+                        credit.melonsCount, playerId, credit.comment, credit.failedAttempts
+                ), cause);
+            }
+        }
+        if (retained.isEmpty()) {
+            return;
+        }
+        synchronized (queueLock) {
+            pendingCredits.computeIfAbsent(playerId, id -> new ArrayList<>()).addAll(retained);
+            pendingCount += retained.size();
+        }
+    }
+
+    private void writeBatch(Map<UUID, List<QueuedCredit>> batch) {
+        Product product = SqlCreditMelonsBuilder.findOrRegisterProduct(client);
+        try (ScopedSession scoped = client.transaction()) {
+            batch.forEach(this::creditAccount); //purchases reference accounts
+            insertPurchases(batch, product.getUniqueId());
+            scoped.commitIfLast();
+        }
+    }
+
+    private void insertPurchases(Map<UUID, List<QueuedCredit>> batch, UUID productId) {
+        List<Object[]> rows = new ArrayList<>();
+        batch.forEach((playerId, credits) -> credits.forEach(
+                credit -> rows.add(credit.toPurchaseRow(playerId, productId))
+        ));
+        for (List<Object[]> chunk : Iterables.partition(rows, INSERT_CHUNK_SIZE)) {
+            insertPurchaseChunk(chunk);
+        }
+    }
+
+    private void insertPurchaseChunk(List<Object[]> rows) {
+        List<Object> parameters = new ArrayList<>(rows.size() * 7);
+        rows.forEach(row -> Collections.addAll(parameters, row));
+        String values = String.join(", ", Collections.nCopies(rows.size(), "(?, ?, ?, ?, ?, ?, ?)"));
+        client.sql().updateRaw("INSERT INTO " + SqlPurchaseRepository.TABLE_NAME + " " +
+                        "(id, player_uuid, product_id, created, data, comment, melonscost) " +
+                        "VALUES " + values,
+                parameters.toArray()
+        );
+    }
+
+    private void creditAccount(UUID playerId, List<QueuedCredit> credits) {
+        int melonsSum = credits.stream().mapToInt(credit -> credit.melonsCount).sum();
+        client.accounts().applyMelonsDelta(playerId, melonsSum);
+    }
+
+    /**
+     * Stops periodic flushing and writes all pending credits. Credits can no longer be queued
+     * after this method has been called.
+     *
+     * @throws DatabaseException if a database error occurs while flushing
+     */
+    @Override
+    public void close() throws DatabaseException {
+        synchronized (queueLock) {
+            closed = true;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private static class QueuedCredit {
+        private final int melonsCount;
+        private final String comment;
+        private final Instant creationInstant = Instant.now();
+        private int failedAttempts = 0; //guarded by flushLock
+
+        private QueuedCredit(int melonsCount, String comment) {
+            this.melonsCount = melonsCount;
+            this.comment = comment;
+        }
+
+        private Object[] toPurchaseRow(UUID playerId, UUID productId) {
+            return new Object[]{
+                    UUID.randomUUID().toString(), playerId.toString(), productId.toString(),
+                    creationInstant, "", comment, melonsCount * -1
+            };
+        }
+    }
+}
@@ -43,13 +43,28 @@ import java.util.UUID;
 public class SqlCreditMelonsBuilder implements CreditMelonsBuilder, LanatusConnected {
     private final UUID playerId;
     private final SqlLanatusClient client;
+    private final MelonCreditQueue creditQueue;
     private boolean executed = false;
     private int melonsCount = 0;
     private String comment = "";
 
     public SqlCreditMelonsBuilder(UUID playerId, SqlLanatusClient client) {
+        this(playerId, client, null);
+    }
+
+    /**
+     * Creates a new credit builder which queues positive credits in given queue instead of writing
+     * them immediately.
+     *
+     * @param playerId    the unique id of the player to credit
+     * @param client      the client to use
+     * @param creditQueue the queue to write positive credits with, or null to write them
+     *                    immediately
+     */
+    public SqlCreditMelonsBuilder(UUID playerId, SqlLanatusClient client, MelonCreditQueue creditQueue) {
         this.playerId = playerId;
         this.client = client;
+        this.creditQueue = creditQueue;
     }
 
     @Override
@@ -59,7 +74,12 @@ public class SqlCreditMelonsBuilder implements CreditMelonsBuilder, LanatusConne
 
     @Override
     public void build() throws IllegalStateException, DatabaseException {
-        Product product = findOrRegisterProduct();
+        if (creditQueue != null && melonsCount > 0) {
+            creditQueue.enqueue(playerId, melonsCount, comment);
+            executed = true;
+            return;
+        }
+        Product product = findOrRegisterProduct(client);
         client().startPurchase(playerId)
                 .withProduct(product)
                 .withMelonsCost(melonsCount * -1)
@@ -68,8 +88,8 @@ public class SqlCreditMelonsBuilder implements CreditMelonsBuilder, LanatusConne
         executed = true;
     }
 
-    private Product findOrRegisterProduct() {
-        return client().products().registration(PRODUCT_ID)
+    static Product findOrRegisterProduct(LanatusClient client) {
+        return client.products().registration(PRODUCT_ID)
                 .inModule("la-core")
                 .withDisplayName("Melonen")
                 .withIcon("melon")
@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.invalidation;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An invalidation transport that sends messages as UDP datagrams to a fixed set of peers, for
+ * example all servers of a network. No external services are required, but each server needs to
+ * listen on a port reachable by the others. Messages are small enough to fit into a single
+ * datagram and are not acknowledged, so lost messages are not retried. Messages are only accepted
+ * from the addresses of the configured peers, so peers need to be configured with the address and
+ * port they send from, i.e. their bind address.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class DatagramInvalidationTransport implements InvalidationTransport {
+    private static final Logger LOGGER = Logger.getLogger(DatagramInvalidationTransport.class.getName());
+    private static final int MAX_PACKET_SIZE = 512;
+    private final DatagramSocket socket;
+    private final List<InetSocketAddress> peers;
+    private final Set<SocketAddress> peerAddresses;
+    private final List<Consumer<InvalidationMessage>> handlers = new CopyOnWriteArrayList<>();
+    private final Thread receiverThread;
+
+    /**
+     * Creates a new datagram transport and starts listening for messages.
+     *
+     * @param bindAddress the local address to listen on
+     * @param peers       the addresses of all peers to send messages to and accept messages
+     *                    from, may include this transport's own address
+     * @throws SocketException if the socket cannot be bound
+     */
+    public DatagramInvalidationTransport(InetSocketAddress bindAddress, Collection<InetSocketAddress> peers)
+            throws SocketException {
+        Preconditions.checkNotNull(bindAddress, "bindAddress");
+        this.peers = ImmutableList.copyOf(Preconditions.checkNotNull(peers, "peers"));
+        this.peerAddresses = ImmutableSet.copyOf(this.peers);
+        this.socket = new DatagramSocket(bindAddress);
+        this.receiverThread = new Thread(this::receiveLoop, "lanatus-invalidation-receiver");
+        this.receiverThread.setDaemon(true);
+        this.receiverThread.start();
+    }
+
+    private void receiveLoop() {
+        byte[] buffer = new byte[MAX_PACKET_SIZE];
+        while (!socket.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+                handlePacket(packet);
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    LOGGER.log(Level.WARNING, "Failed to receive invalidation message", e);
+                }
+            }
+        }
+    }
+
+    private void handlePacket(DatagramPacket packet) {
+        if (!peerAddresses.contains(packet.getSocketAddress())) {
+            LOGGER.fine(() -> "Ignoring invalidation message from unknown address " + packet.getSocketAddress());
+            return;
+        }
+        String serialized = new String(packet.getData(), packet.getOffset(), packet.getLength(), StandardCharsets.UTF_8);
+        InvalidationMessage message;
+        try {
+            message = InvalidationMessage.parse(serialized);
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.FINE, "Ignoring malformed invalidation message from " + packet.getSocketAddress(), e);
+            return;
+        }
+        for (Consumer<InvalidationMessage> handler : handlers) {
+            try {
+                handler.accept(message);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to handle invalidation message " + message, e);
+            }
+        }
+    }
+
+    @Override
+    public void publish(InvalidationMessage message) {
+        Preconditions.checkNotNull(message, "message");
+        byte[] data = message.serialize().getBytes(StandardCharsets.UTF_8);
+        for (InetSocketAddress peer : peers) {
+            try {
+                socket.send(new DatagramPacket(data, data.length, peer));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to send invalidation message to " + peer, e);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<InvalidationMessage> handler) {
+        handlers.add(Preconditions.checkNotNull(handler, "handler"));
+    }
+
+    @Override
+    public void unsubscribe(Consumer<InvalidationMessage> handler) {
+        handlers.remove(handler);
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+        handlers.clear();
+        receiverThread.interrupt();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.invalidation;
+
+import com.google.common.base.Preconditions;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Connects a Lanatus client to an invalidation transport, publishing local changes to other
+ * clients and applying their changes to local caches. Messages sent by this bus are ignored when
+ * they are received back. As long as no transport is connected, publishing does nothing.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class InvalidationBus implements AutoCloseable {
+    private final UUID originId = UUID.randomUUID();
+    private final Consumer<UUID> playerInvalidator;
+    private final Consumer<UUID> productInvalidator;
+    private final Consumer<InvalidationMessage> handler = this::handle;
+    private volatile InvalidationTransport transport;
+
+    /**
+     * Creates a new bus that is not connected to any transport.
+     *
+     * @param playerInvalidator  the function invalidating local caches for a player id
+     * @param productInvalidator the function invalidating local caches for a product id
+     */
+    public InvalidationBus(Consumer<UUID> playerInvalidator, Consumer<UUID> productInvalidator) {
+        this.playerInvalidator = Preconditions.checkNotNull(playerInvalidator, "playerInvalidator");
+        this.productInvalidator = Preconditions.checkNotNull(productInvalidator, "productInvalidator");
+    }
+
+    /**
+     * Connects this bus to a transport, disconnecting it from the previous one, if any. The
+     * transport is not closed by this bus.
+     *
+     * @param transport the transport to use
+     */
+    public synchronized void connect(InvalidationTransport transport) {
+        Preconditions.checkNotNull(transport, "transport");
+        disconnect();
+        transport.subscribe(handler);
+        this.transport = transport;
+    }
+
+    /**
+     * Disconnects this bus from its current transport, if any.
+     */
+    public synchronized void disconnect() {
+        if (transport != null) {
+            transport.unsubscribe(handler);
+            transport = null;
+        }
+    }
+
+    /**
+     * @return whether this bus is currently connected to a transport
+     */
+    public boolean isConnected() {
+        return transport != null;
+    }
+
+    /**
+     * Notifies other clients that data associated with given player has changed.
+     *
+     * @param playerId the unique id of the player
+     */
+    public void publishPlayer(UUID playerId) {
+        publish(InvalidationMessage.Type.PLAYER, playerId);
+    }
+
+    /**
+     * Notifies other clients that given product has been created or changed.
+     *
+     * @param productId the unique id of the product
+     */
+    public void publishProduct(UUID productId) {
+        publish(InvalidationMessage.Type.PRODUCT, productId);
+    }
+
+    private void publish(InvalidationMessage.Type type, UUID targetId) {
+        Preconditions.checkNotNull(targetId, "targetId");
+        InvalidationTransport currentTransport = transport;
+        if (currentTransport != null) {
+            currentTransport.publish(new InvalidationMessage(type, originId, targetId));
+        }
+    }
+
+    private void handle(InvalidationMessage message) {
+        if (originId.equals(message.getOriginId())) {
+            return;
+        }
+        switch (message.getType()) {
+            case PLAYER:
+                playerInvalidator.accept(message.getTargetId());
+                break;
+            case PRODUCT:
+                productInvalidator.accept(message.getTargetId());
+                break;
+            default:
+                throw new AssertionError("unknown invalidation type: " + message.getType());
+        }
+    }
+
+    @Override
+    public void close() {
+        disconnect();
+    }
+}
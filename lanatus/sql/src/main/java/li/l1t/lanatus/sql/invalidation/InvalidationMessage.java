@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.invalidation;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * An immutable message notifying other Lanatus clients that cached data has changed in the
+ * database and needs to be invalidated.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public class InvalidationMessage {
+    private static final String FORMAT_PREFIX = "lanatus-inv1";
+    private static final String SEPARATOR = ";";
+    private final Type type;
+    private final UUID originId;
+    private final UUID targetId;
+
+    /**
+     * Creates a new invalidation message.
+     *
+     * @param type     what kind of data has changed
+     * @param originId the unique id of the bus that sent this message
+     * @param targetId the unique id of the changed player or product
+     */
+    public InvalidationMessage(Type type, UUID originId, UUID targetId) {
+        this.type = Preconditions.checkNotNull(type, "type");
+        this.originId = Preconditions.checkNotNull(originId, "originId");
+        this.targetId = Preconditions.checkNotNull(targetId, "targetId");
+    }
+
+    /**
+     * Parses a message from its {@link #serialize() serialised} form.
+     *
+     * @param serialized the serialised message
+     * @return the parsed message
+     * @throws IllegalArgumentException if the input is not a valid serialised message
+     */
+    public static InvalidationMessage parse(String serialized) throws IllegalArgumentException {
+        Preconditions.checkNotNull(serialized, "serialized");
+        String[] parts = serialized.split(SEPARATOR);
+        Preconditions.checkArgument(parts.length == 4 && FORMAT_PREFIX.equals(parts[0]),
+                "not an invalidation message: %s", serialized);
+        return new InvalidationMessage(
+                Type.valueOf(parts[1]), UUID.fromString(parts[2]), UUID.fromString(parts[3])
+        );
+    }
+
+    /**
+     * @return a compact string representation of this message that can be read back using {@link
+     * #parse(String)}
+     */
+    public String serialize() {
+        return String.join(SEPARATOR, FORMAT_PREFIX, type.name(), originId.toString(), targetId.toString());
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public UUID getOriginId() {
+        return originId;
+    }
+
+    public UUID getTargetId() {
+        return targetId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        InvalidationMessage that = (InvalidationMessage) o;
+        return type == that.type &&
+                originId.equals(that.originId) &&
+                targetId.equals(that.targetId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, originId, targetId);
+    }
+
+    @Override
+    public String toString() {
+        return "InvalidationMessage{" +
+                "type=" + type +
+                ", originId=" + originId +
+                ", targetId=" + targetId +
+                '}';
+    }
+
+    /**
+     * The kinds of data that can be invalidated.
+     */
+    public enum Type {
+        /**
+         * Any data associated with a player has changed, the target id is the player's id.
+         */
+        PLAYER,
+        /**
+         * A product has been created or changed, the target id is the product's id.
+         */
+        PRODUCT
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * Transports invalidation messages between Lanatus clients, possibly running on different servers.
+ * Transports deliver messages on a best-effort basis, so caches should still expire eventually.
+ * Implementations must be thread-safe.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+public interface InvalidationTransport extends AutoCloseable {
+    /**
+     * Sends a message to all subscribers of this transport, possibly including the sender.
+     *
+     * @param message the message to send
+     */
+    void publish(InvalidationMessage message);
+
+    /**
+     * Registers a handler that receives all messages arriving at this transport. Handlers may be
+     * called on any thread.
+     *
+     * @param handler the handler to register
+     */
+    void subscribe(Consumer<InvalidationMessage> handler);
+
+    /**
+     * Removes a handler previously registered with {@link #subscribe(Consumer)}.
+     *
+     * @param handler the handler to remove
+     */
+    void unsubscribe(Consumer<InvalidationMessage> handler);
+
+    /**
+     * Releases all resources held by this transport. Messages can no longer be sent or received
+     * afterwards.
+     */
+    @Override
+    void close();
+}
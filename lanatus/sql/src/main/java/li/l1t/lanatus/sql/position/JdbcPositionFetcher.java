@@ -31,7 +31,9 @@ import li.l1t.lanatus.api.position.Position;
 
 import java.sql.SQLException;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -74,6 +76,26 @@ class JdbcPositionFetcher extends li.l1t.common.sql.sane.util.AbstractJdbcFetche
         return select("player_uuid=?", playerId.toString());
     }
 
+    /**
+     * Fetches only the ids of the products a player owns, without creating any positions.
+     *
+     * @param playerId the unique id of the player
+     * @return the ids of the player's products
+     */
+    public Set<UUID> fetchProductIdsByPlayer(UUID playerId) {
+        try (QueryResult result = sql().query("SELECT DISTINCT product_id " +
+                "FROM " + SqlPositionRepository.TABLE_NAME + " " +
+                "WHERE player_uuid=?", playerId.toString())) {
+            Set<UUID> productIds = new HashSet<>();
+            while (proceedToNextRow(result)) {
+                productIds.add(UUID.fromString(result.rs().getString("product_id")));
+            }
+            return productIds;
+        } catch (SQLException e) {
+            throw DatabaseException.wrap(e);
+        }
+    }
+
     @Override
     protected String buildSelect(String whereClause) {
         return "SELECT purchase_id, player_uuid, product_id, data " +
@@ -0,0 +1,77 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.position;
+
+import com.google.common.base.Preconditions;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps product ids to dense integer indices, so that the set of products owned by a player can be
+ * stored as a compact bit set and ownership checks are a single bit test. Indices are assigned
+ * on first use and never reused, so bit sets stay valid for the lifetime of this index.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+class ProductBitIndex {
+    private static final int UNKNOWN = -1;
+    private final ConcurrentMap<UUID, Integer> indices = new ConcurrentHashMap<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    /**
+     * Creates a bit set with the bits of given products set.
+     *
+     * @param productIds the products to include
+     * @return a new bit set that must not be modified afterwards
+     */
+    BitSet toBitSet(Collection<UUID> productIds) {
+        Preconditions.checkNotNull(productIds, "productIds");
+        BitSet bits = new BitSet();
+        productIds.forEach(productId -> bits.set(indexOf(productId)));
+        return bits;
+    }
+
+    /**
+     * Checks whether the bit of given product is set in a bit set created by this index.
+     *
+     * @param bits      the bit set
+     * @param productId the product to check for
+     * @return whether the product is included in the bit set
+     */
+    boolean contains(BitSet bits, UUID productId) {
+        int index = indices.getOrDefault(productId, UNKNOWN);
+        return index != UNKNOWN && bits.get(index);
+    }
+
+    private int indexOf(UUID productId) {
+        return indices.computeIfAbsent(productId, id -> nextIndex.getAndIncrement());
+    }
+}
@@ -24,7 +24,6 @@
 
 package li.l1t.lanatus.sql.position;
 
-import com.google.common.base.VerifyException;
 import li.l1t.common.collections.cache.GuavaMapCache;
 import li.l1t.common.collections.cache.MapCache;
 import li.l1t.common.collections.cache.OptionalCache;
@@ -36,28 +35,38 @@ import li.l1t.lanatus.api.purchase.Purchase;
 import li.l1t.lanatus.sql.AbstractSqlLanatusRepository;
 import li.l1t.lanatus.sql.SqlLanatusClient;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * Simple implementation of a position repository based on a JDBC SQL data source. Caches positions
- * by purchase id and product ids by player. Caches are automatically invalidated some time after
- * they have been updated from the data source.
+ * by purchase id and the products owned by each player as a bit set, so that ownership checks do
+ * not need to create any positions. Caches are automatically invalidated some time after they
+ * have been updated from the data source.
  *
  * @author <a href="https://l1t.li/">Literallie</a>
  * @since 2016-10-10
  */
 public class SqlPositionRepository extends AbstractSqlLanatusRepository implements PositionRepository {
     public static final String TABLE_NAME = "mt_main.lanatus_position";
-    private final OptionalCache<UUID, Position> purchasePositionCache = new OptionalGuavaCache<>();
+    private static final long MAX_CACHED_POSITIONS = 10_000;
+    private static final long MAX_CACHED_PLAYER_PRODUCT_WORDS = 50_000;
+    private final OptionalCache<UUID, Position> purchasePositionCache = new OptionalGuavaCache<>(
+            5, TimeUnit.MINUTES, MAX_CACHED_POSITIONS
+    );
     private final JdbcPositionFetcher fetcher = new JdbcPositionFetcher(
             new JdbcPositionCreator(client().products()), client().sql()
     );
     private final JdbcPositionWriter writer = new JdbcPositionWriter(client().sql());
-    private final MapCache<UUID, Set<UUID>> playerPositionsCache = new GuavaMapCache<>();
+    private final ProductBitIndex productIndex = new ProductBitIndex();
+    private final MapCache<UUID, BitSet> playerProductsCache = new GuavaMapCache<>(
+            5, TimeUnit.MINUTES, MAX_CACHED_PLAYER_PRODUCT_WORDS, (playerId, bits) -> 1 + bits.size() / Long.SIZE
+    );
 
     public SqlPositionRepository(SqlLanatusClient client) {
         super(client);
@@ -70,23 +79,83 @@ public class SqlPositionRepository extends AbstractSqlLanatusRepository implemen
 
     @Override
     public Collection<Position> findAllByPlayer(UUID playerId) {
-        Collection<Position> positions = fetcher.fetchAllByPlayer(playerId);
-        Set<UUID> positionIds = positions.stream()
+        Collection<Position> positions = client().readFor(playerId, () -> fetcher.fetchAllByPlayer(playerId));
+        Set<UUID> productIds = positions.stream()
                 .map(Position::getProduct)
                 .map(Product::getUniqueId)
                 .collect(Collectors.toSet());
-        playerPositionsCache.cache(playerId, positionIds);
+        playerProductsCache.cache(playerId, productIndex.toBitSet(productIds));
         return positions;
     }
 
     @Override
     public boolean playerHasProduct(UUID playerId, UUID productId) {
-        if (!playerPositionsCache.containsKey(playerId)) {
-            findAllByPlayer(playerId); //adds to cache
-        }
-        Set<UUID> playerProducts = playerPositionsCache.get(playerId)
-                .orElseThrow(VerifyException::new);
-        return playerProducts.contains(productId);
+        return productIndex.contains(getOrFetchPlayerProducts(playerId), productId);
+    }
+
+    /**
+     * Loads the products owned by a player into the cache, unless they are already cached, so
+     * that subsequent calls to {@link #playerHasProduct(UUID, UUID)} for the player do not need to
+     * query the database. Intended for warming the cache while a player is logging in.
+     *
+     * @param playerId the unique id of the player
+     */
+    public void prefetchPlayer(UUID playerId) {
+        getOrFetchPlayerProducts(playerId);
+    }
+
+    private BitSet getOrFetchPlayerProducts(UUID playerId) {
+        return playerProductsCache.getOrCompute(
+                playerId, id -> productIndex.toBitSet(client().readFor(id, () -> fetcher.fetchProductIdsByPlayer(id)))
+        );
+    }
+
+    /**
+     * Checks whether the products owned by a player are currently cached, i.e. whether {@link
+     * #playerHasProduct(UUID, UUID)} can be answered without querying the database.
+     *
+     * @param playerId the unique id of the player
+     * @return whether the player's products are cached
+     */
+    public boolean isPlayerCached(UUID playerId) {
+        return playerProductsCache.containsKey(playerId);
+    }
+
+    /**
+     * Checks whether a player owns a product only if the player's products are currently cached,
+     * never querying the database.
+     *
+     * @param playerId  the unique id of the player
+     * @param productId the unique id of the product
+     * @return an Optional containing the result of {@link #playerHasProduct(UUID, UUID)}, or an
+     * empty Optional if the player's products are not cached
+     */
+    public Optional<Boolean> findCachedPlayerHasProduct(UUID playerId, UUID productId) {
+        return playerProductsCache.get(playerId)
+                .map(products -> productIndex.contains(products, productId));
+    }
+
+    /**
+     * Checks whether the position for a purchase, or its absence, is currently cached, i.e.
+     * whether {@link #findByPurchase(UUID)} can be answered without querying the database.
+     *
+     * @param purchaseId the unique id of the purchase
+     * @return whether the purchase's position is cached
+     */
+    public boolean isPurchaseCached(UUID purchaseId) {
+        return purchasePositionCache.containsKey(purchaseId);
+    }
+
+    /**
+     * Finds the position for a purchase only if it, or its absence, is currently cached, never
+     * querying the database.
+     *
+     * @param purchaseId the unique id of the purchase
+     * @return an Optional containing the cached result of {@link #findByPurchase(UUID)}, or an
+     * empty Optional if it is not cached
+     */
+    public Optional<Optional<Position>> findCachedByPurchase(UUID purchaseId) {
+        return purchasePositionCache.get(purchaseId);
     }
 
     /**
@@ -98,21 +167,21 @@ public class SqlPositionRepository extends AbstractSqlLanatusRepository implemen
     public Position createFromPurchase(Purchase purchase) {
         SqlPosition position = new SqlPosition(purchase);
         writer.write(position);
-        playerPositionsCache.invalidateKey(purchase.getPlayerId());
+        purchasePositionCache.invalidateKey(purchase.getUniqueId());
+        playerProductsCache.invalidateKey(purchase.getPlayerId());
         return position;
     }
 
     @Override
     public void clearCache() {
         purchasePositionCache.clear();
+        playerProductsCache.clear();
     }
 
     @Override
     public void clearCachesFor(UUID playerId) {
-        playerPositionsCache.get(playerId)
-                .ifPresent(set -> set.forEach(purchasePositionCache::invalidateKey));
-        //we don't need to scan the player caches for references to ^ because positions only belong
-        //to a single player, the player we're clearing v
-        playerPositionsCache.invalidateKey(playerId);
+        //positions are immutable once written and createFromPurchase() invalidates the purchase
+        //entry, so only the derived product set of the player can be stale
+        playerProductsCache.invalidateKey(playerId);
     }
 }
@@ -24,6 +24,8 @@
 
 package li.l1t.lanatus.sql.product;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import li.l1t.common.exception.DatabaseException;
 import li.l1t.common.sql.sane.SaneSql;
 import li.l1t.common.sql.sane.result.QueryResult;
@@ -33,6 +35,7 @@ import li.l1t.common.sql.sane.util.JdbcEntityCreator;
 
 import java.sql.SQLException;
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -42,6 +45,8 @@ import java.util.UUID;
  * @since 2016-10-10
  */
 class JdbcProductFetcher extends li.l1t.common.sql.sane.util.AbstractJdbcFetcher<Product> {
+    private static final int BULK_CHUNK_SIZE = 100;
+
     JdbcProductFetcher(JdbcEntityCreator<Product> creator, SaneSql saneSql) {
         super(creator, saneSql);
     }
@@ -62,6 +67,29 @@ class JdbcProductFetcher extends li.l1t.common.sql.sane.util.AbstractJdbcFetcher
         return select("WHERE id=?", productId.toString());
     }
 
+    /**
+     * Fetches multiple products by id, issuing a query for every hundred ids. Ids that do not
+     * belong to a product are ignored.
+     *
+     * @param productIds the unique ids of the products to fetch
+     * @return the products that exist
+     */
+    public Collection<Product> fetchAllById(Collection<UUID> productIds) {
+        ImmutableList.Builder<Product> products = ImmutableList.builder();
+        for (List<UUID> chunk : Iterables.partition(productIds, BULK_CHUNK_SIZE)) {
+            try (QueryResult result = selectByIds(chunk)) {
+                products.addAll(collectAll(result));
+            } catch (SQLException e) {
+                throw DatabaseException.wrap(e);
+            }
+        }
+        return products.build();
+    }
+
+    private QueryResult selectByIds(List<UUID> productIds) {
+        return select("WHERE " + buildInCondition("id", productIds.size()), uuidParameters(productIds));
+    }
+
     @Override
     protected String buildSelect(String whereClause) {
         return "SELECT id, module, displayname, description, icon, melonscost, active, permanent " +
@@ -69,6 +97,19 @@ class JdbcProductFetcher extends li.l1t.common.sql.sane.util.AbstractJdbcFetcher
                 whereClause;
     }
 
+    /**
+     * Fetches all products that exist, regardless of their state.
+     *
+     * @return all products
+     */
+    public Collection<Product> fetchAll() {
+        try (QueryResult result = select("")) {
+            return collectAll(result);
+        } catch (SQLException e) {
+            throw DatabaseException.wrap(e);
+        }
+    }
+
     public Collection<Product> fetchByQuery(ProductQuery query) {
         try (QueryResult result = selectByQuery(query)) {
             return collectAll(result);
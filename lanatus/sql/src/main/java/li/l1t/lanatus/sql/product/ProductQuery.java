@@ -64,11 +64,12 @@ class ProductQuery {
             addCondition("module = ?", builder.getModule());
         }
         if (!builder.getSearchTerm().isEmpty()) {
+            String likeTerm = escapeLikeWildcards(builder.getSearchTerm());
             addCondition(
-                    "module LIKE CONCAT('%', ?, '%') OR " +
+                    "(module LIKE CONCAT('%', ?, '%') OR " +
                             "displayname LIKE CONCAT('%', ?, '%') OR " +
-                            "description LIKE CONCAT('%', ?, '%')",
-                    builder.getSearchTerm(), builder.getSearchTerm(), builder.getSearchTerm()
+                            "description LIKE CONCAT('%', ?, '%'))",
+                    likeTerm, likeTerm, likeTerm
             );
         }
         if (builder.isActiveOnly()) {
@@ -76,6 +77,16 @@ class ProductQuery {
         }
     }
 
+    /**
+     * Escapes the wildcards of a LIKE pattern using MySQL's default escape character, so that the
+     * database matches search terms literally, like the product search index does.
+     */
+    private static String escapeLikeWildcards(String term) {
+        return term.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
     private void addCondition(String whereClause, Object... params) {
         andConditions.add(whereClause);
         Arrays.stream(params).forEach(parameters::add);
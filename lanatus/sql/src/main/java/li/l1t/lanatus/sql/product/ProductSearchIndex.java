@@ -0,0 +1,244 @@
+/*
+ * MIT License
+ *
+ * Copyright (C) 2013 - 2017 Philipp Nowak (https://github.com/xxyy) and contributors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package li.l1t.lanatus.sql.product;
+
+import com.google.common.base.Preconditions;
+import li.l1t.lanatus.api.product.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * An in-memory search index over all products, answering product queries without accessing the
+ * database. Module name, display name and description of each product are split into trigrams,
+ * which are mapped to the products containing them. A search term is looked up by intersecting
+ * the products of all its trigrams and then checking the remaining candidates for the actual term,
+ * so that results are the same as with a case-insensitive {@code LIKE '%term%'} query. Terms
+ * shorter than three characters are checked against all products.
+ * <p>
+ * The index starts out cold and has to be {@link #rebuild(Collection, long) built} from a complete
+ * collection of products before it can answer queries. It becomes cold again when {@link
+ * #invalidate() invalidated} or when it has not been rebuilt for the expiry duration, so that
+ * changes made by other clients are eventually picked up. Since reading all products takes a
+ * while, a rebuild is only applied if the index has not been modified since the products were
+ * read, so that a product added meanwhile is never lost.
+ *
+ * @author <a href="https://l1t.li/">Literallie</a>
+ * @since 2017-09-07
+ */
+class ProductSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long expiryNanos;
+    private final Map<UUID, Product> products = new HashMap<>();
+    private final Map<String, Set<UUID>> productIdsByGram = new HashMap<>();
+    private boolean warm = false;
+    private long builtAtNanos;
+    private long modificationCount = 0;
+
+    ProductSearchIndex(long expiryDuration, TimeUnit expiryUnit) {
+        Preconditions.checkArgument(expiryDuration > 0, "expiryDuration must be positive: %s", expiryDuration);
+        this.expiryNanos = expiryUnit.toNanos(expiryDuration);
+    }
+
+    /**
+     * @return whether this index currently holds all products and can answer queries
+     */
+    boolean isWarm() {
+        lock.readLock().lock();
+        try {
+            return isWarmUnlocked();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isWarmUnlocked() {
+        return warm && System.nanoTime() - builtAtNanos < expiryNanos;
+    }
+
+    /**
+     * @return a counter of modifications to this index, to be passed to {@link
+     * #rebuild(Collection, long)} when reading the products to rebuild from
+     */
+    long getModificationCount() {
+        lock.readLock().lock();
+        try {
+            return modificationCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the contents of this index with given products and makes it warm, unless the index
+     * has been modified since given modification count was obtained, in which case the products
+     * may be outdated.
+     *
+     * @param allProducts               all products that currently exist
+     * @param expectedModificationCount the {@link #getModificationCount() modification count}
+     *                                  obtained before reading the products
+     * @return whether the index has been rebuilt
+     */
+    boolean rebuild(Collection<Product> allProducts, long expectedModificationCount) {
+        Preconditions.checkNotNull(allProducts, "allProducts");
+        lock.writeLock().lock();
+        try {
+            if (modificationCount != expectedModificationCount) {
+                return false;
+            }
+            products.clear();
+            productIdsByGram.clear();
+            allProducts.forEach(this::addUnlocked);
+            warm = true;
+            builtAtNanos = System.nanoTime();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a newly created product to this index. Does nothing if the index is cold, since it
+     * will be rebuilt from the database anyways.
+     *
+     * @param product the product to add
+     */
+    void add(Product product) {
+        Preconditions.checkNotNull(product, "product");
+        lock.writeLock().lock();
+        try {
+            modificationCount++;
+            if (warm) {
+                addUnlocked(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addUnlocked(Product product) {
+        UUID productId = product.getUniqueId();
+        products.put(productId, product);
+        for (String gram : gramsOf(product)) {
+            productIdsByGram.computeIfAbsent(gram, key -> new HashSet<>()).add(productId);
+        }
+    }
+
+    private Set<String> gramsOf(Product product) {
+        Set<String> grams = new HashSet<>();
+        addGramsOf(normalise(product.getModule()), grams);
+        addGramsOf(normalise(product.getDisplayName()), grams);
+        addGramsOf(normalise(product.getDescription()), grams);
+        return grams;
+    }
+
+    private void addGramsOf(String text, Collection<String> target) {
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            target.add(text.substring(i, i + GRAM_LENGTH));
+        }
+    }
+
+    /**
+     * Makes this index cold, causing it to be rebuilt before answering the next query.
+     */
+    void invalidate() {
+        lock.writeLock().lock();
+        try {
+            modificationCount++;
+            warm = false;
+            products.clear();
+            productIdsByGram.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Answers given query from this index.
+     *
+     * @param query the query to answer
+     * @return the products matching the query
+     * @throws IllegalStateException if this index is cold
+     */
+    Collection<Product> query(SqlProductQueryBuilder query) throws IllegalStateException {
+        Preconditions.checkNotNull(query, "query");
+        String searchTerm = normalise(query.getSearchTerm());
+        lock.readLock().lock();
+        try {
+            Preconditions.checkState(isWarmUnlocked(), "search index is cold");
+            return findCandidates(searchTerm).stream()
+                    .map(products::get)
+                    .filter(product -> query.getModule() == null || query.getModule().equalsIgnoreCase(product.getModule()))
+                    .filter(product -> !query.isActiveOnly() || product.isActive())
+                    .filter(product -> searchTerm.isEmpty() || contains(product, searchTerm))
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Collection<UUID> findCandidates(String searchTerm) {
+        if (searchTerm.length() < GRAM_LENGTH) {
+            return products.keySet();
+        }
+        List<Set<UUID>> postings = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= searchTerm.length(); i++) {
+            Set<UUID> productIds = productIdsByGram.get(searchTerm.substring(i, i + GRAM_LENGTH));
+            if (productIds == null) {
+                return Collections.emptySet();
+            }
+            postings.add(productIds);
+        }
+        postings.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        Set<UUID> candidates = new HashSet<>(postings.get(0));
+        for (int i = 1; i < postings.size() && !candidates.isEmpty(); i++) {
+            candidates.retainAll(postings.get(i));
+        }
+        return candidates;
+    }
+
+    private boolean contains(Product product, String searchTerm) {
+        return normalise(product.getModule()).contains(searchTerm) ||
+                normalise(product.getDisplayName()).contains(searchTerm) ||
+                normalise(product.getDescription()).contains(searchTerm);
+    }
+
+    private String normalise(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+}
@@ -85,7 +85,7 @@ class SqlProductQueryBuilder implements ProductQueryBuilder {
 
     @Override
     public Collection<Product> execute() {
-        return repository.execute(new ProductQuery(this));
+        return repository.execute(this);
     }
 
     String getModule() {
@@ -28,6 +28,7 @@ import com.google.common.base.Preconditions;
 import li.l1t.common.collections.cache.IdCache;
 import li.l1t.common.collections.cache.MapIdCache;
 import li.l1t.common.misc.Identifiable;
+import li.l1t.common.sql.sane.scoped.JdbcScopedSession;
 import li.l1t.lanatus.api.exception.NoSuchProductException;
 import li.l1t.lanatus.api.product.Product;
 import li.l1t.lanatus.api.product.ProductQueryBuilder;
@@ -37,21 +38,35 @@ import li.l1t.lanatus.sql.AbstractSqlLanatusRepository;
 import li.l1t.lanatus.sql.SqlLanatusClient;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Simple repository for products from a JDBC SQL database. Provides a cache by id.
+ * Simple repository for products from a JDBC SQL database. Provides a cache by id and an
+ * in-memory search index for product queries.
  *
  * @author <a href="https://l1t.li/">Literallie</a>
  * @since 2016-10-10
  */
 public class SqlProductRepository extends AbstractSqlLanatusRepository implements ProductRepository {
     public static final String TABLE_NAME = "mt_main.lanatus_product";
+    private static final Logger LOGGER = Logger.getLogger(SqlProductRepository.class.getName());
     private final IdCache<UUID, Product> cache = new MapIdCache<>(Identifiable::getUniqueId);
     private final JdbcProductFetcher fetcher = new JdbcProductFetcher(
             new JdbcProductCreator(), client().sql()
     );
     private final JdbcProductWriter writer = new JdbcProductWriter(client().sql());
+    private final ProductSearchIndex searchIndex = new ProductSearchIndex(5, TimeUnit.MINUTES);
+    private final AtomicBoolean warmingSearchIndex = new AtomicBoolean(false);
 
     public SqlProductRepository(SqlLanatusClient client) {
         super(client);
@@ -62,13 +77,107 @@ public class SqlProductRepository extends AbstractSqlLanatusRepository implement
         return cache.getOrCompute(productId, fetcher::fetchById);
     }
 
+    /**
+     * Finds multiple products by id at once. Products that are not cached are fetched in bulk
+     * instead of one by one, and cached afterwards.
+     *
+     * @param productIds the unique ids of the products to find
+     * @return a map from product id to product, containing only the products that exist
+     */
+    public Map<UUID, Product> findAllById(Collection<UUID> productIds) {
+        Preconditions.checkNotNull(productIds, "productIds");
+        Map<UUID, Product> result = new HashMap<>();
+        Set<UUID> uncachedIds = new HashSet<>();
+        for (UUID productId : productIds) {
+            Optional<Product> cached = cache.get(productId);
+            if (cached.isPresent()) {
+                result.put(productId, cached.get());
+            } else {
+                uncachedIds.add(productId);
+            }
+        }
+        if (!uncachedIds.isEmpty()) {
+            fetcher.fetchAllById(uncachedIds).stream()
+                    .map(cache::cache)
+                    .forEach(product -> result.put(product.getUniqueId(), product));
+        }
+        return result;
+    }
+
     @Override
     public ProductQueryBuilder query() {
         return new SqlProductQueryBuilder(this);
     }
 
-    Collection<Product> execute(ProductQuery query) {
-        return fetcher.fetchByQuery(query);
+    /**
+     * Executes a product query. Queries are answered from the in-memory search index, which is
+     * built from all products in the background on first use. While the index is unavailable,
+     * queries are run against the database.
+     *
+     * @param query the query to execute
+     * @return the products matching the query
+     */
+    Collection<Product> execute(SqlProductQueryBuilder query) {
+        if (searchIndex.isWarm()) {
+            try {
+                return executeOnSearchIndex(query);
+            } catch (IllegalStateException ignored) {
+                //invalidated concurrently
+            }
+        }
+        warmSearchIndexAsync();
+        return executeOnDatabase(query);
+    }
+
+    /**
+     * Executes a product query against the database, regardless of the state of the search index.
+     *
+     * @param query the query to execute
+     * @return the products matching the query
+     */
+    Collection<Product> executeOnDatabase(SqlProductQueryBuilder query) {
+        return fetcher.fetchByQuery(new ProductQuery(query));
+    }
+
+    /**
+     * Answers a product query from the search index, without falling back to the database.
+     *
+     * @param query the query to execute
+     * @return the products matching the query
+     * @throws IllegalStateException if the search index is cold
+     */
+    Collection<Product> executeOnSearchIndex(SqlProductQueryBuilder query) throws IllegalStateException {
+        return searchIndex.query(query);
+    }
+
+    private void warmSearchIndexAsync() {
+        if (!warmingSearchIndex.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            client().getBackgroundExecutor().execute(() -> {
+                try {
+                    warmSearchIndex();
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Failed to build product search index", e);
+                } finally {
+                    warmingSearchIndex.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            warmingSearchIndex.set(false); //client is closing, keep querying the database
+        }
+    }
+
+    /**
+     * Builds the search index from all products in the database, blocking until done. The index
+     * stays cold if a product was added or invalidated meanwhile.
+     */
+    void warmSearchIndex() {
+        long modificationCount = searchIndex.getModificationCount();
+        Collection<Product> allProducts = fetcher.fetchAll();
+        allProducts.forEach(cache::cache);
+        searchIndex.rebuild(allProducts, modificationCount); //if modified meanwhile, the next query retries
     }
 
     @Override
@@ -76,15 +185,58 @@ public class SqlProductRepository extends AbstractSqlLanatusRepository implement
         return new SqlProductRegistrationBuilder(this, productId);
     }
 
+    /**
+     * Checks whether a product is currently cached, i.e. whether {@link #findById(UUID)} can be
+     * answered without querying the database.
+     *
+     * @param productId the unique id of the product
+     * @return whether the product is cached
+     */
+    public boolean isCached(UUID productId) {
+        return cache.containsKey(productId);
+    }
+
+    /**
+     * Finds a product only if it is currently cached, never querying the database.
+     *
+     * @param productId the unique id of the product to find
+     * @return an Optional containing the cached product, or an empty Optional if it is not cached
+     */
+    public Optional<Product> findCached(UUID productId) {
+        return cache.get(productId);
+    }
+
     void createNewProduct(SqlProduct product) {
         Preconditions.checkNotNull(product, "product");
         cache.invalidateKey(product.getUniqueId());
-        writer.write(product);
+        try (JdbcScopedSession scoped = client().transaction()) {
+            writer.write(product);
+            //a rolled back product must neither be cached nor announced to others
+            scoped.runAfterCommit(() -> {
+                cache.cache(product); //the written state is what a subsequent fetch would return
+                searchIndex.add(product);
+                client().invalidation().publishProduct(product.getUniqueId());
+            });
+            scoped.commitIfLast();
+        }
     }
 
     @Override
     public void clearCache() {
         cache.clear();
+        searchIndex.invalidate();
+    }
+
+    /**
+     * Invalidates all cached data of a product, so that it is fetched from the database when it
+     * is next accessed.
+     *
+     * @param productId the unique id of the product
+     */
+    public void clearCachesForProduct(UUID productId) {
+        Preconditions.checkNotNull(productId, "productId");
+        cache.invalidateKey(productId);
+        searchIndex.invalidate();
     }
 
     @Override
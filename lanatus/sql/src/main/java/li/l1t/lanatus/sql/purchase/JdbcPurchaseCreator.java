@@ -24,14 +24,23 @@
 
 package li.l1t.lanatus.sql.purchase;
 
+import com.google.common.collect.ImmutableList;
 import li.l1t.common.sql.sane.util.AbstractJdbcEntityCreator;
-import li.l1t.lanatus.api.exception.NoSuchPurchaseException;
+import li.l1t.lanatus.api.exception.NoSuchProductException;
 import li.l1t.lanatus.api.product.Product;
-import li.l1t.lanatus.api.product.ProductRepository;
 import li.l1t.lanatus.api.purchase.Purchase;
+import li.l1t.lanatus.sql.product.SqlProductRepository;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * Creates purchase objects from JDBC SQL result sets.
@@ -40,23 +49,100 @@ import java.sql.SQLException;
  * @since 2016-10-10
  */
 class JdbcPurchaseCreator extends AbstractJdbcEntityCreator<Purchase> {
-    private final ProductRepository productRepository;
+    private final SqlProductRepository productRepository;
 
-    JdbcPurchaseCreator(ProductRepository productRepository) {
+    JdbcPurchaseCreator(SqlProductRepository productRepository) {
         this.productRepository = productRepository;
     }
 
     @Override
     public Purchase createFromCurrentRow(ResultSet rs) throws SQLException {
-        return new SqlPurchase(
-                uuid(rs, "id"), uuid(rs, "player_uuid"),
-                findProduct(rs), rs.getTimestamp("created").toInstant(),
-                rs.getString("data"), rs.getString("comment"), rs.getInt("melonscost")
-        );
+        PurchaseRow row = new PurchaseRow(rs);
+        return row.toPurchase(productRepository.findById(row.productId));
     }
 
-    private Product findProduct(ResultSet rs) throws SQLException, NoSuchPurchaseException {
-        return productRepository.findById(uuid(rs, "product_id"));
+    /**
+     * Creates purchases from all rows of a result set that have not been read yet. Instead of
+     * looking up the product of each purchase separately, all rows are read first and the
+     * products of all of them are then found in a single bulk lookup.
+     *
+     * @param rs the result set to read from
+     * @return the created purchases, in result set order
+     * @throws SQLException           if a database error occurs
+     * @throws NoSuchProductException if a product referenced by a purchase does not exist
+     */
+    public Collection<Purchase> createAllFromRemainingRows(ResultSet rs) throws SQLException {
+        return createFromNextRows(rs, Integer.MAX_VALUE);
     }
 
+    /**
+     * Creates purchases from at most a given amount of rows of a result set that have not been
+     * read yet, finding the products of all of them in a single bulk lookup. This allows to
+     * process large result sets in chunks without a lookup per row.
+     *
+     * @param rs      the result set to read from
+     * @param maxRows the maximum amount of rows to read
+     * @return the created purchases, in result set order, or an empty list if there are no more
+     * rows
+     * @throws SQLException           if a database error occurs
+     * @throws NoSuchProductException if a product referenced by a purchase does not exist
+     */
+    public List<Purchase> createFromNextRows(ResultSet rs, int maxRows) throws SQLException {
+        List<PurchaseRow> rows = new ArrayList<>();
+        while (rows.size() < maxRows && rs.next()) {
+            rows.add(new PurchaseRow(rs));
+        }
+        if (rows.isEmpty()) {
+            return ImmutableList.of();
+        }
+        Map<UUID, Product> products = productRepository.findAllById(productIdsOf(rows));
+        ImmutableList.Builder<Purchase> purchases = ImmutableList.builder();
+        for (PurchaseRow row : rows) {
+            purchases.add(row.toPurchase(findProductIn(products, row.productId)));
+        }
+        return purchases.build();
+    }
+
+    private Set<UUID> productIdsOf(List<PurchaseRow> rows) {
+        return rows.stream()
+                .map(row -> row.productId)
+                .collect(Collectors.toSet());
+    }
+
+    private Product findProductIn(Map<UUID, Product> products, UUID productId) throws NoSuchProductException {
+        Product product = products.get(productId);
+        if (product == null) {
+            throw new NoSuchProductException("product with id " + productId);
+        }
+        return product;
+    }
+
+    /**
+     * The raw column values of a single purchase row, before its product has been resolved.
+     */
+    private class PurchaseRow {
+        private final UUID purchaseId;
+        private final UUID playerId;
+        private final UUID productId;
+        private final Instant creationInstant;
+        private final String data;
+        private final String comment;
+        private final int melonsCost;
+
+        private PurchaseRow(ResultSet rs) throws SQLException {
+            this.purchaseId = uuid(rs, "id");
+            this.playerId = uuid(rs, "player_uuid");
+            this.productId = uuid(rs, "product_id");
+            this.creationInstant = rs.getTimestamp("created").toInstant();
+            this.data = rs.getString("data");
+            this.comment = rs.getString("comment");
+            this.melonsCost = rs.getInt("melonscost");
+        }
+
+        private SqlPurchase toPurchase(Product product) {
+            return new SqlPurchase(
+                    purchaseId, playerId, product, creationInstant, data, comment, melonsCost
+            );
+        }
+    }
 }
@@ -32,7 +32,13 @@ import li.l1t.lanatus.api.purchase.Purchase;
 
 import java.sql.SQLException;
 import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Fetches purchases from a JDBC SQL data store as purchase objects.
@@ -41,8 +47,11 @@ import java.util.UUID;
  * @since 2016-10-10
  */
 class JdbcPurchaseFetcher extends li.l1t.common.sql.sane.util.AbstractJdbcFetcher<Purchase> {
+    private final JdbcPurchaseCreator creator;
+
     JdbcPurchaseFetcher(JdbcPurchaseCreator creator, SaneSql sql) {
         super(creator, sql);
+        this.creator = creator;
     }
 
     public Purchase fetchById(UUID purchaseId) throws DatabaseException {
@@ -78,4 +87,43 @@ class JdbcPurchaseFetcher extends li.l1t.common.sql.sane.util.AbstractJdbcFetche
     private QueryResult selectByPlayer(UUID playerId) {
         return select("player_uuid=?", playerId.toString());
     }
+
+    public Stream<Purchase> streamAll() throws DatabaseException {
+        return streamSelect("1=1");
+    }
+
+    /**
+     * {@inheritDoc} Rows are read in chunks of {@link #DEFAULT_STREAM_FETCH_SIZE}, so that the
+     * products of each chunk are found in a single bulk lookup instead of one lookup per row while
+     * the result is still open.
+     */
+    @Override
+    protected Stream<Purchase> streamAll(QueryResult result) {
+        Spliterator<List<Purchase>> chunks = new Spliterators.AbstractSpliterator<List<Purchase>>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super List<Purchase>> action) {
+                try {
+                    List<Purchase> chunk = creator.createFromNextRows(result.rs(), DEFAULT_STREAM_FETCH_SIZE);
+                    if (chunk.isEmpty()) {
+                        result.close();
+                        return false;
+                    }
+                    action.accept(chunk);
+                    return true;
+                } catch (SQLException e) {
+                    result.close();
+                    throw DatabaseException.wrap(e);
+                }
+            }
+        };
+        return StreamSupport.stream(chunks, false)
+                .flatMap(List::stream)
+                .onClose(result::close);
+    }
+
+    @Override
+    protected Collection<Purchase> collectAll(QueryResult result) throws SQLException {
+        return creator.createAllFromRemainingRows(result.rs());
+    }
 }
@@ -26,13 +26,11 @@ package li.l1t.lanatus.sql.purchase;
 
 import com.google.common.base.Preconditions;
 import li.l1t.common.exception.DatabaseException;
-import li.l1t.common.sql.sane.SingleSql;
+import li.l1t.common.sql.sane.JdbcSaneSql;
 import li.l1t.common.sql.sane.SqlConnected;
-import li.l1t.common.sql.sane.scoped.ScopedSession;
+import li.l1t.common.sql.sane.scoped.JdbcScopedSession;
 import li.l1t.lanatus.api.LanatusConnected;
-import li.l1t.lanatus.api.account.MutableAccount;
 import li.l1t.lanatus.api.builder.PurchaseBuilder;
-import li.l1t.lanatus.api.exception.AccountConflictException;
 import li.l1t.lanatus.api.exception.NoSuchProductException;
 import li.l1t.lanatus.api.product.Product;
 import li.l1t.lanatus.api.purchase.Purchase;
@@ -91,28 +89,19 @@ public class SqlPurchaseBuilder implements PurchaseBuilder, LanatusConnected, Sq
     @Override
     public void build() throws IllegalStateException, NoSuchProductException, DatabaseException {
         checkNotYetExecuted();
-        try (ScopedSession scoped = sql().scoped().tx()) {
-            makeSurePlayerAccountExists();
+        try (JdbcScopedSession scoped = sql().scoped().tx()) {
             Product product = findProduct();
             SqlPurchase purchase = createPurchase(product);
+            //creates the account if necessary, which the purchase needs to reference
+            client().accounts().applyMelonsDelta(playerId, purchase.getMelonsCost() * -1);
             purchaseWriter.write(purchase);
-            MutableAccount account = client().accounts().findMutable(playerId); //needs to exist for purchase
-            account.modifyMelonsCount(purchase.getMelonsCost() * -1);
-            client().accounts().save(account);
             if (product.isPermanent()) {
                 client().positions().createFromPurchase(purchase);
             }
+            //changes are only visible to others after the outermost transaction has been committed
+            scoped.runAfterCommit(() -> client().invalidation().publishPlayer(playerId));
             scoped.commitIfLast();
             this.purchase = purchase; //don't mess up hasBeenBuilt() if a method throws an exception above
-        } catch (AccountConflictException e) {
-            throw new DatabaseException(e);
-        }
-    }
-
-    private void makeSurePlayerAccountExists() throws AccountConflictException {
-        MutableAccount account = client().accounts().findMutable(playerId);
-        if (account.getInitialState().existed()) {
-            client().accounts().save(account);
         }
     }
 
@@ -179,7 +168,7 @@ public class SqlPurchaseBuilder implements PurchaseBuilder, LanatusConnected, Sq
     }
 
     @Override
-    public SingleSql sql() {
-        return (SingleSql) client.sql();
+    public JdbcSaneSql sql() {
+        return (JdbcSaneSql) client.sql();
     }
 }
@@ -25,8 +25,8 @@
 package li.l1t.lanatus.sql.purchase;
 
 import com.google.common.base.Preconditions;
-import li.l1t.common.collections.cache.IdCache;
 import li.l1t.common.collections.cache.MapIdCache;
+import li.l1t.common.collections.cache.SecondaryIndex;
 import li.l1t.common.misc.Identifiable;
 import li.l1t.lanatus.api.exception.NoSuchPurchaseException;
 import li.l1t.lanatus.api.purchase.Purchase;
@@ -35,7 +35,10 @@ import li.l1t.lanatus.sql.AbstractSqlLanatusRepository;
 import li.l1t.lanatus.sql.SqlLanatusClient;
 
 import java.util.Collection;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * Simple repository for purchases backed by a JDBC SQL data source. Caches id lookups.
@@ -45,7 +48,11 @@ import java.util.UUID;
  */
 public class SqlPurchaseRepository extends AbstractSqlLanatusRepository implements PurchaseRepository {
     public static final String TABLE_NAME = "mt_main.lanatus_purchase";
-    private final IdCache<UUID, Purchase> cache = new MapIdCache<>(Identifiable::getUniqueId);
+    private static final long MAX_CACHED_PURCHASES = 10_000;
+    private final MapIdCache<UUID, Purchase> cache = new MapIdCache<>(
+            Identifiable::getUniqueId, 5, TimeUnit.MINUTES, MAX_CACHED_PURCHASES
+    );
+    private final SecondaryIndex<UUID, UUID, Purchase> cacheByPlayer = cache.addSecondaryIndex(Purchase::getPlayerId);
     private final JdbcPurchaseFetcher fetcher = new JdbcPurchaseFetcher(
             new JdbcPurchaseCreator(client().products()), client().sql()
     );
@@ -61,7 +68,54 @@ public class SqlPurchaseRepository extends AbstractSqlLanatusRepository implemen
 
     @Override
     public Collection<Purchase> findByPlayer(UUID playerId) {
-        return fetcher.fetchByPlayer(playerId);
+        Collection<Purchase> purchases = client().readFor(playerId, () -> fetcher.fetchByPlayer(playerId));
+        purchases.forEach(cache::cache);
+        return purchases;
+    }
+
+    /**
+     * Streams all purchases from the database, for example for exports or reports. Purchases are
+     * read lazily and not cached, so that the whole table never needs to be held in memory. Note
+     * that the connection used for the stream is occupied until it is closed.
+     *
+     * @return a stream of all purchases, which must be closed after use
+     */
+    public Stream<Purchase> streamAll() {
+        return fetcher.streamAll();
+    }
+
+    /**
+     * Checks whether a purchase is currently cached, i.e. whether {@link #findById(UUID)} can be
+     * answered without querying the database.
+     *
+     * @param purchaseId the unique id of the purchase
+     * @return whether the purchase is cached
+     */
+    public boolean isCached(UUID purchaseId) {
+        return cache.containsKey(purchaseId);
+    }
+
+    /**
+     * Finds a purchase only if it is currently cached, never querying the database.
+     *
+     * @param purchaseId the unique id of the purchase
+     * @return an Optional containing the cached purchase, or an empty Optional if it is not cached
+     */
+    public Optional<Purchase> findCached(UUID purchaseId) {
+        return cache.get(purchaseId);
+    }
+
+    /**
+     * Finds the purchases of a player that are currently cached, without accessing the database.
+     * Purchases are cached when they are found by id or by player. This is not guaranteed to
+     * include all purchases of the player, since they may have been created or expired since.
+     *
+     * @param playerId the unique id of the player whose cached purchases to find
+     * @return an immutable collection of the cached purchases of given player
+     */
+    public Collection<Purchase> findCachedByPlayer(UUID playerId) {
+        Preconditions.checkNotNull(playerId, "playerId");
+        return cacheByPlayer.find(playerId);
     }
 
     @Override
@@ -72,8 +126,6 @@ public class SqlPurchaseRepository extends AbstractSqlLanatusRepository implemen
     @Override
     public void clearCachesFor(UUID playerId) {
         Preconditions.checkNotNull(playerId, "playerId");
-        cache.stream()
-                .filter(purchase -> purchase.getPlayerId().equals(playerId))
-                .forEach(cache::invalidateValue);
+        cacheByPlayer.invalidate(playerId);
     }
 }